@@ -17,6 +17,8 @@ function PizzaChef() {
   const [editingPizzaId, setEditingPizzaId] = useState(null);
   const [tempPizzaName, setTempPizzaName] = useState("");
   const [tempSelectedToppings, setTempSelectedToppings] = useState([]);
+  // Version of the pizza when editing started, sent back as If-Match so concurrent edits are not overwritten
+  const [editingVersion, setEditingVersion] = useState(null);
 
   // Fetch existing pizzas and toppings from the server
   const fetchData = async () => {
@@ -33,9 +35,83 @@ function PizzaChef() {
     }
   };
 
-  // Fetch data on component mount
+  // Fetch data on component mount, then keep it current from the menu event stream.
+  // Changes are applied in place; after a reconnect the lists are reloaded because
+  // events may have been missed while disconnected.
   useEffect(() => {
     fetchData();
+
+    const upsert = (list, item) =>
+      list.some((existing) => existing.id === item.id)
+        ? list.map((existing) => (existing.id === item.id ? item : existing))
+        : [...list, item];
+
+    const events = new EventSource("/api/menu/events");
+    let connectedBefore = false;
+    events.onopen = () => {
+      if (connectedBefore) {
+        fetchData();
+      }
+      connectedBefore = true;
+    };
+    events.addEventListener("PIZZA_CREATED", (e) => {
+      const { pizza } = JSON.parse(e.data);
+      setPizzas((current) => upsert(current, pizza));
+    });
+    events.addEventListener("PIZZA_UPDATED", (e) => {
+      const { pizza } = JSON.parse(e.data);
+      setPizzas((current) => upsert(current, pizza));
+    });
+    events.addEventListener("PIZZA_DELETED", (e) => {
+      const { id } = JSON.parse(e.data);
+      setPizzas((current) => current.filter((pizza) => pizza.id !== id));
+    });
+    events.addEventListener("PIZZA_TOPPINGS_CHANGED", (e) => {
+      const { id, version, addedToppings = [], removedToppingIds = [] } = JSON.parse(e.data);
+      const changedIds = [...removedToppingIds, ...addedToppings.map((topping) => topping.id)];
+      setPizzas((current) =>
+        current.map((pizza) =>
+          pizza.id !== id
+            ? pizza
+            : {
+                ...pizza,
+                version: version ?? pizza.version,
+                toppings: [
+                  ...pizza.toppings.filter((topping) => !changedIds.includes(topping.id)),
+                  ...addedToppings,
+                ],
+              }
+        )
+      );
+    });
+    events.addEventListener("TOPPING_CREATED", (e) => {
+      const { topping } = JSON.parse(e.data);
+      setToppings((current) => upsert(current, topping));
+    });
+    events.addEventListener("TOPPING_UPDATED", (e) => {
+      const { topping } = JSON.parse(e.data);
+      setToppings((current) => upsert(current, topping));
+      setPizzas((current) =>
+        current.map((pizza) => ({
+          ...pizza,
+          toppings: pizza.toppings.map((existing) =>
+            existing.id === topping.id ? topping : existing
+          ),
+        }))
+      );
+    });
+    events.addEventListener("TOPPING_DELETED", (e) => {
+      const { id } = JSON.parse(e.data);
+      setToppings((current) => current.filter((topping) => topping.id !== id));
+      setPizzas((current) =>
+        current.map((pizza) => ({
+          ...pizza,
+          toppings: pizza.toppings.filter((topping) => topping.id !== id),
+        }))
+      );
+    });
+
+    return () => events.close();
   }, []);
 
   // Handlers for selecting and removing toppings from the dropdown
@@ -50,6 +126,7 @@ function PizzaChef() {
   // Initiates edit mode for a pizza, setting up temporary states
   const startEditing = (pizza) => {
     setEditingPizzaId(pizza.id);
+    setEditingVersion(pizza.version);
     setTempPizzaName(pizza.name);
     // Convert pizza toppings to the format expected by Multiselect
     const tempToppings = pizza.toppings.map((topping) => ({
@@ -85,11 +162,10 @@ function PizzaChef() {
 
       await axios.post("/api/pizzas", payload);
 
-      // Resetting the form and re-fetching pizzas to reflect the new addition
+      // Resetting the form, the new pizza arrives through the menu event stream
       setNewPizzaName("");
       setSelectedToppings([]);
       setError("");
-      await fetchData();
     } catch (error) {
       console.error("There was an error adding the pizza:", error);
       setError(
@@ -100,18 +176,17 @@ function PizzaChef() {
     }
   };
 
-  // Deletes a pizza and refreshes the list
+  // Deletes a pizza, the list is updated through the menu event stream
   const deletePizza = async (pizzaId) => {
     try {
       await axios.delete(`/api/pizzas/${pizzaId}`);
-      fetchData();
     } catch (error) {
       console.error("Failed to delete pizza", error);
       setError("Failed to delete pizza.");
     }
   };
 
-  // Updates an existing pizza and refreshes the list
+  // Updates an existing pizza, the list is updated through the menu event stream
   const updatePizza = async (pizzaId, newName, newToppingIds) => {
     const payload = {
       name: newName,
@@ -119,12 +194,18 @@ function PizzaChef() {
     };
 
     try {
-      await axios.put(`/api/pizzas/${pizzaId}`, payload);
+      const headers = editingVersion != null ? { "If-Match": `"${editingVersion}"` } : {};
+      await axios.put(`/api/pizzas/${pizzaId}`, payload, { headers });
       setEditingPizzaId(null); // Reset editing state
-      fetchData(); // Fetch updated list of pizzas
     } catch (error) {
       console.error("Failed to update pizza", error);
-      setError("Failed to update pizza.");
+      if (error.response && error.response.status === 409) {
+        setError("This pizza was changed by someone else, please review and try again.");
+        setEditingPizzaId(null);
+        fetchData(); // Picks up the current versions
+      } else {
+        setError("Failed to update pizza.");
+      }
     }
   };
 
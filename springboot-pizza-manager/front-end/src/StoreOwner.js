@@ -20,6 +20,28 @@ function StoreOwner() {
     };
 
     fetchToppings();
+
+    // Apply topping changes made from other screens as they happen
+    const events = new EventSource("/api/menu/events");
+    let connectedBefore = false;
+    events.onopen = () => {
+      if (connectedBefore) {
+        fetchToppings();
+      }
+      connectedBefore = true;
+    };
+    const applyTopping = (e) => {
+      const { topping } = JSON.parse(e.data);
+      setToppings((current) => upsertTopping(current, topping));
+    };
+    events.addEventListener("TOPPING_CREATED", applyTopping);
+    events.addEventListener("TOPPING_UPDATED", applyTopping);
+    events.addEventListener("TOPPING_DELETED", (e) => {
+      const { id } = JSON.parse(e.data);
+      setToppings((current) => current.filter((topping) => topping.id !== id));
+    });
+
+    return () => events.close();
   }, []);
 
   // Function to add a new topping
@@ -27,7 +49,7 @@ function StoreOwner() {
     try {
       const newTopping = { name: toppingName };
       const response = await axios.post("/api/toppings", newTopping);
-      setToppings([...toppings, response.data]);
+      setToppings((current) => upsertTopping(current, response.data));
       setError("");
     } catch (error) {
       console.error("There was an error adding the topping:", error);
@@ -36,12 +58,19 @@ function StoreOwner() {
   };
 
   // Function to remove a topping
-  const removeTopping = async (toppingId) => {
+  // A topping still on pizzas is refused with 409, after confirming it is removed from them as well
+  const removeTopping = async (toppingId, detach = false) => {
     try {
-      await axios.delete(`/api/toppings/${toppingId}`);
-      setToppings(toppings.filter((topping) => topping.id !== toppingId));
+      await axios.delete(`/api/toppings/${toppingId}`, { params: detach ? { detach: true } : {} });
+      setToppings((current) =>
+        current.filter((topping) => topping.id !== toppingId)
+      );
       setError("");
     } catch (error) {
+      if (!detach && error.response && error.response.status === 409 &&
+          window.confirm(`${error.response.data} Remove it from those pizzas and delete it?`)) {
+        return removeTopping(toppingId, true);
+      }
       console.error("There was an error removing the topping:", error);
       setError("Could not remove topping.");
     }
@@ -55,11 +84,7 @@ function StoreOwner() {
         `/api/toppings/${toppingId}`,
         updatedTopping
       );
-      setToppings(
-        toppings.map((topping) =>
-          topping.id === toppingId ? response.data : topping
-        )
-      );
+      setToppings((current) => upsertTopping(current, response.data));
       setError("");
     } catch (error) {
       console.error("There was an error updating the topping:", error);
@@ -89,6 +114,13 @@ function StoreOwner() {
   );
 }
 
+// Replaces the topping with the same id, or appends it if it is new
+function upsertTopping(toppings, topping) {
+  return toppings.some((existing) => existing.id === topping.id)
+    ? toppings.map((existing) => (existing.id === topping.id ? topping : existing))
+    : [...toppings, topping];
+}
+
 function Header() {
   return (
     <header className="header">
@@ -0,0 +1,141 @@
+package com.springboot.pizzamanager.controller;
+
+import com.springboot.pizzamanager.SpringbootPizzaManagerApplication;
+import com.springboot.pizzamanager.dto.PizzaResponse;
+import com.springboot.pizzamanager.model.Pizza;
+import com.springboot.pizzamanager.model.Topping;
+import com.springboot.pizzamanager.service.KeysetPage;
+import com.springboot.pizzamanager.service.PageCursor;
+import com.springboot.pizzamanager.service.PizzaService;
+import com.springboot.pizzamanager.service.ToppingService;
+import jakarta.persistence.EntityManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// The pizza read paths against the embedded H2 database as the service serves them, listings from DTO
+// projection queries and single pizzas from the second-level cache, next to the entity path they replaced:
+// join fetching Pizza entities with their toppings and converting them to responses. Run with -prof gc
+// to compare the bytes allocated per read.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PizzaReadBenchmark {
+
+    private static final int PIZZAS = 1000;
+    private static final int TOPPINGS = 20;
+    private static final int TOPPINGS_PER_PIZZA = 5;
+    private static final int PAGE = 50;
+
+    private ConfigurableApplicationContext context;
+    private PizzaService pizzaService;
+    private EntityManager entityManager;
+    private TransactionTemplate readOnly;
+
+    private List<Long> pizzaIds;
+    private int reads;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(SpringbootPizzaManagerApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--logging.level.root=WARN", "--pizzamanager.pizzas.allow-duplicate-recipes=true");
+        pizzaService = context.getBean(PizzaService.class);
+        entityManager = context.getBean(EntityManager.class);
+        readOnly = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        readOnly.setReadOnly(true);
+        ToppingService toppingService = context.getBean(ToppingService.class);
+
+        List<Long> toppingIds = new ArrayList<>();
+        for (int i = 0; i < TOPPINGS; i++) {
+            toppingIds.add(toppingService.addTopping(new Topping("Topping " + i)).getId());
+        }
+        pizzaIds = new ArrayList<>();
+        for (int i = 0; i < PIZZAS; i++) {
+            HashSet<Long> recipe = new HashSet<>();
+            for (int t = 0; t < TOPPINGS_PER_PIZZA; t++) {
+                recipe.add(toppingIds.get((i + t * 3) % TOPPINGS));
+            }
+            pizzaIds.add(pizzaService.createPizzaWithToppings(new Pizza("Pizza " + i), recipe).getId());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public PizzaResponse pizzaByIdEntity() {
+        Long id = nextId();
+        return readOnly.execute(status -> PizzaController.convertToPizzaResponse(entityManager
+                .createQuery("select p from Pizza p left join fetch p.toppings where p.id = :id", Pizza.class)
+                .setParameter("id", id)
+                .getSingleResult()));
+    }
+
+    @Benchmark
+    public PizzaResponse pizzaByIdCached() {
+        return pizzaService.findPizzaById(nextId()).orElseThrow();
+    }
+
+    @Benchmark
+    public List<PizzaResponse> firstPageEntities() {
+        return readOnly.execute(status -> {
+            List<Long> ids = entityManager.createQuery("select p.id from Pizza p order by p.id", Long.class)
+                    .setMaxResults(PAGE)
+                    .getResultList();
+            return entityManager.createQuery("select distinct p from Pizza p left join fetch p.toppings "
+                            + "where p.id in :ids order by p.id", Pizza.class)
+                    .setParameter("ids", ids)
+                    .getResultList().stream()
+                    .map(PizzaController::convertToPizzaResponse)
+                    .toList();
+        });
+    }
+
+    @Benchmark
+    public KeysetPage<PizzaResponse> firstPageProjection() {
+        return pizzaService.findPizzaPage(PageCursor.Sort.ID, null, PAGE);
+    }
+
+    @Benchmark
+    public List<PizzaResponse> allPizzasEntities() {
+        return readOnly.execute(status -> entityManager
+                .createQuery("select distinct p from Pizza p left join fetch p.toppings order by p.id", Pizza.class)
+                .getResultList().stream()
+                .map(PizzaController::convertToPizzaResponse)
+                .toList());
+    }
+
+    @Benchmark
+    public List<PizzaResponse> allPizzasProjection() {
+        return pizzaService.findAllPizzas();
+    }
+
+    private Long nextId() {
+        return pizzaIds.get(reads++ % PIZZAS);
+    }
+}
@@ -0,0 +1,106 @@
+package com.springboot.pizzamanager.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.springboot.pizzamanager.dto.PizzaResponse;
+import com.springboot.pizzamanager.model.Pizza;
+import com.springboot.pizzamanager.model.Topping;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+// The in-memory half of a pizza response: turning entities into PizzaResponse DTOs, one at a time and
+// as the list mapping of a listing page, and writing that list as JSON with the same Jackson setup
+// Spring MVC uses. No database is involved, the pizzas are built once per trial.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PizzaResponseBenchmark {
+
+    private static final int TOPPINGS = 20;
+
+    // Number of pizzas in the listing
+    @Param({"10", "100", "1000"})
+    private int pizzas;
+
+    // Toppings on every pizza
+    @Param({"3", "10"})
+    private int toppingsPerPizza;
+
+    private List<Pizza> menu;
+    private List<PizzaResponse> responses;
+    private ObjectMapper objectMapper;
+
+    @Setup
+    public void setUp() {
+        List<Topping> toppings = new ArrayList<>();
+        for (long id = 1; id <= TOPPINGS; id++) {
+            Topping topping = new Topping("Topping " + id);
+            topping.setId(id);
+            topping.setVersion(0L);
+            toppings.add(topping);
+        }
+
+        menu = new ArrayList<>();
+        for (int i = 0; i < pizzas; i++) {
+            Pizza pizza = new Pizza("Pizza " + i);
+            pizza.setId((long) i + 1);
+            pizza.setVersion(0L);
+            Set<Topping> selected = new HashSet<>();
+            for (int t = 0; t < toppingsPerPizza; t++) {
+                selected.add(toppings.get((i + t) % TOPPINGS));
+            }
+            pizza.setToppings(selected);
+            menu.add(pizza);
+        }
+
+        responses = mapListing();
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    }
+
+    @Benchmark
+    public PizzaResponse convertOne() {
+        return PizzaController.convertToPizzaResponse(menu.get(0));
+    }
+
+    // The mapping getAllPizzas runs over a page of pizzas
+    @Benchmark
+    public List<PizzaResponse> convertListing() {
+        return mapListing();
+    }
+
+    @Benchmark
+    public byte[] serializeListing() throws Exception {
+        return objectMapper.writeValueAsBytes(responses);
+    }
+
+    // Mapping and serialization together, what a listing page costs besides the query
+    @Benchmark
+    public byte[] convertAndSerializeListing() throws Exception {
+        return objectMapper.writeValueAsBytes(mapListing());
+    }
+
+    private List<PizzaResponse> mapListing() {
+        return menu.stream()
+                .map(PizzaController::convertToPizzaResponse)
+                .collect(Collectors.toList());
+    }
+}
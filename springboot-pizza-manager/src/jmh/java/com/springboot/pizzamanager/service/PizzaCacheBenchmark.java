@@ -0,0 +1,86 @@
+package com.springboot.pizzamanager.service;
+
+import com.springboot.pizzamanager.SpringbootPizzaManagerApplication;
+import com.springboot.pizzamanager.dto.PizzaResponse;
+import com.springboot.pizzamanager.model.Pizza;
+import com.springboot.pizzamanager.model.Topping;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+// PizzaService.findPizzaById against the embedded H2 database with the second-level cache on and off,
+// reading every pizza of the menu in turn. The whole menu fits in the cache regions, so once warmed up
+// every read with the cache on is a hit. Run with -prof gc to compare the bytes allocated per read.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PizzaCacheBenchmark {
+
+    private static final int PIZZAS = 1000;
+    private static final int TOPPINGS = 20;
+    private static final int TOPPINGS_PER_PIZZA = 5;
+
+    @Param({"true", "false"})
+    private boolean secondLevelCache;
+
+    private ConfigurableApplicationContext context;
+    private PizzaService pizzaService;
+
+    private List<Long> pizzaIds;
+    private int reads;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(SpringbootPizzaManagerApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--logging.level.root=WARN", "--pizzamanager.pizzas.allow-duplicate-recipes=true",
+                        "--spring.jpa.properties.hibernate.cache.use_second_level_cache=" + secondLevelCache);
+        pizzaService = context.getBean(PizzaService.class);
+        ToppingService toppingService = context.getBean(ToppingService.class);
+
+        List<Long> toppingIds = new ArrayList<>();
+        for (int i = 0; i < TOPPINGS; i++) {
+            toppingIds.add(toppingService.addTopping(new Topping("Topping " + i)).getId());
+        }
+        pizzaIds = new ArrayList<>();
+        for (int i = 0; i < PIZZAS; i++) {
+            Set<Long> recipe = new HashSet<>();
+            for (int t = 0; t < TOPPINGS_PER_PIZZA; t++) {
+                recipe.add(toppingIds.get((i + t * 3) % TOPPINGS));
+            }
+            pizzaIds.add(pizzaService.createPizzaWithToppings(new Pizza("Pizza " + i), recipe).getId());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public PizzaResponse findPizzaById() {
+        return pizzaService.findPizzaById(pizzaIds.get(reads++ % PIZZAS)).orElseThrow();
+    }
+}
@@ -0,0 +1,95 @@
+package com.springboot.pizzamanager.service;
+
+import com.springboot.pizzamanager.SpringbootPizzaManagerApplication;
+import com.springboot.pizzamanager.dto.BatchImportResponse;
+import com.springboot.pizzamanager.dto.PizzaRequest;
+import com.springboot.pizzamanager.model.Pizza;
+import com.springboot.pizzamanager.model.Topping;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+// Bulk pizza import against the embedded H2 database, as behind POST /api/pizzas/batch: one call to
+// PizzaService.importPizzas per operation, with the set-wise validation, batched inserts, usage counter
+// batch and one menu change event per pizza. createOneByOne writes the same batch through
+// createPizzaWithToppings, one transaction per pizza, as a client without the batch endpoint would.
+// Scores are batches per second, multiply by batchSize for pizzas per second.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PizzaImportBenchmark {
+
+    private static final int TOPPINGS = 20;
+
+    @Param({"10", "100", "1000"})
+    private int batchSize;
+
+    private ConfigurableApplicationContext context;
+    private PizzaService pizzaService;
+
+    private List<List<Long>> recipes;
+    private long created;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(SpringbootPizzaManagerApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--logging.level.root=WARN", "--pizzamanager.pizzas.allow-duplicate-recipes=true");
+        pizzaService = context.getBean(PizzaService.class);
+        ToppingService toppingService = context.getBean(ToppingService.class);
+
+        List<Long> toppingIds = new ArrayList<>();
+        for (int i = 0; i < TOPPINGS; i++) {
+            toppingIds.add(toppingService.addTopping(new Topping("Topping " + i)).getId());
+        }
+        // A handful of three-topping recipes, reused across the batch
+        recipes = new ArrayList<>();
+        for (int i = 0; i + 3 <= TOPPINGS; i += 3) {
+            recipes.add(toppingIds.subList(i, i + 3));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public BatchImportResponse importPizzas() {
+        List<PizzaRequest> batch = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            batch.add(new PizzaRequest("Imported " + created, Set.copyOf(recipes.get((int) (created++ % recipes.size())))));
+        }
+        return pizzaService.importPizzas(batch);
+    }
+
+    @Benchmark
+    public void createOneByOne(Blackhole blackhole) {
+        for (int i = 0; i < batchSize; i++) {
+            blackhole.consume(pizzaService.createPizzaWithToppings(new Pizza("Created " + created),
+                    Set.copyOf(recipes.get((int) (created++ % recipes.size())))));
+        }
+    }
+}
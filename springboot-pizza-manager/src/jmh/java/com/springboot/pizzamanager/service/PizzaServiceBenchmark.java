@@ -0,0 +1,88 @@
+package com.springboot.pizzamanager.service;
+
+import com.springboot.pizzamanager.SpringbootPizzaManagerApplication;
+import com.springboot.pizzamanager.dto.PizzaUpdateRequest;
+import com.springboot.pizzamanager.model.Pizza;
+import com.springboot.pizzamanager.model.Topping;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+// The write paths of PizzaService end to end against the embedded H2 database: creating a pizza
+// with toppings and replacing the toppings of an existing one, including the flush, the usage
+// counter batch and the menu change event. Runs single threaded, so updates never conflict.
+// Duplicate recipes are allowed, every created pizza has the same toppings and the cost per call
+// does not depend on how many pizzas the run has created before.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 6, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PizzaServiceBenchmark {
+
+    private static final int TOPPINGS = 10;
+
+    private ConfigurableApplicationContext context;
+    private PizzaService pizzaService;
+
+    private Set<Long> createToppingIds;
+    private Long updatedPizzaId;
+    private PizzaUpdateRequest[] updates;
+    private long created;
+    private int updateCount;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(SpringbootPizzaManagerApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--logging.level.root=WARN", "--pizzamanager.pizzas.allow-duplicate-recipes=true");
+        pizzaService = context.getBean(PizzaService.class);
+        ToppingService toppingService = context.getBean(ToppingService.class);
+
+        List<Long> toppingIds = new ArrayList<>();
+        for (int i = 0; i < TOPPINGS; i++) {
+            toppingIds.add(toppingService.addTopping(new Topping("Topping " + i)).getId());
+        }
+        createToppingIds = Set.copyOf(toppingIds.subList(0, 3));
+
+        updatedPizzaId = pizzaService.createPizzaWithToppings(new Pizza("Updated"), createToppingIds).getId();
+        // Alternates between two recipes sharing two toppings, so every update adds one and removes one
+        updates = new PizzaUpdateRequest[]{
+                new PizzaUpdateRequest(null, toppingIds.subList(0, 3)),
+                new PizzaUpdateRequest(null, toppingIds.subList(1, 4))
+        };
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Pizza createPizzaWithToppings() {
+        return pizzaService.createPizzaWithToppings(new Pizza("Pizza " + created++), createToppingIds);
+    }
+
+    @Benchmark
+    public Pizza updatePizza() {
+        return pizzaService.updatePizza(updatedPizzaId, updates[updateCount++ & 1], null);
+    }
+}
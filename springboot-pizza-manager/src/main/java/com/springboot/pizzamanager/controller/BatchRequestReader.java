@@ -0,0 +1,48 @@
+package com.springboot.pizzamanager.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+// Reads the body of a bulk import request item by item. Accepts either a JSON array or
+// newline-delimited JSON (one object per line), and stops as soon as the item limit is exceeded
+// instead of binding an oversized body first.
+@Component
+public class BatchRequestReader {
+
+    private final ObjectMapper objectMapper;
+    private final int maxItems;
+
+    @Autowired
+    public BatchRequestReader(ObjectMapper objectMapper,
+                              @Value("${pizzamanager.batch.max-items:5000}") int maxItems) {
+        this.objectMapper = objectMapper;
+        this.maxItems = maxItems;
+    }
+
+    public <T> List<T> read(InputStream body, Class<T> itemType) {
+        List<T> items = new ArrayList<>();
+        // A root level array is unwrapped by the iterator, so both formats read the same way
+        try (MappingIterator<T> iterator = objectMapper.readerFor(itemType).readValues(body)) {
+            while (iterator.hasNextValue()) {
+                if (items.size() == maxItems) {
+                    throw new IllegalArgumentException("A batch may contain at most " + maxItems + " items.");
+                }
+                items.add(iterator.nextValue());
+            }
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Malformed batch at item " + items.size() + ": " + e.getOriginalMessage());
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not read the batch.", e);
+        }
+        return items;
+    }
+}
@@ -0,0 +1,305 @@
+package com.springboot.pizzamanager.controller;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+// Makes POST /api/pizzas and POST /api/toppings safe to retry when the client sends an Idempotency-Key
+// header. The first request with a key runs as usual and its response is kept in memory for ttl; a retry
+// with the same key and body gets that response back without reaching the controller, marked with
+// Idempotent-Replayed. A retry arriving while the first is still running waits for it, up to max-wait.
+// Server errors are not kept, the next retry runs again. Reusing a key for a different body is refused
+// with 422. At most max-entries responses are kept, the oldest go first.
+// Ordered ahead of RequestQueryMetricsFilter: a replay never reaches a controller, so it would only be
+// recorded there as a request to an unknown endpoint that ran no statements.
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE - 10)
+public class IdempotencyKeyFilter extends OncePerRequestFilter implements MeterBinder {
+
+    static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final int MAX_KEY_LENGTH = 255;
+    private static final Set<String> PATHS = Set.of("/api/pizzas", "/api/toppings");
+
+    private final long ttlNanos;
+    private final long maxWaitNanos;
+    // Insertion order is start order, so the eldest entries are also the first to expire
+    private final Map<String, Execution> executions;
+
+    private final LongAdder executed = new LongAdder();
+    private final LongAdder replayed = new LongAdder();
+
+    @Autowired
+    public IdempotencyKeyFilter(@Value("${pizzamanager.idempotency.max-entries:10000}") int maxEntries,
+                                @Value("${pizzamanager.idempotency.ttl:1h}") Duration ttl,
+                                @Value("${pizzamanager.idempotency.max-wait:10s}") Duration maxWait) {
+        this.ttlNanos = ttl.toNanos();
+        this.maxWaitNanos = maxWait.toNanos();
+        this.executions = new LinkedHashMap<>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Execution> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return !HttpMethod.POST.matches(request.getMethod()) || !PATHS.contains(path)
+                || request.getHeader(IDEMPOTENCY_KEY_HEADER) == null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String key = request.getHeader(IDEMPOTENCY_KEY_HEADER);
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            reject(response, HttpStatus.BAD_REQUEST, "Idempotency-Key must have 1 to " + MAX_KEY_LENGTH + " characters.");
+            return;
+        }
+        BufferedRequest buffered = new BufferedRequest(request);
+        byte[] fingerprint = sha256(buffered.body);
+        String scope = request.getRequestURI() + " " + key;
+
+        while (true) {
+            Execution execution;
+            boolean first;
+            synchronized (executions) {
+                long now = System.nanoTime();
+                evictExpired(now);
+                execution = executions.get(scope);
+                first = execution == null;
+                if (first) {
+                    execution = new Execution(fingerprint, now);
+                    executions.put(scope, execution);
+                }
+            }
+
+            if (!MessageDigest.isEqual(execution.fingerprint, fingerprint)) {
+                reject(response, HttpStatus.UNPROCESSABLE_ENTITY,
+                        "Idempotency-Key " + key + " was already used for a different request.");
+                return;
+            }
+            if (first) {
+                execute(buffered, response, chain, scope, execution);
+                return;
+            }
+
+            StoredResponse stored;
+            try {
+                stored = execution.response.get(maxWaitNanos, TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+                reject(response, HttpStatus.CONFLICT, "A request with Idempotency-Key " + key + " is still in progress.");
+                return;
+            } catch (ExecutionException e) {
+                // Never completed exceptionally, a failed original completes with null
+                throw new IllegalStateException(e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                reject(response, HttpStatus.SERVICE_UNAVAILABLE, "Interrupted while waiting for the original request.");
+                return;
+            }
+            // The original request failed without a response worth keeping, run this one in its place
+            if (stored != null) {
+                replay(stored, response);
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("pizzamanager.idempotency.requests", executed, LongAdder::sum)
+                .description("Requests with an Idempotency-Key that ran, or were answered with an earlier response")
+                .tag("result", "executed")
+                .register(registry);
+        FunctionCounter.builder("pizzamanager.idempotency.requests", replayed, LongAdder::sum)
+                .description("Requests with an Idempotency-Key that ran, or were answered with an earlier response")
+                .tag("result", "replayed")
+                .register(registry);
+    }
+
+    private void execute(BufferedRequest request, HttpServletResponse response, FilterChain chain,
+                         String scope, Execution execution) throws ServletException, IOException {
+        executed.increment();
+        ContentCachingResponseWrapper recorder = new ContentCachingResponseWrapper(response);
+        StoredResponse stored = null;
+        try {
+            chain.doFilter(request, recorder);
+            if (recorder.getStatus() < 500) {
+                stored = new StoredResponse(recorder);
+            }
+        } finally {
+            if (stored == null) {
+                synchronized (executions) {
+                    executions.remove(scope, execution);
+                }
+            }
+            execution.response.complete(stored);
+            recorder.copyBodyToResponse();
+        }
+    }
+
+    private void replay(StoredResponse stored, HttpServletResponse response) throws IOException {
+        replayed.increment();
+        response.setStatus(stored.status);
+        stored.headers.forEach((name, values) -> values.forEach(value -> response.addHeader(name, value)));
+        response.setHeader(REPLAYED_HEADER, "true");
+        response.setContentLength(stored.body.length);
+        response.getOutputStream().write(stored.body);
+    }
+
+    // Called with the map locked, the entries are in start order so expired ones are all at the front
+    private void evictExpired(long now) {
+        Iterator<Execution> iterator = executions.values().iterator();
+        while (iterator.hasNext() && now - iterator.next().startedNanos >= ttlNanos) {
+            iterator.remove();
+        }
+    }
+
+    private static void reject(HttpServletResponse response, HttpStatus status, String message) throws IOException {
+        response.setStatus(status.value());
+        response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.getWriter().write(message);
+    }
+
+    private static byte[] sha256(byte[] body) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(body);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static final class Execution {
+        private final byte[] fingerprint;
+        private final long startedNanos;
+        // Completed with null when the request failed and nothing was kept
+        private final CompletableFuture<StoredResponse> response = new CompletableFuture<>();
+
+        private Execution(byte[] fingerprint, long startedNanos) {
+            this.fingerprint = fingerprint;
+            this.startedNanos = startedNanos;
+        }
+    }
+
+    private static final class StoredResponse {
+        private final int status;
+        private final Map<String, List<String>> headers = new LinkedHashMap<>();
+        private final byte[] body;
+
+        private StoredResponse(ContentCachingResponseWrapper recorded) {
+            this.status = recorded.getStatus();
+            for (String name : recorded.getHeaderNames()) {
+                if (!HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name)) {
+                    headers.put(name, new ArrayList<>(recorded.getHeaders(name)));
+                }
+            }
+            if (recorded.getContentType() != null) {
+                headers.put(HttpHeaders.CONTENT_TYPE, List.of(recorded.getContentType()));
+            }
+            this.body = recorded.getContentAsByteArray();
+        }
+    }
+
+    // The request body read up front, the fingerprint needs it before the controller reads it again
+    private static final class BufferedRequest extends HttpServletRequestWrapper {
+        private final byte[] body;
+
+        private BufferedRequest(HttpServletRequest request) throws IOException {
+            super(request);
+            this.body = request.getInputStream().readAllBytes();
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream in = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public int read() {
+                    return in.read();
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    return in.read(b, off, len);
+                }
+
+                @Override
+                public boolean isFinished() {
+                    return in.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                // The whole body is already in memory, so it is available and read completely right away
+                @Override
+                public void setReadListener(ReadListener readListener) {
+                    try {
+                        if (!isFinished()) {
+                            readListener.onDataAvailable();
+                        }
+                        if (isFinished()) {
+                            readListener.onAllDataRead();
+                        }
+                    } catch (IOException e) {
+                        readListener.onError(e);
+                    }
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            String encoding = getCharacterEncoding();
+            Charset charset = encoding != null ? Charset.forName(encoding) : StandardCharsets.UTF_8;
+            return new BufferedReader(new InputStreamReader(getInputStream(), charset));
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.springboot.pizzamanager.controller;
+
+// Converts between entity versions and the ETag / If-Match header values used for them
+final class IfMatch {
+
+    private IfMatch() {
+    }
+
+    // The ETag for an entity version, e.g. "3"
+    static String etag(Long version) {
+        return "\"" + version + "\"";
+    }
+
+    // The version named by an If-Match header, or null when the header is absent or "*".
+    // Weak validators are accepted since the version is the whole comparison anyway.
+    static Long version(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String value = ifMatch.trim();
+        if (value.startsWith("W/")) {
+            value = value.substring(2);
+        }
+        if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+            value = value.substring(1, value.length() - 1);
+        }
+        try {
+            return Long.valueOf(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("If-Match must name a single version such as \"3\".");
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.springboot.pizzamanager.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.springboot.pizzamanager.service.MenuExportService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+@CrossOrigin(origins = "http://localhost:3000")
+@RestController
+@RequestMapping("/api/menu")
+public class MenuController {
+
+    private final MenuEventBroadcaster menuEventBroadcaster;
+    private final MenuExportService menuExportService;
+    private final ObjectMapper objectMapper;
+
+    @Autowired
+    public MenuController(MenuEventBroadcaster menuEventBroadcaster, MenuExportService menuExportService,
+                          ObjectMapper objectMapper) {
+        this.menuEventBroadcaster = menuEventBroadcaster;
+        this.menuExportService = menuExportService;
+        this.objectMapper = objectMapper;
+    }
+
+    // Defines a GET endpoint streaming menu changes as Server-Sent Events
+    // Each event is named after its MenuChangeEvent type and carries a MenuEventMessage as data.
+    @GetMapping(path = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamMenuEvents() {
+        return menuEventBroadcaster.subscribe();
+    }
+
+    // Defines a GET endpoint exporting the whole menu as NDJSON, one PizzaResponse per line.
+    // Pizzas are written while the database cursor is read, the response is chunked and its first
+    // line is flushed right away, so neither the menu nor the response body is held in memory.
+    @GetMapping(path = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportMenu() {
+        StreamingResponseBody body = out -> {
+            boolean[] first = {true};
+            menuExportService.exportPizzas(pizza -> {
+                try {
+                    out.write(objectMapper.writeValueAsBytes(pizza));
+                    out.write('\n');
+                    if (first[0]) {
+                        out.flush();
+                        first[0] = false;
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            out.flush();
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"menu.ndjson\"")
+                .body(body);
+    }
+}
@@ -0,0 +1,192 @@
+package com.springboot.pizzamanager.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.springboot.pizzamanager.dto.MenuEventMessage;
+import com.springboot.pizzamanager.dto.ToppingDTO;
+import com.springboot.pizzamanager.service.MenuChangeEvent;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+// Fans committed menu changes out to Server-Sent Event subscribers.
+// Idle subscribers hold no request thread, only an async SseEmitter and a small bounded buffer.
+// Each change is encoded once and offered to every buffer; a subscriber whose buffer is full has
+// fallen too far behind and is disconnected, the browser then reconnects and reloads the lists.
+// Buffers are drained by a small shared pool, at most one drain per subscriber at a time.
+@Component
+public class MenuEventBroadcaster {
+
+    private static final Logger log = LoggerFactory.getLogger(MenuEventBroadcaster.class);
+
+    private final ObjectMapper objectMapper;
+    private final int bufferSize;
+    private final ExecutorService senders;
+    private final ScheduledExecutorService heartbeats;
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+
+    @Autowired
+    public MenuEventBroadcaster(ObjectMapper objectMapper,
+                                @Value("${pizzamanager.events.buffer-size:64}") int bufferSize,
+                                @Value("${pizzamanager.events.sender-threads:2}") int senderThreads,
+                                @Value("${pizzamanager.events.heartbeat-seconds:25}") long heartbeatSeconds) {
+        this(objectMapper, bufferSize,
+                Executors.newFixedThreadPool(senderThreads, new CustomizableThreadFactory("menu-events-")), heartbeatSeconds);
+    }
+
+    MenuEventBroadcaster(ObjectMapper objectMapper, int bufferSize, ExecutorService senders, long heartbeatSeconds) {
+        this.objectMapper = objectMapper;
+        this.bufferSize = bufferSize;
+        this.senders = senders;
+        this.heartbeats = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("menu-events-heartbeat-"));
+        if (heartbeatSeconds > 0) {
+            heartbeats.scheduleAtFixedRate(this::sendHeartbeats, heartbeatSeconds, heartbeatSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    // Registers a new subscriber, the emitter never times out on its own
+    public SseEmitter subscribe() {
+        Subscriber subscriber = new Subscriber(new SseEmitter(0L), bufferSize);
+        subscriber.emitter.onCompletion(() -> subscribers.remove(subscriber));
+        subscriber.emitter.onTimeout(() -> subscribers.remove(subscriber));
+        subscriber.emitter.onError(error -> subscribers.remove(subscriber));
+        subscribers.add(subscriber);
+        return subscriber.emitter;
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMenuChange(MenuChangeEvent event) {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        Outgoing outgoing = new Outgoing(event.getType().name(), encode(event));
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.buffer.offer(outgoing)) {
+                scheduleDrain(subscriber);
+            } else {
+                log.debug("Disconnecting slow menu event subscriber, {} events buffered", bufferSize);
+                disconnect(subscriber);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        heartbeats.shutdownNow();
+        senders.shutdownNow();
+        subscribers.forEach(subscriber -> subscriber.emitter.complete());
+        subscribers.clear();
+    }
+
+    private String encode(MenuChangeEvent event) {
+        MenuEventMessage message = new MenuEventMessage(
+                event.getType().name(),
+                event.getId(),
+                event.getPizza() != null ? PizzaController.convertToPizzaResponse(event.getPizza()) : null,
+                event.getTopping() != null ? new ToppingDTO(event.getTopping().getId(), event.getTopping().getName()) : null);
+        if (event.getType() == MenuChangeEvent.Type.PIZZA_TOPPINGS_CHANGED) {
+            message.setAddedToppings(event.getAddedToppings().stream()
+                    .map(topping -> new ToppingDTO(topping.getId(), topping.getName()))
+                    .collect(Collectors.toSet()));
+            message.setRemovedToppingIds(event.getRemovedToppingIds());
+            message.setVersion(event.getVersion());
+        }
+        try {
+            return objectMapper.writeValueAsString(message);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not encode menu event " + event, e);
+        }
+    }
+
+    private void scheduleDrain(Subscriber subscriber) {
+        if (subscriber.draining.compareAndSet(false, true)) {
+            senders.execute(() -> drain(subscriber));
+        }
+    }
+
+    private void drain(Subscriber subscriber) {
+        try {
+            Outgoing outgoing;
+            while ((outgoing = subscriber.buffer.poll()) != null) {
+                subscriber.emitter.send(SseEmitter.event()
+                        .name(outgoing.name)
+                        .data(outgoing.data, MediaType.APPLICATION_JSON));
+            }
+        } catch (IOException | IllegalStateException e) {
+            disconnect(subscriber);
+            return;
+        } finally {
+            subscriber.draining.set(false);
+        }
+        // An event may have been offered after the last poll but before the flag was cleared
+        if (!subscriber.buffer.isEmpty()) {
+            scheduleDrain(subscriber);
+        }
+    }
+
+    // Comment lines keep idle connections open through proxies and reveal dead clients
+    private void sendHeartbeats() {
+        for (Subscriber subscriber : subscribers) {
+            if (!subscriber.draining.get()) {
+                senders.execute(() -> {
+                    try {
+                        subscriber.emitter.send(SseEmitter.event().comment("keep-alive"));
+                    } catch (IOException | IllegalStateException e) {
+                        disconnect(subscriber);
+                    }
+                });
+            }
+        }
+    }
+
+    private void disconnect(Subscriber subscriber) {
+        if (subscribers.remove(subscriber)) {
+            subscriber.buffer.clear();
+            subscriber.emitter.complete();
+        }
+    }
+
+    private static final class Subscriber {
+        private final SseEmitter emitter;
+        private final Queue<Outgoing> buffer;
+        private final AtomicBoolean draining = new AtomicBoolean();
+
+        private Subscriber(SseEmitter emitter, int bufferSize) {
+            this.emitter = emitter;
+            this.buffer = new ArrayBlockingQueue<>(bufferSize);
+        }
+    }
+
+    private static final class Outgoing {
+        private final String name;
+        private final String data;
+
+        private Outgoing(String name, String data) {
+            this.name = name;
+            this.data = data;
+        }
+    }
+}
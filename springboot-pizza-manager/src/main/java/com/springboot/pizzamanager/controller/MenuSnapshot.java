@@ -0,0 +1,158 @@
+package com.springboot.pizzamanager.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.springboot.pizzamanager.dto.ToppingDTO;
+import com.springboot.pizzamanager.service.MenuChangeEvent;
+import com.springboot.pizzamanager.service.PizzaService;
+import com.springboot.pizzamanager.service.SingleFlight;
+import com.springboot.pizzamanager.service.ToppingCatalog;
+import com.springboot.pizzamanager.service.ToppingService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+// Holds the full pizza and topping listings as ready-to-send JSON bytes with a strong ETag.
+// A listing is encoded once after a menu change and then served from memory, so unchanged
+// GETs and If-None-Match revalidations touch neither the database nor Jackson. The requests that
+// find a listing dropped share a single load and encoding instead of each running their own.
+@Component
+public class MenuSnapshot implements MeterBinder {
+
+    public static final int LISTENER_ORDER = ToppingCatalog.LISTENER_ORDER + 10;
+
+    private final Listing pizzas;
+    private final Listing toppings;
+
+    @Autowired
+    public MenuSnapshot(PizzaService pizzaService, ToppingService toppingService, ObjectMapper objectMapper) {
+        this.pizzas = new Listing("menu.pizzas", () -> encode(objectMapper, pizzaService.findAllPizzas()));
+        this.toppings = new Listing("menu.toppings", () -> {
+            List<ToppingDTO> toppings = toppingService.findAllToppings().stream()
+                    .map(ToppingController::convertToToppingDTO)
+                    .collect(Collectors.toList());
+            return encode(objectMapper, toppings);
+        });
+    }
+
+    // The encoded GET /api/pizzas body
+    public Encoded pizzas() {
+        return pizzas.get();
+    }
+
+    // The encoded GET /api/toppings body
+    public Encoded toppings() {
+        return toppings.get();
+    }
+
+    // Drops the listings a committed change makes stale. A topping rename or delete also
+    // shows up inside the pizza listing, so it invalidates both. The topping listing is read from
+    // the ToppingCatalog, which must have applied the change first, or a GET in between would encode
+    // the old toppings again under a new ETag.
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(LISTENER_ORDER)
+    public void onMenuChange(MenuChangeEvent event) {
+        switch (event.getType()) {
+            case PIZZA_CREATED, PIZZA_UPDATED, PIZZA_DELETED, PIZZA_TOPPINGS_CHANGED -> pizzas.invalidate();
+            case TOPPING_CREATED -> toppings.invalidate();
+            default -> invalidate();
+        }
+    }
+
+    // Drops both listings, the next request encodes them again
+    public void invalidate() {
+        pizzas.invalidate();
+        toppings.invalidate();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        pizzas.flight.bindTo(registry);
+        toppings.flight.bindTo(registry);
+    }
+
+    private static Encoded encode(ObjectMapper objectMapper, Object body) {
+        try {
+            byte[] bytes = objectMapper.writeValueAsBytes(body);
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(bytes);
+            String etag = "\"" + HexFormat.of().formatHex(digest, 0, 16) + "\"";
+            return new Encoded(bytes, etag);
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Could not encode the menu.", e);
+        }
+    }
+
+    public static final class Encoded {
+        private final byte[] body;
+        private final String etag;
+
+        private Encoded(byte[] body, String etag) {
+            this.body = body;
+            this.etag = etag;
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+    }
+
+    // One cached listing. The generation is bumped on every invalidation, an encoding that
+    // started before the bump is still returned to its callers but never installed, and
+    // requests arriving after the bump start a new one rather than joining it.
+    private static final class Listing {
+        private final Supplier<Encoded> loader;
+        private final SingleFlight<Long, Encoded> flight;
+        private final AtomicReference<Encoded> current = new AtomicReference<>();
+        private final AtomicLong generation = new AtomicLong();
+
+        private Listing(String name, Supplier<Encoded> loader) {
+            this.loader = loader;
+            this.flight = new SingleFlight<>(name);
+        }
+
+        private Encoded get() {
+            Encoded encoded = current.get();
+            if (encoded != null) {
+                return encoded;
+            }
+            long seen = generation.get();
+            return flight.load(seen, () -> load(seen));
+        }
+
+        private Encoded load(long seen) {
+            // Installed by a load that completed after our miss
+            Encoded encoded = current.get();
+            if (encoded != null) {
+                return encoded;
+            }
+            encoded = loader.get();
+            synchronized (this) {
+                if (generation.get() == seen) {
+                    current.set(encoded);
+                }
+            }
+            return encoded;
+        }
+
+        private synchronized void invalidate() {
+            generation.incrementAndGet();
+            current.set(null);
+        }
+    }
+}
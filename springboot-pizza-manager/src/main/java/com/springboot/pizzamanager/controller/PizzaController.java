@@ -1,72 +1,144 @@
 package com.springboot.pizzamanager.controller;
 
+import com.springboot.pizzamanager.dto.BatchImportResponse;
+import com.springboot.pizzamanager.dto.DuplicateRecipeGroup;
 import com.springboot.pizzamanager.dto.PizzaRequest;
 import com.springboot.pizzamanager.dto.PizzaResponse;
 import com.springboot.pizzamanager.dto.PizzaUpdateRequest;
 import com.springboot.pizzamanager.dto.ToppingDTO;
+import com.springboot.pizzamanager.dto.ToppingDeltaRequest;
+import com.springboot.pizzamanager.dto.NameSuggestion;
 import com.springboot.pizzamanager.model.Pizza;
-import com.springboot.pizzamanager.model.Topping;
+import com.springboot.pizzamanager.service.DuplicateNameException;
+import com.springboot.pizzamanager.service.KeysetPage;
+import com.springboot.pizzamanager.service.PageCursor;
 import com.springboot.pizzamanager.service.PizzaService;
-import com.springboot.pizzamanager.service.ToppingService;
+import com.springboot.pizzamanager.service.ToppingDeltaBatcher;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.InputStream;
 import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
 
-@CrossOrigin(origins = "http://localhost:3000")
+@CrossOrigin(origins = "http://localhost:3000", exposedHeaders = {PizzaController.NEXT_CURSOR_HEADER, HttpHeaders.ETAG})
 @RestController
 @RequestMapping("/api/pizzas")
 public class PizzaController {
 
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
     private final PizzaService pizzaService;
-    private final ToppingService toppingService;
+    private final MenuSnapshot menuSnapshot;
+    private final BatchRequestReader batchRequestReader;
+    // Only present with pizzamanager.group-commit.enabled=true
+    private final ToppingDeltaBatcher toppingDeltaBatcher;
 
     @Autowired
-    public PizzaController(PizzaService pizzaService, ToppingService toppingService) {
+    public PizzaController(PizzaService pizzaService, MenuSnapshot menuSnapshot, BatchRequestReader batchRequestReader,
+                           ObjectProvider<ToppingDeltaBatcher> toppingDeltaBatcher) {
         this.pizzaService = pizzaService;
-        this.toppingService = toppingService;
+        this.menuSnapshot = menuSnapshot;
+        this.batchRequestReader = batchRequestReader;
+        this.toppingDeltaBatcher = toppingDeltaBatcher.getIfAvailable();
     }
 
     // Defines a GET endpoint to retrieve a pizza by its ID
-    // Returns a PizzaResponse DTO containing the pizza's details, including its toppings converted to ToppingDTO objects.
+    // Returns a PizzaResponse DTO containing the pizza's details, including its toppings as ToppingDTO objects.
+    // The version is also sent as the ETag, to be echoed in If-Match by later writes.
     @GetMapping("/{id}")
     public ResponseEntity<PizzaResponse> getPizzaById(@PathVariable Long id) {
-        Pizza pizza = pizzaService.findPizzaById(id)
+        PizzaResponse response = pizzaService.findPizzaById(id)
                 .orElseThrow(() -> new RuntimeException("Pizza not found"));
 
-        // convert Topping entities to ToppingDTO objects
-        Set<ToppingDTO> toppingDTOs = pizza.getToppings().stream()
-                .map(topping -> new ToppingDTO(topping.getId(), topping.getName()))
-                .collect(Collectors.toSet());
-
-        PizzaResponse response = new PizzaResponse(pizza.getId(), pizza.getName(), toppingDTOs);
-
-        return ResponseEntity.ok(response);
+        return ResponseEntity.ok().eTag(IfMatch.etag(response.getVersion())).body(response);
     }
     
     // Defines a GET endpoint to retrieve all pizzas.
-    // Returns a list of PizzaResponse DTOs for all pizzas in the database.
+    // Returns a list of PizzaResponse DTOs for all pizzas in the database, served as pre-encoded
+    // JSON from the menu snapshot. A matching If-None-Match gets a 304 without any work.
+    // When limit or cursor is given the list is keyset paginated instead, sorted by id or name,
+    // and the opaque cursor for the following page is returned in the X-Next-Cursor header.
     @GetMapping
-    public ResponseEntity<List<PizzaResponse>> getAllPizzas() {
-        List<Pizza> pizzas = pizzaService.findAllPizzas();
-        List<PizzaResponse> responses = pizzas.stream()
-                .map(pizza -> {
-                    Set<ToppingDTO> toppingDTOs = pizza.getToppings().stream()
-                            .map(topping -> new ToppingDTO(topping.getId(), topping.getName()))
-                            .collect(Collectors.toSet());
-                    return new PizzaResponse(pizza.getId(), pizza.getName(), toppingDTOs);
-                })
-                .collect(Collectors.toList());
+    public ResponseEntity<?> getAllPizzas(@RequestParam(required = false) Integer limit,
+                                          @RequestParam(required = false) String cursor,
+                                          @RequestParam(defaultValue = "id") String sort) {
+        if (limit == null && cursor == null) {
+            MenuSnapshot.Encoded listing = menuSnapshot.pizzas();
+            return ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .cacheControl(CacheControl.noCache())
+                    .eTag(listing.getEtag())
+                    .body(listing.getBody());
+        }
+
+        try {
+            KeysetPage<PizzaResponse> page = pizzaService.findPizzaPage(
+                    PageCursor.Sort.fromParam(sort), cursor, PageCursor.clampLimit(limit));
+
+            ResponseEntity.BodyBuilder builder = ResponseEntity.ok();
+            if (page.hasNext()) {
+                builder.header(NEXT_CURSOR_HEADER, page.getNextCursor());
+            }
+            return builder.body(page.getItems());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    // Defines a GET endpoint to find pizzas by their toppings, e.g. ?with=1,2&without=3 for pizzas with
+    // toppings 1 and 2 but not 3. with requires every listed topping, any at least one of them and
+    // without none of them. Results are ordered by id and paged like the listing, via limit and cursor.
+    @GetMapping("/search")
+    public ResponseEntity<?> searchPizzas(@RequestParam(defaultValue = "") Set<Long> with,
+                                          @RequestParam(defaultValue = "") Set<Long> any,
+                                          @RequestParam(defaultValue = "") Set<Long> without,
+                                          @RequestParam(required = false) Integer limit,
+                                          @RequestParam(required = false) String cursor) {
+        if (with.isEmpty() && any.isEmpty() && without.isEmpty()) {
+            return ResponseEntity.badRequest().body("At least one of with, any or without is required.");
+        }
+
+        try {
+            KeysetPage<PizzaResponse> page = pizzaService.searchPizzasByToppings(
+                    with, any, without, cursor, PageCursor.clampLimit(limit));
+
+            ResponseEntity.BodyBuilder builder = ResponseEntity.ok();
+            if (page.hasNext()) {
+                builder.header(NEXT_CURSOR_HEADER, page.getNextCursor());
+            }
+            return builder.body(page.getItems());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
 
-        return ResponseEntity.ok(responses);
+    // Defines a GET endpoint for name autocomplete, e.g. ?q=mar lists up to limit pizzas whose name starts
+    // with "mar", then those with a later word starting with it, each alphabetically. Case-insensitive.
+    @GetMapping("/suggest")
+    public List<NameSuggestion> suggestPizzas(@RequestParam("q") String q,
+                                              @RequestParam(defaultValue = "10") int limit) {
+        return pizzaService.suggestPizzas(q, limit);
+    }
+
+    // Defines a GET endpoint listing the groups of pizzas that share exactly the same toppings
+    @GetMapping("/duplicates")
+    public List<DuplicateRecipeGroup> getDuplicateRecipes() {
+        return pizzaService.findDuplicateRecipes().entrySet().stream()
+                .map(group -> new DuplicateRecipeGroup(group.getKey(), group.getValue()))
+                .collect(Collectors.toList());
     }
 
     // Defines a POST endpoint to create a new pizza with specified toppings
     // Accepts a PizzaRequest DTO, creates a new pizza, and returns a PizzaResponse DTO with the created pizza's details.
+    // The ETag carries the new pizza's version for a following conditional edit.
     @PostMapping
     public ResponseEntity<?> createPizzaWithToppings(@RequestBody PizzaRequest pizzaRequest) {
         try {
@@ -79,9 +151,14 @@ public class PizzaController {
             Set<ToppingDTO> toppingDTOs = newPizza.getToppings().stream()
                                                .map(topping -> new ToppingDTO(topping.getId(), topping.getName()))
                                                .collect(Collectors.toSet());
-            PizzaResponse pizzaResponse = new PizzaResponse(newPizza.getId(), newPizza.getName(), toppingDTOs);
+            PizzaResponse pizzaResponse = new PizzaResponse(newPizza.getId(), newPizza.getName(), toppingDTOs,
+                    newPizza.getVersion());
 
-            return new ResponseEntity<>(pizzaResponse, HttpStatus.CREATED);
+            return ResponseEntity.status(HttpStatus.CREATED)
+                    .eTag(IfMatch.etag(newPizza.getVersion()))
+                    .body(pizzaResponse);
+        } catch (DuplicateNameException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
         } catch (IllegalStateException e) {
             return ResponseEntity.badRequest().body(e.getMessage());
         } catch (Exception e) {
@@ -89,36 +166,91 @@ public class PizzaController {
         }
     }
 
+    // Defines a POST endpoint to create many pizzas at once from a JSON array or NDJSON body of PizzaRequests.
+    // Every item gets a result in request order, rejected items do not stop the valid ones from being created.
+    @PostMapping(value = "/batch", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<?> importPizzas(InputStream body) {
+        try {
+            List<PizzaRequest> requests = batchRequestReader.read(body, PizzaRequest.class);
+            BatchImportResponse response = pizzaService.importPizzas(requests);
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
     // Defines a DELETE endpoint to remove a pizza by its ID
+    // With an If-Match header the pizza is only deleted while it is still at that version, otherwise 409 Conflict
     @DeleteMapping("/{id}")
-    public ResponseEntity<?> deletePizza(@PathVariable Long id) {
-        pizzaService.deletePizza(id);
+    public ResponseEntity<?> deletePizza(@PathVariable Long id,
+                                         @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        pizzaService.deletePizza(id, IfMatch.version(ifMatch));
         return ResponseEntity.ok().build();
     }
 
     // Defines a PUT endpoint to update an existing pizza's name and/or toppings based on a PizzaUpdateRequest DTO
+    // With an If-Match header the update only applies to that version of the pizza, otherwise 409 Conflict.
+    // A concurrent write that commits first also ends in 409, the update is never silently lost.
+    // An unknown pizza or topping, or a recipe another pizza already has, answers 400 Bad Request.
     @PutMapping("/{id}")
-    public ResponseEntity<PizzaResponse> updatePizza(@PathVariable Long id, @RequestBody PizzaUpdateRequest updateRequest) {
-        Pizza updatedPizza = pizzaService.updatePizza(id, updateRequest);
-        // Conversion of Pizza to PizzaResponse
-        PizzaResponse response = convertToPizzaResponse(updatedPizza);
-        return ResponseEntity.ok(response);
+    public ResponseEntity<?> updatePizza(@PathVariable Long id, @RequestBody PizzaUpdateRequest updateRequest,
+                                         @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        try {
+            Pizza updatedPizza = pizzaService.updatePizza(id, updateRequest, IfMatch.version(ifMatch));
+            // Conversion of Pizza to PizzaResponse
+            PizzaResponse response = convertToPizzaResponse(updatedPizza);
+            return ResponseEntity.ok().eTag(IfMatch.etag(updatedPizza.getVersion())).body(response);
+        } catch (IllegalStateException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
     }
     
-    private PizzaResponse convertToPizzaResponse(Pizza pizza) {
+    static PizzaResponse convertToPizzaResponse(Pizza pizza) {
         Set<ToppingDTO> toppingDTOs = pizza.getToppings().stream()
                 .map(topping -> new ToppingDTO(topping.getId(), topping.getName()))
                 .collect(Collectors.toSet());
-        return new PizzaResponse(pizza.getId(), pizza.getName(), toppingDTOs);
+        return new PizzaResponse(pizza.getId(), pizza.getName(), toppingDTOs, pizza.getVersion());
     }
 
     // Defines a POST endpoint to add a topping to a pizza
-    // Takes the pizza's ID and the topping's ID, adds the topping to the pizza, and returns the updated pizza
+    // Inserts the one join row unless the pizza already has the topping, answers 204 No Content
     @PostMapping("/{pizzaId}/toppings/{toppingId}")
-    public Pizza addToppingToPizza(@PathVariable Long pizzaId, @PathVariable Long toppingId) {
-        Topping topping = toppingService.findToppingById(toppingId)
-                .orElseThrow(() -> new IllegalArgumentException("Topping not found"));
-        return pizzaService.addToppingToPizza(pizzaId, topping);
+    public ResponseEntity<?> addToppingToPizza(@PathVariable Long pizzaId, @PathVariable Long toppingId,
+                                               @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        return changeToppings(pizzaId, Set.of(toppingId), Set.of(), ifMatch);
+    }
+
+    // Defines a DELETE endpoint to remove a topping from a pizza, deleting only its join row
+    @DeleteMapping("/{pizzaId}/toppings/{toppingId}")
+    public ResponseEntity<?> removeToppingFromPizza(@PathVariable Long pizzaId, @PathVariable Long toppingId,
+                                                    @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        return changeToppings(pizzaId, Set.of(), Set.of(toppingId), ifMatch);
+    }
+
+    // Defines a PATCH endpoint applying a ToppingDeltaRequest, lists of topping ids to add and to remove
+    // Without If-Match a delta that races with another write is retried on the server, with If-Match it
+    // only applies to that version of the pizza and answers 409 Conflict otherwise
+    @PatchMapping("/{pizzaId}/toppings")
+    public ResponseEntity<?> changePizzaToppings(@PathVariable Long pizzaId, @RequestBody ToppingDeltaRequest delta,
+                                                 @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        return changeToppings(pizzaId, delta.getAdd(), delta.getRemove(), ifMatch);
+    }
+
+    // With group commit on, deltas without If-Match are committed together with others sent at the same time.
+    // The ETag names the pizza's version after the delta, so the next conditional edit needs no GET first.
+    private ResponseEntity<?> changeToppings(Long pizzaId, Set<Long> add, Set<Long> remove, String ifMatch) {
+        try {
+            Long expectedVersion = IfMatch.version(ifMatch);
+            Long version;
+            if (expectedVersion == null && toppingDeltaBatcher != null) {
+                version = toppingDeltaBatcher.changePizzaToppings(pizzaId, add, remove);
+            } else {
+                version = pizzaService.changePizzaToppings(pizzaId, add, remove, expectedVersion);
+            }
+            return ResponseEntity.noContent().eTag(IfMatch.etag(version)).build();
+        } catch (IllegalStateException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
     }
 
 }
@@ -0,0 +1,72 @@
+package com.springboot.pizzamanager.controller;
+
+import com.springboot.pizzamanager.metrics.StatementBudgetExceededException;
+import com.springboot.pizzamanager.service.DuplicateNameException;
+import com.springboot.pizzamanager.service.GroupCommitTimeoutException;
+import com.springboot.pizzamanager.service.ToppingInUseException;
+import com.springboot.pizzamanager.service.VersionConflictException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+// Maps exceptions that can come out of any controller to HTTP responses
+@RestControllerAdvice
+public class RestExceptionHandler {
+
+    // A write lost against a concurrent change, the client should reload and try again
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<String> handleConflict(OptimisticLockingFailureException e) {
+        String message = e instanceof VersionConflictException
+                ? e.getMessage()
+                : "The resource was changed by someone else, reload it and try again.";
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(message);
+    }
+
+    // A name already taken by another pizza or topping, raised by the unique constraint
+    @ExceptionHandler(DuplicateNameException.class)
+    public ResponseEntity<String> handleDuplicateName(DuplicateNameException e) {
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+    }
+
+    // A topping deleted while pizzas still use it, without asking to detach it
+    @ExceptionHandler(ToppingInUseException.class)
+    public ResponseEntity<String> handleToppingInUse(ToppingInUseException e) {
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+    }
+
+    // Malformed request input that no controller handled itself, such as an If-Match header naming no version
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<String> handleBadRequest(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body(e.getMessage());
+    }
+
+    // A request stopped for running more SQL statements than the statement budget allows, its
+    // transaction is rolled back. A defect on the server side, not something the client can fix
+    @ExceptionHandler(StatementBudgetExceededException.class)
+    public ResponseEntity<String> handleStatementBudgetExceeded(StatementBudgetExceededException e) {
+        return ResponseEntity.internalServerError().body(e.getMessage());
+    }
+
+    // No database connection could be checked out in time, because the JDBC limiter or the pool is
+    // saturated. The request did nothing, the client may send it again shortly
+    @ExceptionHandler({CannotCreateTransactionException.class, DataAccessResourceFailureException.class})
+    public ResponseEntity<String> handleNoConnection(RuntimeException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body("The database is busy, try again shortly.");
+    }
+
+    // A topping delta queued for group commit did not report its commit in time. Deltas only add and
+    // remove toppings, so sending the same one again is safe
+    @ExceptionHandler(GroupCommitTimeoutException.class)
+    public ResponseEntity<String> handleGroupCommitTimeout(GroupCommitTimeoutException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(e.getMessage() + " Send it again shortly.");
+    }
+}
@@ -1,47 +1,142 @@
 package com.springboot.pizzamanager.controller;
 
+import com.springboot.pizzamanager.dto.BatchImportResponse;
+import com.springboot.pizzamanager.dto.CatalogStats;
+import com.springboot.pizzamanager.dto.ToppingDTO;
+import com.springboot.pizzamanager.dto.NameSuggestion;
 import com.springboot.pizzamanager.model.Topping;
+import com.springboot.pizzamanager.service.KeysetPage;
+import com.springboot.pizzamanager.service.PageCursor;
 import com.springboot.pizzamanager.service.ToppingService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+
+import java.io.InputStream;
 import java.util.List;
 
-@CrossOrigin(origins = "http://localhost:3000")
+@CrossOrigin(origins = "http://localhost:3000", exposedHeaders = {ToppingController.NEXT_CURSOR_HEADER, HttpHeaders.ETAG})
 @RestController
 @RequestMapping("/api/toppings")
 public class ToppingController {
 
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
     private final ToppingService toppingService;
+    private final MenuSnapshot menuSnapshot;
+    private final BatchRequestReader batchRequestReader;
 
     @Autowired
-    public ToppingController(ToppingService toppingService) {
+    public ToppingController(ToppingService toppingService, MenuSnapshot menuSnapshot,
+                             BatchRequestReader batchRequestReader) {
         this.toppingService = toppingService;
+        this.menuSnapshot = menuSnapshot;
+        this.batchRequestReader = batchRequestReader;
     }
 
-    // Defines a GET endpoint to retrieve all toppings
+    // Defines a GET endpoint to retrieve all toppings, served as pre-encoded JSON from the menu snapshot
+    // together with a strong ETag so If-None-Match revalidations can be answered with a 304.
+    // When limit or cursor is given the list is keyset paginated instead, sorted by id or name,
+    // and the opaque cursor for the following page is returned in the X-Next-Cursor header.
+    // With includeUsage=true every topping also carries the number of pizzas using it.
     @GetMapping
-    public List<Topping> getAllToppings() {
-        return toppingService.findAllToppings();
+    public ResponseEntity<?> getAllToppings(@RequestParam(required = false) Integer limit,
+                                            @RequestParam(required = false) String cursor,
+                                            @RequestParam(defaultValue = "id") String sort,
+                                            @RequestParam(defaultValue = "false") boolean includeUsage) {
+        if (includeUsage && limit == null && cursor == null) {
+            return ResponseEntity.ok(toppingService.findAllToppingsWithUsage());
+        }
+        if (limit == null && cursor == null) {
+            MenuSnapshot.Encoded listing = menuSnapshot.toppings();
+            return ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .cacheControl(CacheControl.noCache())
+                    .eTag(listing.getEtag())
+                    .body(listing.getBody());
+        }
+
+        try {
+            KeysetPage<ToppingDTO> page = toppingService.findToppingPage(
+                    PageCursor.Sort.fromParam(sort), cursor, PageCursor.clampLimit(limit));
+            if (!includeUsage) {
+                page.getItems().forEach(topping -> topping.setUsageCount(null));
+            }
+
+            ResponseEntity.BodyBuilder builder = ResponseEntity.ok();
+            if (page.hasNext()) {
+                builder.header(NEXT_CURSOR_HEADER, page.getNextCursor());
+            }
+            return builder.body(page.getItems());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    // Defines a GET endpoint for name autocomplete, e.g. ?q=pep lists up to limit toppings whose name starts
+    // with "pep", then those with a later word starting with it, each alphabetically. Case-insensitive.
+    @GetMapping("/suggest")
+    public List<NameSuggestion> suggestToppings(@RequestParam("q") String q,
+                                                @RequestParam(defaultValue = "10") int limit) {
+        return toppingService.suggestToppings(q, limit);
+    }
+
+    // Defines a GET endpoint exposing the hit, miss and rebuild counters of the in-memory topping catalog
+    @GetMapping("/catalog/stats")
+    public CatalogStats getCatalogStats() {
+        return toppingService.getCatalogStats();
     }
 
     // Defines a POST endpoint to creates a new topping
-    // Returns Topping object
+    // Returns the created topping as a ToppingDTO, with the version to send in If-Match also as its ETag
     @PostMapping
-    public Topping addTopping(@RequestBody Topping topping) {
-        return toppingService.addTopping(topping);
+    public ResponseEntity<ToppingDTO> addTopping(@RequestBody Topping topping) {
+        Topping created = toppingService.addTopping(topping);
+        return ResponseEntity.ok().eTag(IfMatch.etag(created.getVersion())).body(convertToToppingDTO(created));
+    }
+
+    // Defines a POST endpoint to create many toppings at once from a JSON array or NDJSON body of {"name": ...} items
+    // Returns a result per item in request order, duplicates and invalid names are skipped
+    @PostMapping(value = "/batch", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<?> importToppings(InputStream body) {
+        try {
+            List<ToppingDTO> requests = batchRequestReader.read(body, ToppingDTO.class);
+            BatchImportResponse response = toppingService.importToppings(requests);
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
     }
 
     // Defines a DELETE endpoint to remove a topping by its ID
+    // With an If-Match header the topping is only deleted while it is still at that version, otherwise 409 Conflict.
+    // A topping used by pizzas answers 409 Conflict too, unless detach=true removes it from all of them first.
     @DeleteMapping("/{id}")
-    public ResponseEntity<?> deleteTopping(@PathVariable Long id) {
-        toppingService.deleteTopping(id);
+    public ResponseEntity<?> deleteTopping(@PathVariable Long id,
+                                           @RequestParam(defaultValue = "false") boolean detach,
+                                           @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        toppingService.deleteTopping(id, IfMatch.version(ifMatch), detach);
         return ResponseEntity.ok().build();
     }
 
     // Defines a PUT endpoint to update the details of an existing topping by it's id
+    // With an If-Match header the update only applies to that version of the topping, otherwise 409 Conflict.
+    // A topping that does not exist (anymore) answers 400 Bad Request. The new version comes back as the ETag.
     @PutMapping("/{id}")
-    public Topping updateTopping(@PathVariable Long id, @RequestBody Topping topping) {
-        return toppingService.updateTopping(id, topping);
+    public ResponseEntity<?> updateTopping(@PathVariable Long id, @RequestBody Topping topping,
+                                           @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        try {
+            Topping updated = toppingService.updateTopping(id, topping, IfMatch.version(ifMatch));
+            return ResponseEntity.ok().eTag(IfMatch.etag(updated.getVersion())).body(convertToToppingDTO(updated));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    static ToppingDTO convertToToppingDTO(Topping topping) {
+        return new ToppingDTO(topping.getId(), topping.getName(), topping.getVersion(), null);
     }
 }
@@ -0,0 +1,45 @@
+package com.springboot.pizzamanager.dto;
+
+import java.util.List;
+
+public class BatchImportResponse {
+    private int created;
+    private int rejected;
+    private List<BatchItemResult> items;
+
+    // Default constructor
+    public BatchImportResponse() {
+    }
+
+    // Builds the response from the per-item results, which are listed in request order
+    public BatchImportResponse(List<BatchItemResult> items) {
+        this.items = items;
+        this.created = (int) items.stream().filter(item -> BatchItemResult.CREATED.equals(item.getStatus())).count();
+        this.rejected = items.size() - created;
+    }
+
+    // Getters and Setters
+    public int getCreated() {
+        return created;
+    }
+
+    public void setCreated(int created) {
+        this.created = created;
+    }
+
+    public int getRejected() {
+        return rejected;
+    }
+
+    public void setRejected(int rejected) {
+        this.rejected = rejected;
+    }
+
+    public List<BatchItemResult> getItems() {
+        return items;
+    }
+
+    public void setItems(List<BatchItemResult> items) {
+        this.items = items;
+    }
+}
@@ -0,0 +1,74 @@
+package com.springboot.pizzamanager.dto;
+
+public class BatchItemResult {
+    public static final String CREATED = "CREATED";
+    public static final String REJECTED = "REJECTED";
+
+    private int index;
+    private String name;
+    private String status;
+    private Long id;
+    private String error;
+
+    // Default constructor
+    public BatchItemResult() {
+    }
+
+    // Constructor with all fields
+    public BatchItemResult(int index, String name, String status, Long id, String error) {
+        this.index = index;
+        this.name = name;
+        this.status = status;
+        this.id = id;
+        this.error = error;
+    }
+
+    public static BatchItemResult created(int index, String name, Long id) {
+        return new BatchItemResult(index, name, CREATED, id, null);
+    }
+
+    public static BatchItemResult rejected(int index, String name, String error) {
+        return new BatchItemResult(index, name, REJECTED, null, error);
+    }
+
+    // Getters and Setters
+    public int getIndex() {
+        return index;
+    }
+
+    public void setIndex(int index) {
+        this.index = index;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+}
@@ -0,0 +1,53 @@
+package com.springboot.pizzamanager.dto;
+
+public class CatalogStats {
+    private long hits;
+    private long misses;
+    private long rebuilds;
+    private int size;
+
+    // Default constructor
+    public CatalogStats() {
+    }
+
+    // Constructor with all fields
+    public CatalogStats(long hits, long misses, long rebuilds, int size) {
+        this.hits = hits;
+        this.misses = misses;
+        this.rebuilds = rebuilds;
+        this.size = size;
+    }
+
+    // Getters and Setters
+    public long getHits() {
+        return hits;
+    }
+
+    public void setHits(long hits) {
+        this.hits = hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public void setMisses(long misses) {
+        this.misses = misses;
+    }
+
+    public long getRebuilds() {
+        return rebuilds;
+    }
+
+    public void setRebuilds(long rebuilds) {
+        this.rebuilds = rebuilds;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public void setSize(int size) {
+        this.size = size;
+    }
+}
@@ -0,0 +1,35 @@
+package com.springboot.pizzamanager.dto;
+
+import java.util.List;
+
+public class DuplicateRecipeGroup {
+    private String toppingSignature;
+    private List<PizzaResponse> pizzas;
+
+    // Default constructor
+    public DuplicateRecipeGroup() {
+    }
+
+    // Constructor with all fields
+    public DuplicateRecipeGroup(String toppingSignature, List<PizzaResponse> pizzas) {
+        this.toppingSignature = toppingSignature;
+        this.pizzas = pizzas;
+    }
+
+    // Getters and Setters
+    public String getToppingSignature() {
+        return toppingSignature;
+    }
+
+    public void setToppingSignature(String toppingSignature) {
+        this.toppingSignature = toppingSignature;
+    }
+
+    public List<PizzaResponse> getPizzas() {
+        return pizzas;
+    }
+
+    public void setPizzas(List<PizzaResponse> pizzas) {
+        this.pizzas = pizzas;
+    }
+}
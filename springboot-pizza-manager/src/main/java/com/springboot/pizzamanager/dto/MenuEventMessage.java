@@ -0,0 +1,85 @@
+package com.springboot.pizzamanager.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.Set;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class MenuEventMessage {
+    private String type;
+    private Long id;
+    private PizzaResponse pizza;
+    private ToppingDTO topping;
+    private Set<ToppingDTO> addedToppings;
+    private Set<Long> removedToppingIds;
+    private Long version;
+
+    // Default constructor
+    public MenuEventMessage() {
+    }
+
+    // Constructor with all fields
+    public MenuEventMessage(String type, Long id, PizzaResponse pizza, ToppingDTO topping) {
+        this.type = type;
+        this.id = id;
+        this.pizza = pizza;
+        this.topping = topping;
+    }
+
+    // Getters and Setters
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public PizzaResponse getPizza() {
+        return pizza;
+    }
+
+    public void setPizza(PizzaResponse pizza) {
+        this.pizza = pizza;
+    }
+
+    public ToppingDTO getTopping() {
+        return topping;
+    }
+
+    public void setTopping(ToppingDTO topping) {
+        this.topping = topping;
+    }
+
+    public Set<ToppingDTO> getAddedToppings() {
+        return addedToppings;
+    }
+
+    public void setAddedToppings(Set<ToppingDTO> addedToppings) {
+        this.addedToppings = addedToppings;
+    }
+
+    public Set<Long> getRemovedToppingIds() {
+        return removedToppingIds;
+    }
+
+    public void setRemovedToppingIds(Set<Long> removedToppingIds) {
+        this.removedToppingIds = removedToppingIds;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+}
@@ -0,0 +1,33 @@
+package com.springboot.pizzamanager.dto;
+
+public class NameSuggestion {
+    private Long id;
+    private String name;
+
+    // Default constructor
+    public NameSuggestion() {
+    }
+
+    // Constructor with all fields
+    public NameSuggestion(Long id, String name) {
+        this.id = id;
+        this.name = name;
+    }
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+}
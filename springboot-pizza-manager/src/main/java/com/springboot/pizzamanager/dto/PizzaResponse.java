@@ -1,11 +1,16 @@
 package com.springboot.pizzamanager.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.LinkedHashSet;
 import java.util.Set;
 
 public class PizzaResponse {
     private Long id;
     private String name;
     private Set<ToppingDTO> toppings;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long version;
 
     // Default constructor
     public PizzaResponse() {
@@ -18,6 +23,18 @@ public class PizzaResponse {
         this.toppings = toppings;
     }
 
+    // Constructor without the toppings, used by the JPQL constructor expression of the page queries.
+    // The toppings are added afterwards.
+    public PizzaResponse(Long id, String name, Long version) {
+        this(id, name, new LinkedHashSet<>(), version);
+    }
+
+    // Constructor including the version, which clients send back in If-Match
+    public PizzaResponse(Long id, String name, Set<ToppingDTO> toppings, Long version) {
+        this(id, name, toppings);
+        this.version = version;
+    }
+
     // Getters and Setters
     public Long getId() {
         return id;
@@ -42,4 +59,12 @@ public class PizzaResponse {
     public void setToppings(Set<ToppingDTO> toppings) {
         this.toppings = toppings;
     }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
 }
@@ -0,0 +1,65 @@
+package com.springboot.pizzamanager.dto;
+
+// One row of the pizza read queries, a pizza joined with one of its toppings, selected straight into
+// this DTO so reads load no entities. Pizzas without toppings come through once with a null topping.
+public class PizzaToppingRow {
+    private Long pizzaId;
+    private String pizzaName;
+    private Long pizzaVersion;
+    private Long toppingId;
+    private String toppingName;
+
+    // Default constructor
+    public PizzaToppingRow() {
+    }
+
+    // Constructor with all fields, used by the JPQL constructor expression
+    public PizzaToppingRow(Long pizzaId, String pizzaName, Long pizzaVersion, Long toppingId, String toppingName) {
+        this.pizzaId = pizzaId;
+        this.pizzaName = pizzaName;
+        this.pizzaVersion = pizzaVersion;
+        this.toppingId = toppingId;
+        this.toppingName = toppingName;
+    }
+
+    // Getters and Setters
+    public Long getPizzaId() {
+        return pizzaId;
+    }
+
+    public void setPizzaId(Long pizzaId) {
+        this.pizzaId = pizzaId;
+    }
+
+    public String getPizzaName() {
+        return pizzaName;
+    }
+
+    public void setPizzaName(String pizzaName) {
+        this.pizzaName = pizzaName;
+    }
+
+    public Long getPizzaVersion() {
+        return pizzaVersion;
+    }
+
+    public void setPizzaVersion(Long pizzaVersion) {
+        this.pizzaVersion = pizzaVersion;
+    }
+
+    public Long getToppingId() {
+        return toppingId;
+    }
+
+    public void setToppingId(Long toppingId) {
+        this.toppingId = toppingId;
+    }
+
+    public String getToppingName() {
+        return toppingName;
+    }
+
+    public void setToppingName(String toppingName) {
+        this.toppingName = toppingName;
+    }
+}
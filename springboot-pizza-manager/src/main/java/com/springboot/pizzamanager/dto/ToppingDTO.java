@@ -1,8 +1,16 @@
 package com.springboot.pizzamanager.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 public class ToppingDTO {
     private Long id;
     private String name;
+    // Number of pizzas using the topping, only filled in when asked for
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long usageCount;
+    // Sent back in If-Match by topping writes, left out of the toppings listed inside a pizza
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long version;
 
     // Default constructor
     public ToppingDTO() {
@@ -14,6 +22,20 @@ public class ToppingDTO {
         this.name = name;
     }
 
+    public ToppingDTO(Long id, String name, Long usageCount) {
+        this.id = id;
+        this.name = name;
+        this.usageCount = usageCount;
+    }
+
+    // Constructor with all fields, used by the JPQL constructor expression of the topping queries
+    public ToppingDTO(Long id, String name, Long version, Long usageCount) {
+        this.id = id;
+        this.name = name;
+        this.version = version;
+        this.usageCount = usageCount;
+    }
+
     // Getters and Setters
     public Long getId() {
         return id;
@@ -31,6 +53,22 @@ public class ToppingDTO {
         this.name = name;
     }
 
+    public Long getUsageCount() {
+        return usageCount;
+    }
+
+    public void setUsageCount(Long usageCount) {
+        this.usageCount = usageCount;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     // toString method for debugging
     @Override
     public String toString() {
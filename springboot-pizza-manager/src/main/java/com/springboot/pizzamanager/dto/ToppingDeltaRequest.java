@@ -0,0 +1,35 @@
+package com.springboot.pizzamanager.dto;
+
+import java.util.Set;
+
+public class ToppingDeltaRequest {
+    private Set<Long> add;
+    private Set<Long> remove;
+
+    // Default constructor
+    public ToppingDeltaRequest() {
+    }
+
+    // Constructor with parameters
+    public ToppingDeltaRequest(Set<Long> add, Set<Long> remove) {
+        this.add = add;
+        this.remove = remove;
+    }
+
+    // Getters and Setters
+    public Set<Long> getAdd() {
+        return add;
+    }
+
+    public void setAdd(Set<Long> add) {
+        this.add = add;
+    }
+
+    public Set<Long> getRemove() {
+        return remove;
+    }
+
+    public void setRemove(Set<Long> remove) {
+        this.remove = remove;
+    }
+}
@@ -0,0 +1,26 @@
+package com.springboot.pizzamanager.metrics;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+
+// Bytes allocated on the heap by all threads since the JVM started, its rate is the allocation rate.
+// Exact at every scrape, unlike jvm.gc.memory.allocated which only moves when a collection runs.
+@Component
+public class JvmAllocationMetrics implements MeterBinder {
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads
+                && threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled()) {
+            FunctionCounter.builder("jvm.memory.allocated", threads,
+                            com.sun.management.ThreadMXBean::getTotalThreadAllocatedBytes)
+                    .description("Bytes allocated on the heap by all threads")
+                    .baseUnit("bytes")
+                    .register(registry);
+        }
+    }
+}
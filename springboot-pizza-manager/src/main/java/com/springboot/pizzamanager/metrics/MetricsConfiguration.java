@@ -0,0 +1,14 @@
+package com.springboot.pizzamanager.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class MetricsConfiguration {
+
+    @Bean
+    public RequestQueryMetricsFilter requestQueryMetricsFilter(MeterRegistry meterRegistry, StatementBudget statementBudget) {
+        return new RequestQueryMetricsFilter(meterRegistry, statementBudget);
+    }
+}
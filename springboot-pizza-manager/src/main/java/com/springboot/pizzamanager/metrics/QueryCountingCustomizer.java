@@ -0,0 +1,47 @@
+package com.springboot.pizzamanager.metrics;
+
+import org.hibernate.boot.Metadata;
+import org.hibernate.boot.spi.BootstrapContext;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.InitializeCollectionEventListener;
+import org.hibernate.event.spi.PostLoadEventListener;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.jpa.boot.spi.IntegratorProvider;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+
+// Hooks RequestQueryCounter into Hibernate: event listeners see every entity loaded and every lazy
+// collection initialized. SQL statements are counted one level down, by QueryCountingDataSource.
+@Component
+public class QueryCountingCustomizer implements HibernatePropertiesCustomizer {
+
+    private static final String INTEGRATOR_PROVIDER = "hibernate.integrator_provider";
+
+    @Override
+    public void customize(Map<String, Object> hibernateProperties) {
+        hibernateProperties.put(INTEGRATOR_PROVIDER, (IntegratorProvider) () -> List.of(new ListenerIntegrator()));
+    }
+
+    private static final class ListenerIntegrator implements Integrator {
+
+        @Override
+        public void integrate(Metadata metadata, BootstrapContext bootstrapContext,
+                              SessionFactoryImplementor sessionFactory) {
+            EventListenerRegistry listeners = sessionFactory.getServiceRegistry().getService(EventListenerRegistry.class);
+            listeners.appendListeners(EventType.POST_LOAD,
+                    (PostLoadEventListener) event -> RequestQueryCounter.entityLoaded());
+            listeners.appendListeners(EventType.INIT_COLLECTION,
+                    (InitializeCollectionEventListener) event -> RequestQueryCounter.collectionFetched());
+        }
+
+        @Override
+        public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.springboot.pizzamanager.metrics;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Set;
+
+// Hooks RequestQueryCounter into JDBC: every connection handed out by the data source reports the SQL
+// statements prepared on it. Counting below Hibernate also covers the statements sent through JdbcTemplate,
+// such as the usage counters and topping deltas of ToppingUsageRepository, which Hibernate never sees.
+// A batch is one statement however many rows it carries, like Hibernate's own batches.
+@Component
+public class QueryCountingDataSource implements BeanPostProcessor {
+
+    // Statement methods that run SQL given as text rather than a prepared statement
+    private static final Set<String> EXECUTING = Set.of("execute", "executeQuery", "executeUpdate",
+            "executeLargeUpdate", "addBatch");
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource dataSource && !(bean instanceof CountingDataSource)) {
+            return new CountingDataSource(dataSource);
+        }
+        return bean;
+    }
+
+    private static Connection counting(Connection connection) {
+        return proxy(Connection.class, (method, args) -> {
+            String name = method.getName();
+            if ((name.equals("prepareStatement") || name.equals("prepareCall")) && args[0] instanceof String sql) {
+                RequestQueryCounter.statementPrepared(sql);
+            }
+            Object result = method.invoke(connection, args);
+            return name.equals("createStatement") ? counting((Statement) result) : result;
+        });
+    }
+
+    private static Statement counting(Statement statement) {
+        return proxy(Statement.class, (method, args) -> {
+            if (EXECUTING.contains(method.getName()) && args != null && args.length > 0
+                    && args[0] instanceof String sql) {
+                RequestQueryCounter.statementPrepared(sql);
+            }
+            return method.invoke(statement, args);
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, Invocation invocation) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            try {
+                return invocation.invoke(method, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        });
+    }
+
+    private interface Invocation {
+        Object invoke(Method method, Object[] args) throws Exception;
+    }
+
+    private static final class CountingDataSource extends DelegatingDataSource {
+
+        private CountingDataSource(DataSource target) {
+            super(target);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            return counting(obtainTargetDataSource().getConnection());
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            return counting(obtainTargetDataSource().getConnection(username, password));
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.springboot.pizzamanager.metrics;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+// Counts the database work done on the current thread between begin() and end(): SQL statements
+// prepared, through Hibernate or JdbcTemplate alike, entities loaded and lazy collections fetched. Requests run their persistence work on the
+// thread that serves them, so the counts of one request are not mixed with those of another.
+// Counting can be nested, what an inner begin()/end() counted is added to the outer counts as well.
+public final class RequestQueryCounter {
+
+    private static final ThreadLocal<Counts> CURRENT = new ThreadLocal<>();
+
+    private RequestQueryCounter() {
+    }
+
+    public static void begin() {
+        begin(0);
+    }
+
+    // Starts counting, failing the statement that would go over maxStatements with a
+    // StatementBudgetExceededException. Zero or less counts without a limit
+    public static void begin(int maxStatements) {
+        CURRENT.set(new Counts(CURRENT.get(), maxStatements));
+    }
+
+    // Stops counting and returns what was counted since begin(), or nothing when counting was not started
+    public static Counts end() {
+        Counts counts = CURRENT.get();
+        if (counts == null) {
+            return null;
+        }
+        if (counts.outer == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(counts.outer);
+            counts.outer.add(counts);
+        }
+        return counts;
+    }
+
+    static void statementPrepared(String sql) {
+        Counts counts = CURRENT.get();
+        if (counts != null) {
+            counts.statements++;
+            counts.statementsBySql.merge(sql, 1, Integer::sum);
+            if (counts.maxStatements > 0 && counts.statements > counts.maxStatements) {
+                throw new StatementBudgetExceededException(counts.maxStatements);
+            }
+        }
+    }
+
+    static void entityLoaded() {
+        Counts counts = CURRENT.get();
+        if (counts != null) {
+            counts.entityLoads++;
+        }
+    }
+
+    static void collectionFetched() {
+        Counts counts = CURRENT.get();
+        if (counts != null) {
+            counts.collectionFetches++;
+        }
+    }
+
+    // The shape of a statement: literals and lists of parameters of any length become a single ?, so the
+    // same query for different ids or different numbers of ids has the same shape. A single pass by hand,
+    // statements with thousands of parameters are too long for backtracking regular expressions
+    static String shapeOf(String sql) {
+        StringBuilder shape = new StringBuilder(Math.min(sql.length(), 256));
+        int length = sql.length();
+        int i = 0;
+        while (i < length) {
+            char c = sql.charAt(i);
+            if (c == '\'') {
+                // A string literal, a doubled quote inside it is an escaped quote
+                i++;
+                while (i < length && (sql.charAt(i) != '\'' || (i + 1 < length && sql.charAt(i + 1) == '\''))) {
+                    i += sql.charAt(i) == '\'' ? 2 : 1;
+                }
+                i++;
+                appendParameter(shape);
+            } else if (Character.isDigit(c) && (i == 0 || !isIdentifierPart(sql.charAt(i - 1)))) {
+                while (i < length && (Character.isDigit(sql.charAt(i)) || sql.charAt(i) == '.')) {
+                    i++;
+                }
+                appendParameter(shape);
+            } else if (c == '?') {
+                i++;
+                appendParameter(shape);
+            } else if (Character.isWhitespace(c)) {
+                while (i < length && Character.isWhitespace(sql.charAt(i))) {
+                    i++;
+                }
+                if (shape.length() > 0 && i < length) {
+                    shape.append(' ');
+                }
+            } else {
+                shape.append(c);
+                i++;
+            }
+        }
+        return shape.toString();
+    }
+
+    // Appends a ?, or nothing when it continues a list that already ends in one
+    private static void appendParameter(StringBuilder shape) {
+        int end = shape.length();
+        while (end > 0 && shape.charAt(end - 1) == ' ') {
+            end--;
+        }
+        if (end > 1 && shape.charAt(end - 1) == ',' && shape.charAt(end - 2) == '?') {
+            shape.setLength(end - 1);
+        } else {
+            shape.append('?');
+        }
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+    }
+
+    private static boolean readsRows(String shape) {
+        String lower = shape.toLowerCase(Locale.ROOT);
+        return lower.startsWith("select ") && lower.contains(" from ");
+    }
+
+    public static final class Counts {
+        private final Counts outer;
+        private final int maxStatements;
+        // Keyed by the SQL as prepared, shapes are only worked out when asked for
+        private final Map<String, Integer> statementsBySql = new HashMap<>();
+        private int statements;
+        private int entityLoads;
+        private int collectionFetches;
+
+        private Counts(Counts outer, int maxStatements) {
+            this.outer = outer;
+            this.maxStatements = maxStatements;
+        }
+
+        private void add(Counts inner) {
+            statements += inner.statements;
+            entityLoads += inner.entityLoads;
+            collectionFetches += inner.collectionFetches;
+            inner.statementsBySql.forEach((sql, count) -> statementsBySql.merge(sql, count, Integer::sum));
+        }
+
+        public int getStatements() {
+            return statements;
+        }
+
+        public int getEntityLoads() {
+            return entityLoads;
+        }
+
+        public int getCollectionFetches() {
+            return collectionFetches;
+        }
+
+        // How many times each statement shape was prepared
+        public Map<String, Integer> getStatementShapes() {
+            Map<String, Integer> shapes = new LinkedHashMap<>();
+            statementsBySql.forEach((sql, count) -> shapes.merge(shapeOf(sql), count, Integer::sum));
+            return shapes;
+        }
+
+        // Queries reading rows that were prepared at least threshold times, the signature of an N+1 query:
+        // one query per row of an earlier result instead of one query for all of them. Inserts repeated
+        // for every JDBC batch and sequence calls for new ids are not suspects
+        public Map<String, Integer> getRepeatedStatements(int threshold) {
+            Map<String, Integer> repeated = new LinkedHashMap<>();
+            getStatementShapes().forEach((shape, count) -> {
+                if (count >= threshold && readsRows(shape)) {
+                    repeated.put(shape, count);
+                }
+            });
+            return repeated;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.springboot.pizzamanager.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+
+// Records how much database work each API request did, per endpoint: SQL statements, whether sent by
+// Hibernate or through JdbcTemplate, plus Hibernate's entity loads and lazy collection fetches. The
+// summaries carry the same method and uri tags as http.server.requests, so a latency regression on an
+// endpoint can be put next to the queries it runs. Registered by MetricsConfiguration, so web slice tests
+// without a meter registry do not pick it up. Each request is also held to the StatementBudget.
+public class RequestQueryMetricsFilter extends OncePerRequestFilter {
+
+    private final MeterRegistry meterRegistry;
+    private final StatementBudget statementBudget;
+
+    public RequestQueryMetricsFilter(MeterRegistry meterRegistry, StatementBudget statementBudget) {
+        this.meterRegistry = meterRegistry;
+        this.statementBudget = statementBudget;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !request.getRequestURI().substring(request.getContextPath().length()).startsWith("/api/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        RequestQueryCounter.begin(statementBudget.rejectAbove());
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            RequestQueryCounter.Counts counts = RequestQueryCounter.end();
+            Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            String uri = pattern != null ? pattern.toString() : "UNKNOWN";
+            statementBudget.check(request.getMethod() + " " + uri, counts);
+            Tags tags = Tags.of("method", request.getMethod(), "uri", uri);
+            record("hibernate.request.statements", "SQL statements prepared", tags, counts.getStatements());
+            record("hibernate.request.entity.loads", "Entities loaded", tags, counts.getEntityLoads());
+            record("hibernate.request.collection.fetches", "Lazy collections fetched", tags,
+                    counts.getCollectionFetches());
+        }
+    }
+
+    private void record(String name, String description, Tags tags, int value) {
+        DistributionSummary.builder(name)
+                .description(description + " while serving one request")
+                .tags(tags)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(value);
+    }
+}
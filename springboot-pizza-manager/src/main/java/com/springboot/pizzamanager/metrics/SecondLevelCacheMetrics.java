@@ -0,0 +1,41 @@
+package com.springboot.pizzamanager.metrics;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+// Share of second-level cache lookups answered from the cache, per region, since the application started.
+// The hit and miss counters behind it are published by Hibernate's own metrics as
+// hibernate.second.level.cache.requests, the ratio saves every dashboard from computing it.
+@Component
+public class SecondLevelCacheMetrics implements MeterBinder {
+
+    private final Statistics statistics;
+
+    @Autowired
+    public SecondLevelCacheMetrics(EntityManagerFactory entityManagerFactory) {
+        this.statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (String region : statistics.getSecondLevelCacheRegionNames()) {
+            Gauge.builder("hibernate.second.level.cache.hit.ratio", statistics, stats -> hitRatio(stats, region))
+                    .description("Share of second-level cache lookups answered from the cache")
+                    .tag("region", region)
+                    .register(registry);
+        }
+    }
+
+    static double hitRatio(Statistics statistics, String region) {
+        CacheRegionStatistics regionStatistics = statistics.getDomainDataRegionStatistics(region);
+        long lookups = regionStatistics.getHitCount() + regionStatistics.getMissCount();
+        return lookups == 0 ? Double.NaN : (double) regionStatistics.getHitCount() / lookups;
+    }
+}
@@ -0,0 +1,48 @@
+package com.springboot.pizzamanager.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+// How many SQL statements one API request may prepare. Requests over the budget are logged, or failed
+// before their next statement runs when the budget rejects them. Statements prepared repeatedly within
+// one request are logged as N+1 suspects whatever the budget.
+@Component
+public class StatementBudget {
+
+    private static final Logger log = LoggerFactory.getLogger(StatementBudget.class);
+
+    private final int maxStatements;
+    private final boolean reject;
+    private final int repeatThreshold;
+
+    public StatementBudget(@Value("${pizzamanager.statement-budget.max-statements:0}") int maxStatements,
+                           @Value("${pizzamanager.statement-budget.reject:false}") boolean reject,
+                           @Value("${pizzamanager.statement-budget.repeat-threshold:0}") int repeatThreshold) {
+        this.maxStatements = maxStatements;
+        this.reject = reject;
+        this.repeatThreshold = repeatThreshold;
+    }
+
+    // The limit to count the request against, zero when requests over the budget are let through
+    int rejectAbove() {
+        return reject ? maxStatements : 0;
+    }
+
+    // Logs what the request did wrong, once it has finished
+    void check(String endpoint, RequestQueryCounter.Counts counts) {
+        if (maxStatements > 0 && counts.getStatements() > maxStatements) {
+            log.warn("{} prepared {} SQL statements, over the budget of {}: {}", endpoint,
+                    counts.getStatements(), maxStatements, counts.getStatementShapes());
+        }
+        if (repeatThreshold > 0) {
+            Map<String, Integer> repeated = counts.getRepeatedStatements(repeatThreshold);
+            if (!repeated.isEmpty()) {
+                log.warn("{} repeated SQL statements, possible N+1 queries: {}", endpoint, repeated);
+            }
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.springboot.pizzamanager.metrics;
+
+// Thrown when a request prepares more SQL statements than the statement budget allows and the budget
+// is set to reject such requests
+public class StatementBudgetExceededException extends RuntimeException {
+
+    public StatementBudgetExceededException(int maxStatements) {
+        super("The request needed more than " + maxStatements + " SQL statements and was stopped.");
+    }
+}
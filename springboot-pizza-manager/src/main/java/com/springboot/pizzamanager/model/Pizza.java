@@ -1,30 +1,66 @@
 package com.springboot.pizzamanager.model;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Size;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
 import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.Objects;
 import java.util.Set;
+import java.util.stream.Collectors;
 
+// Held in the second-level cache, see ehcache.xml. Read-write keeps a cached pizza from being
+// read while a transaction changing it is in flight
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@Table(indexes = @Index(name = "idx_pizza_topping_signature", columnList = "topping_signature"),
+       uniqueConstraints = @UniqueConstraint(name = Pizza.NAME_CONSTRAINT, columnNames = "name"))
 public class Pizza {
+    // Enforces unique pizza names, services recognise a violation by this name
+    public static final String NAME_CONSTRAINT = "uk_pizza_name";
+
+    // Ids come from a pooled sequence, one round trip hands out a block of 50 ids
+    // so batched inserts do not have to fetch a new id for every row
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "pizza_seq")
+    @SequenceGenerator(name = "pizza_seq", sequenceName = "pizza_seq", allocationSize = 50)
     private Long id;
     
-    @Column(unique = true)
+    // Bumped on every committed change, including topping changes, so a write made against an
+    // older version fails instead of overwriting someone else's edit. Exposed as the ETag, never
+    // accepted from request bodies.
+    @Version
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Long version;
+
     @NotNull
     @Size(min = 1, max = 20)
     private String name;
     
-    @ManyToMany(fetch = FetchType.EAGER)
+    // Lazy by default, read paths ask for the toppings explicitly through the
+    // entity graphs declared on PizzaRepository so they load in a single join
+    @ManyToMany
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
     @JoinTable(
       name = "pizza_toppings", 
       joinColumns = @JoinColumn(name = "pizza_id"), 
       inverseJoinColumns = @JoinColumn(name = "topping_id")
     )
     private Set<Topping> toppings = new HashSet<>();
+
+    // Canonical fingerprint of the topping set, see signatureOf. Refreshed by every method that
+    // changes the toppings, so pizzas with the same recipe share one indexed value.
+    @Column(name = "topping_signature", length = 64)
+    private String toppingSignature;
     
  // Constructors
     public Pizza() {}
@@ -42,6 +78,14 @@ public class Pizza {
         this.id = id;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     public String getName() {
         return name;
     }
@@ -54,18 +98,58 @@ public class Pizza {
     // Methods to add and remove toppings
     public void addTopping(Topping topping) {
         this.toppings.add(topping);
+        refreshToppingSignature();
     }
 
     public void removeTopping(Topping topping) {
         this.toppings.remove(topping);
+        refreshToppingSignature();
     }
     
+    // Brings the toppings to the given set by removing and adding only the differences, so Hibernate
+    // writes the changed join rows instead of deleting and reinserting the whole collection
+    public void replaceToppings(Set<Topping> newToppings) {
+        this.toppings.retainAll(newToppings);
+        this.toppings.addAll(newToppings);
+        refreshToppingSignature();
+    }
+
     public void setToppings(Set<Topping> toppings) {
         this.toppings = toppings;
+        refreshToppingSignature();
     }
     
     public Set<Topping> getToppings() {
         return this.toppings;
     }
+
+    public String getToppingSignature() {
+        return toppingSignature;
+    }
+
+    @PrePersist
+    void refreshToppingSignature() {
+        this.toppingSignature = signatureOf(toppings.stream().map(Topping::getId).collect(Collectors.toList()));
+    }
+
+    // SHA-256 of the sorted, comma separated topping ids, the same for any order of the same toppings.
+    // A pizza without toppings has no recipe to compare and gets no signature.
+    public static String signatureOf(Collection<Long> toppingIds) {
+        if (toppingIds == null || toppingIds.isEmpty()) {
+            return null;
+        }
+        String canonical = toppingIds.stream()
+                .filter(Objects::nonNull)
+                .distinct()
+                .sorted()
+                .map(String::valueOf)
+                .collect(Collectors.joining(","));
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(canonical.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available.", e);
+        }
+    }
     
 }
@@ -1,21 +1,46 @@
 package com.springboot.pizzamanager.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Size;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import java.util.HashSet;
 import java.util.Set;
 
+// Held in the second-level cache, see ehcache.xml
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@Table(uniqueConstraints = @UniqueConstraint(name = Topping.NAME_CONSTRAINT, columnNames = "name"))
 public class Topping {
+    // Enforces unique topping names, services recognise a violation by this name
+    public static final String NAME_CONSTRAINT = "uk_topping_name";
+
+    // Ids come from a pooled sequence, one round trip hands out a block of 50 ids
+    // so batched inserts do not have to fetch a new id for every row
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "topping_seq")
+    @SequenceGenerator(name = "topping_seq", sequenceName = "topping_seq", allocationSize = 50)
     private Long id;
     
-    @Column(unique = true)
+    // Bumped on every committed change, writes made against an older version fail instead of
+    // overwriting someone else's edit. Exposed as the ETag, never accepted from request bodies.
+    @Version
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Long version;
+
     @NotNull
     @Size(min = 1, max = 20)
     private String name;
+
+    // Number of pizzas using this topping, a counter kept up to date by relative updates on every
+    // pizza write. The entity never writes it back, so a rename cannot undo a concurrent change.
+    @Column(name = "usage_count", nullable = false, updatable = false)
+    @JsonIgnore
+    private long usageCount;
     
     
     // Constructors, getters, and setters
@@ -36,6 +61,14 @@ public class Topping {
         this.id = id;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     public String getName() {
         return name;
     }
@@ -43,5 +76,32 @@ public class Topping {
     public void setName(String name) {
         this.name = name;
     }
+
+    public long getUsageCount() {
+        return usageCount;
+    }
+
+    public void setUsageCount(long usageCount) {
+        this.usageCount = usageCount;
+    }
+
+    // Toppings are compared by id so that a detached instance and the managed instance
+    // of the same row collapse into one element of Pizza.toppings
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Topping)) {
+            return false;
+        }
+        Topping other = (Topping) o;
+        return id != null && id.equals(other.getId());
+    }
+
+    @Override
+    public int hashCode() {
+        return getClass().hashCode();
+    }
     
 }
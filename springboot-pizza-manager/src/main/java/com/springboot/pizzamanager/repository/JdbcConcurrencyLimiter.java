@@ -0,0 +1,143 @@
+package com.springboot.pizzamanager.repository;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Keeps the number of JDBC connections checked out at the size of the connection pool.
+// With virtual threads Tomcat no longer caps concurrency, and thousands of requests would otherwise
+// queue inside the pool, or pin their carrier threads in the JDBC driver's synchronized code. Waiting
+// on the semaphore unmounts a virtual thread cheaply, and a checkout that cannot get a permit in time
+// fails fast, answered with 503 by RestExceptionHandler, instead of failing later on a pool timeout.
+// The permit is taken when a connection is checked out and given back when it is closed, so requests
+// served from memory, such as snapshot hits, suggestions and topping searches, are never throttled.
+@Component
+@ConditionalOnProperty(name = "pizzamanager.jdbc-limiter.enabled", havingValue = "true")
+public class JdbcConcurrencyLimiter implements BeanPostProcessor {
+
+    private static final int DEFAULT_POOL_SIZE = 10;
+
+    private final int configuredPermits;
+    private final long maxWaitNanos;
+    private Semaphore permits;
+    private int permitCount;
+
+    @Autowired
+    public JdbcConcurrencyLimiter(@Value("${pizzamanager.jdbc-limiter.permits:0}") int permits,
+                                  @Value("${pizzamanager.jdbc-limiter.max-wait:5s}") Duration maxWait) {
+        this.configuredPermits = permits;
+        this.maxWaitNanos = maxWait.toNanos();
+    }
+
+    // Wraps the data source once its pool settings are bound, so the permits can follow the pool size
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource dataSource && !(bean instanceof LimitedDataSource)) {
+            return limit(dataSource);
+        }
+        return bean;
+    }
+
+    DataSource limit(DataSource dataSource) {
+        permitCount = configuredPermits > 0 ? configuredPermits : poolSize(dataSource);
+        permits = new Semaphore(permitCount, true);
+        return new LimitedDataSource(dataSource);
+    }
+
+    public int getPermitCount() {
+        return permitCount;
+    }
+
+    public int getAvailablePermits() {
+        return permits.availablePermits();
+    }
+
+    private Connection acquire(ConnectionSource source) throws SQLException {
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(maxWaitNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            throw new SQLTransientConnectionException("No database connection became available within "
+                    + TimeUnit.NANOSECONDS.toMillis(maxWaitNanos) + " ms.");
+        }
+        try {
+            return releasingOnClose(source.get());
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    // The permit goes back on the first close, later calls are passed on to the connection as they are
+    private Connection releasingOnClose(Connection connection) {
+        AtomicBoolean released = new AtomicBoolean();
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    } finally {
+                        if (method.getName().equals("close") && released.compareAndSet(false, true)) {
+                            permits.release();
+                        }
+                    }
+                });
+    }
+
+    // Hikari reports no size until the pool has started, it then settles on its own default of 10.
+    // The pool may already be wrapped by another post-processor, such as the statement counting one
+    private static int poolSize(DataSource dataSource) {
+        try {
+            if (dataSource.isWrapperFor(HikariDataSource.class)) {
+                int size = dataSource.unwrap(HikariDataSource.class).getMaximumPoolSize();
+                if (size > 0) {
+                    return size;
+                }
+            }
+        } catch (SQLException e) {
+            // Not unwrappable after all, fall through to the default
+        }
+        return DEFAULT_POOL_SIZE;
+    }
+
+    private interface ConnectionSource {
+        Connection get() throws SQLException;
+    }
+
+    private final class LimitedDataSource extends DelegatingDataSource {
+
+        private LimitedDataSource(DataSource target) {
+            super(target);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            return acquire(() -> obtainTargetDataSource().getConnection());
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            return acquire(() -> obtainTargetDataSource().getConnection(username, password));
+        }
+    }
+}
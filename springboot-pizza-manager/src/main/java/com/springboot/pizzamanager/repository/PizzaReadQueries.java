@@ -0,0 +1,41 @@
+package com.springboot.pizzamanager.repository;
+
+import com.springboot.pizzamanager.dto.PizzaResponse;
+import com.springboot.pizzamanager.dto.PizzaToppingRow;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+
+// Read queries of the pizza endpoints. They select straight into DTOs, so no entity is loaded,
+// snapshotted for dirty checking or kept in the persistence context. Rows come ordered so the rows
+// of one pizza are adjacent.
+public interface PizzaReadQueries {
+	String PIZZA_ROWS = "select new com.springboot.pizzamanager.dto.PizzaToppingRow(p.id, p.name, p.version, t.id, t.name) "
+			+ "from Pizza p left join p.toppings t ";
+
+	String PIZZA_WITHOUT_TOPPINGS = "select new com.springboot.pizzamanager.dto.PizzaResponse(p.id, p.name, p.version) "
+			+ "from Pizza p ";
+
+	@Query(PIZZA_ROWS + "where p.id in :ids order by p.id, t.id")
+	List<PizzaToppingRow> findRowsByIdIn(@Param("ids") Collection<Long> ids);
+
+	@Query(PIZZA_ROWS + "where p.toppingSignature in :signatures order by p.id, t.id")
+	List<PizzaToppingRow> findRowsByToppingSignatureIn(@Param("signatures") Collection<String> signatures);
+
+	// Keyset pagination queries, each page seeks past the last key of the previous page.
+	// They return the pizzas without toppings, the page is then completed with findRowsByIdIn.
+	@Query(PIZZA_WITHOUT_TOPPINGS + "order by p.id")
+	List<PizzaResponse> findPageOrderById(Limit limit);
+
+	@Query(PIZZA_WITHOUT_TOPPINGS + "where p.id > :id order by p.id")
+	List<PizzaResponse> findPageAfterId(@Param("id") Long id, Limit limit);
+
+	@Query(PIZZA_WITHOUT_TOPPINGS + "order by p.name")
+	List<PizzaResponse> findPageOrderByName(Limit limit);
+
+	@Query(PIZZA_WITHOUT_TOPPINGS + "where p.name > :name order by p.name")
+	List<PizzaResponse> findPageAfterName(@Param("name") String name, Limit limit);
+}
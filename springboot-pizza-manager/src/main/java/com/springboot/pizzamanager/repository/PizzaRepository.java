@@ -1,8 +1,59 @@
 package com.springboot.pizzamanager.repository;
 
+import com.springboot.pizzamanager.dto.NameSuggestion;
+import com.springboot.pizzamanager.dto.PizzaToppingRow;
 import com.springboot.pizzamanager.model.Pizza;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
-public interface PizzaRepository extends JpaRepository<Pizza, Long> {
-	boolean existsByName(String name);
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+public interface PizzaRepository extends JpaRepository<Pizza, Long>, PizzaReadQueries {
+	// Which of the given names are already taken, checked for a whole bulk import in one query
+	@Query("select p.name from Pizza p where p.name in :names")
+	Set<String> findExistingNames(@Param("names") Collection<String> names);
+
+	// Same-recipe lookups, answered from the index on topping_signature
+	Optional<Pizza> findFirstByToppingSignature(String toppingSignature);
+
+	Optional<Pizza> findFirstByToppingSignatureAndIdNot(String toppingSignature, Long id);
+
+	@Query("select p.toppingSignature from Pizza p where p.toppingSignature in :signatures")
+	Set<String> findExistingSignatures(@Param("signatures") Collection<String> signatures);
+
+	@Query("select p.toppingSignature from Pizza p where p.toppingSignature is not null "
+			+ "group by p.toppingSignature having count(p) > 1")
+	List<String> findDuplicateSignatures();
+
+	// Pizza.toppings is lazy, the writes that load a pizza join fetch it
+	@Override
+	@EntityGraph(attributePaths = "toppings")
+	Optional<Pizza> findById(Long id);
+
+	// Forward-only cursor over every pizza/topping pair. Nothing accumulates in the persistence context
+	// while streaming. Must be consumed inside a transaction and closed afterwards.
+	@Query(PIZZA_ROWS + "order by p.id, t.id")
+	@QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+	Stream<PizzaToppingRow> streamMenuRows();
+
+	// Topping ids of one pizza straight from the join table, for topping deltas. The delta itself is
+	// written by ToppingUsageRepository.changeToppings, one row per topping added or removed.
+	@Query(value = "select topping_id from pizza_toppings where pizza_id = :pizzaId", nativeQuery = true)
+	Set<Long> findToppingIds(@Param("pizzaId") Long pizzaId);
+
+	// Id and name of every pizza, loads the name suggestion index
+	@Query("select new com.springboot.pizzamanager.dto.NameSuggestion(p.id, p.name) from Pizza p")
+	List<NameSuggestion> findAllNames();
+
+	@Query("select p.version from Pizza p where p.id = :id")
+	Optional<Long> findVersionById(@Param("id") Long id);
 }
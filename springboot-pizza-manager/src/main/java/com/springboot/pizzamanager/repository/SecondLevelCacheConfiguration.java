@@ -0,0 +1,33 @@
+package com.springboot.pizzamanager.repository;
+
+import org.ehcache.jsr107.EhcacheCachingProvider;
+import org.ehcache.xml.XmlConfiguration;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.net.URI;
+import java.util.UUID;
+
+// The cache manager behind Hibernate's second-level cache, with the regions of ehcache.xml. JCache hands
+// out one cache manager per configuration URI and class loader, so every application context in the JVM
+// would share the same regions; each context gets its own here, the cached rows belong to its database.
+@Configuration
+public class SecondLevelCacheConfiguration {
+
+    @Bean(destroyMethod = "close")
+    public CacheManager secondLevelCacheManager() {
+        EhcacheCachingProvider provider = (EhcacheCachingProvider) Caching.getCachingProvider(
+                EhcacheCachingProvider.class.getName());
+        return provider.getCacheManager(URI.create("urn:pizzamanager:second-level-cache:" + UUID.randomUUID()),
+                new XmlConfiguration(SecondLevelCacheConfiguration.class.getResource("/ehcache.xml")));
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer secondLevelCacheManagerCustomizer(CacheManager secondLevelCacheManager) {
+        return properties -> properties.put(ConfigSettings.CACHE_MANAGER, secondLevelCacheManager);
+    }
+}
@@ -0,0 +1,31 @@
+package com.springboot.pizzamanager.repository;
+
+import com.springboot.pizzamanager.dto.ToppingDTO;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+
+// Read queries of the topping endpoints. They select straight into DTOs carrying the usage counter,
+// so no entity is loaded, snapshotted for dirty checking or kept in the persistence context.
+public interface ToppingReadQueries {
+	String TOPPING_DTO = "select new com.springboot.pizzamanager.dto.ToppingDTO(t.id, t.name, t.version, t.usageCount) "
+			+ "from Topping t ";
+
+	@Query(TOPPING_DTO + "order by t.id")
+	List<ToppingDTO> findAllDtosOrderById();
+
+	// Keyset pagination queries, each page seeks past the last key of the previous page
+	@Query(TOPPING_DTO + "order by t.id")
+	List<ToppingDTO> findPageOrderById(Limit limit);
+
+	@Query(TOPPING_DTO + "where t.id > :id order by t.id")
+	List<ToppingDTO> findPageAfterId(@Param("id") Long id, Limit limit);
+
+	@Query(TOPPING_DTO + "order by t.name")
+	List<ToppingDTO> findPageOrderByName(Limit limit);
+
+	@Query(TOPPING_DTO + "where t.name > :name order by t.name")
+	List<ToppingDTO> findPageAfterName(@Param("name") String name, Limit limit);
+}
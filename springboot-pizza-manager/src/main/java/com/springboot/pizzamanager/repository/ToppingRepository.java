@@ -1,10 +1,21 @@
 package com.springboot.pizzamanager.repository;
 
+import com.springboot.pizzamanager.dto.NameSuggestion;
 import com.springboot.pizzamanager.model.Topping;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
 
-import org.springframework.data.jpa.repository.JpaRepository;
+public interface ToppingRepository extends JpaRepository<Topping, Long>, ToppingReadQueries {
+	// Names among the given ones that already belong to a topping, lets a bulk import validate all names at once
+	@Query("select t.name from Topping t where t.name in :names")
+	Set<String> findExistingNames(@Param("names") Collection<String> names);
 
-public interface ToppingRepository extends JpaRepository<Topping, Long> {
-	boolean existsByName(String name);
-}
\ No newline at end of file
+	// Id and name of every topping, loads the name suggestion index
+	@Query("select new com.springboot.pizzamanager.dto.NameSuggestion(t.id, t.name) from Topping t")
+	List<NameSuggestion> findAllNames();
+}
@@ -0,0 +1,151 @@
+package com.springboot.pizzamanager.repository;
+
+import com.springboot.pizzamanager.model.Pizza;
+import com.springboot.pizzamanager.model.Topping;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Set-based writes on topping usage that have no entity to go through: the materialized usage counters,
+// topping deltas on the join rows of one pizza and detaching a topping from every pizza. Statements are sent
+// as JDBC batches, so the cost stays at a few round trips however many pizzas or toppings are involved.
+// Hibernate does not see these writes, so the rows they change are evicted from the second-level cache here.
+@Repository
+public class ToppingUsageRepository {
+
+    private static final String PIZZA_TOPPINGS_ROLE = Pizza.class.getName() + ".toppings";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Cache cache;
+
+    @Autowired
+    public ToppingUsageRepository(JdbcTemplate jdbcTemplate, EntityManagerFactory entityManagerFactory) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.cache = entityManagerFactory.unwrap(SessionFactory.class).getCache();
+    }
+
+    // Moves the usage counter of every topping in the map by its delta, as one batch
+    public void adjustUsageCounts(Map<Long, Long> deltaByToppingId) {
+        List<Object[]> updates = new ArrayList<>();
+        deltaByToppingId.forEach((toppingId, delta) -> {
+            if (delta != 0) {
+                updates.add(new Object[]{delta, toppingId});
+            }
+        });
+        if (!updates.isEmpty()) {
+            jdbcTemplate.batchUpdate("update topping set usage_count = usage_count + ? where id = ?", updates);
+            evict(() -> deltaByToppingId.keySet().forEach(toppingId -> cache.evictEntityData(Topping.class, toppingId)));
+        }
+    }
+
+    // Reads the usage counter from the table itself. The counter only moves through this class, so a
+    // cached topping may still carry an old value until the eviction after the writing commit has run.
+    // A topping that no longer exists counts as unused.
+    public long findUsageCount(Long toppingId) {
+        List<Long> counts = jdbcTemplate.queryForList("select usage_count from topping where id = ?", Long.class,
+                toppingId);
+        return counts.isEmpty() ? 0 : counts.get(0);
+    }
+
+    // Applies a topping delta to one pizza. The new signature and the next version are claimed first, in
+    // one compare-and-set against the version the delta was computed at, so concurrent deltas on the pizza
+    // are serialized on its row. Returns false, having written nothing, when the pizza was changed since.
+    // Only this pizza and its topping set leave the second-level cache, every other cached pizza stays.
+    public boolean changeToppings(Long pizzaId, Long version, String signature, Set<Long> addedIds,
+                                  Set<Long> removedIds) {
+        int claimed = jdbcTemplate.update(
+                "update pizza set topping_signature = ?, version = version + 1 where id = ? and version = ?",
+                signature, pizzaId, version);
+        if (claimed == 0) {
+            return false;
+        }
+        if (!addedIds.isEmpty()) {
+            jdbcTemplate.batchUpdate("insert into pizza_toppings (pizza_id, topping_id) "
+                            + "select ?, id from topping where id = ? "
+                            + "and not exists (select 1 from pizza_toppings where pizza_id = ? and topping_id = ?)",
+                    addedIds.stream().map(toppingId -> new Object[]{pizzaId, toppingId, pizzaId, toppingId}).toList());
+        }
+        if (!removedIds.isEmpty()) {
+            jdbcTemplate.batchUpdate("delete from pizza_toppings where pizza_id = ? and topping_id = ?",
+                    removedIds.stream().map(toppingId -> new Object[]{pizzaId, toppingId}).toList());
+        }
+        evict(() -> {
+            cache.evictEntityData(Pizza.class, pizzaId);
+            cache.evictCollectionData(PIZZA_TOPPINGS_ROLE, pizzaId);
+        });
+        return true;
+    }
+
+    // Removes the topping from every pizza using it and returns the new version of each of those pizzas by
+    // id, in id order. Each of them gets the signature of the toppings it keeps and its next version,
+    // compare-and-set against the version just read, so a pizza changed concurrently fails the whole detach
+    // instead of being left with a wrong signature. The join rows then go with a single delete.
+    public Map<Long, Long> detachFromAllPizzas(Long toppingId) {
+        Map<Long, Long> versions = new LinkedHashMap<>();
+        Map<Long, Set<Long>> keptToppings = new LinkedHashMap<>();
+        jdbcTemplate.query("select p.id, p.version, kept.topping_id from pizza p "
+                        + "join pizza_toppings used on used.pizza_id = p.id and used.topping_id = ? "
+                        + "left join pizza_toppings kept on kept.pizza_id = p.id and kept.topping_id <> ? "
+                        + "order by p.id",
+                row -> {
+                    long pizzaId = row.getLong(1);
+                    versions.put(pizzaId, row.getLong(2));
+                    Set<Long> kept = keptToppings.computeIfAbsent(pizzaId, id -> new HashSet<>());
+                    long keptId = row.getLong(3);
+                    if (!row.wasNull()) {
+                        kept.add(keptId);
+                    }
+                },
+                toppingId, toppingId);
+        if (versions.isEmpty()) {
+            return Map.of();
+        }
+
+        List<Object[]> updates = new ArrayList<>();
+        versions.forEach((pizzaId, version) ->
+                updates.add(new Object[]{Pizza.signatureOf(keptToppings.get(pizzaId)), pizzaId, version}));
+        int[] updated = jdbcTemplate.batchUpdate(
+                "update pizza set topping_signature = ?, version = version + 1 where id = ? and version = ?", updates);
+        for (int count : updated) {
+            if (count == 0) {
+                throw new OptimisticLockingFailureException(
+                        "A pizza using topping " + toppingId + " was changed concurrently, nothing was detached.");
+            }
+        }
+
+        jdbcTemplate.update("delete from pizza_toppings where topping_id = ?", toppingId);
+        evict(() -> versions.keySet().forEach(pizzaId -> {
+            cache.evictEntityData(Pizza.class, pizzaId);
+            cache.evictCollectionData(PIZZA_TOPPINGS_ROLE, pizzaId);
+        }));
+        versions.replaceAll((pizzaId, version) -> version + 1);
+        return versions;
+    }
+
+    // Drops the cached copies of changed rows now, and once more when the transaction has completed: a
+    // concurrent read in between still sees the old committed row and may have cached it again
+    private void evict(Runnable eviction) {
+        eviction.run();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    eviction.run();
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.springboot.pizzamanager.service;
+
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.dao.DataIntegrityViolationException;
+
+// Thrown when a pizza or topping name is already taken. The database's unique constraint is the only
+// check, so two concurrent creates with the same name end with one winner and one of these.
+public class DuplicateNameException extends RuntimeException {
+
+    public DuplicateNameException(String message) {
+        super(message);
+    }
+
+    // Whether the violation was raised by the named unique constraint rather than some other one
+    static boolean violates(DataIntegrityViolationException e, String constraintName) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConstraintViolationException violation && violation.getConstraintName() != null
+                    && violation.getConstraintName().toLowerCase().contains(constraintName)) {
+                return true;
+            }
+        }
+        String message = e.getMostSpecificCause().getMessage();
+        return message != null && message.toLowerCase().contains(constraintName);
+    }
+}
@@ -0,0 +1,9 @@
+package com.springboot.pizzamanager.service;
+
+// Thrown when a topping delta queued for group commit is not known to be committed in time
+public class GroupCommitTimeoutException extends RuntimeException {
+
+    public GroupCommitTimeoutException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,117 @@
+package com.springboot.pizzamanager.service;
+
+import com.springboot.pizzamanager.model.Pizza;
+import com.springboot.pizzamanager.model.Topping;
+
+import java.util.Set;
+
+// Published by the services whenever the menu changes. Listeners that keep in-memory
+// views of the menu consume it after the surrounding transaction has committed.
+public class MenuChangeEvent {
+
+    public enum Type {
+        PIZZA_CREATED,
+        PIZZA_UPDATED,
+        PIZZA_DELETED,
+        PIZZA_TOPPINGS_CHANGED,
+        TOPPING_CREATED,
+        TOPPING_UPDATED,
+        TOPPING_DELETED
+    }
+
+    private final Type type;
+    private final Long id;
+    private final Pizza pizza;
+    private final Topping topping;
+    private final Set<Topping> addedToppings;
+    private final Set<Long> removedToppingIds;
+    private final Long version;
+
+    private MenuChangeEvent(Type type, Long id, Pizza pizza, Topping topping,
+                            Set<Topping> addedToppings, Set<Long> removedToppingIds, Long version) {
+        this.type = type;
+        this.id = id;
+        this.pizza = pizza;
+        this.topping = topping;
+        this.addedToppings = addedToppings;
+        this.removedToppingIds = removedToppingIds;
+        this.version = version;
+    }
+
+    private MenuChangeEvent(Type type, Long id, Pizza pizza, Topping topping) {
+        this(type, id, pizza, topping, Set.of(), Set.of(), null);
+    }
+
+    public static MenuChangeEvent pizzaCreated(Pizza pizza) {
+        return new MenuChangeEvent(Type.PIZZA_CREATED, pizza.getId(), pizza, null);
+    }
+
+    public static MenuChangeEvent pizzaUpdated(Pizza pizza) {
+        return new MenuChangeEvent(Type.PIZZA_UPDATED, pizza.getId(), pizza, null);
+    }
+
+    public static MenuChangeEvent pizzaDeleted(Long id) {
+        return new MenuChangeEvent(Type.PIZZA_DELETED, id, null, null);
+    }
+
+    // A delta on the toppings of one pizza, listing only the toppings that were actually added or removed
+    // and the pizza version it produced
+    public static MenuChangeEvent pizzaToppingsChanged(Long pizzaId, Long version, Set<Topping> addedToppings,
+                                                       Set<Long> removedToppingIds) {
+        return new MenuChangeEvent(Type.PIZZA_TOPPINGS_CHANGED, pizzaId, null, null,
+                Set.copyOf(addedToppings), Set.copyOf(removedToppingIds), version);
+    }
+
+    public static MenuChangeEvent toppingCreated(Topping topping) {
+        return new MenuChangeEvent(Type.TOPPING_CREATED, topping.getId(), null, topping);
+    }
+
+    public static MenuChangeEvent toppingUpdated(Topping topping) {
+        return new MenuChangeEvent(Type.TOPPING_UPDATED, topping.getId(), null, topping);
+    }
+
+    public static MenuChangeEvent toppingDeleted(Long id) {
+        return new MenuChangeEvent(Type.TOPPING_DELETED, id, null, null);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    // The pizza as committed with its toppings loaded, null for deletions and topping changes
+    public Pizza getPizza() {
+        return pizza;
+    }
+
+    // The topping as committed, null for deletions and pizza changes
+    public Topping getTopping() {
+        return topping;
+    }
+
+    // Toppings added by a PIZZA_TOPPINGS_CHANGED delta, empty for every other type
+    public Set<Topping> getAddedToppings() {
+        return addedToppings;
+    }
+
+    // Ids of the toppings removed by a PIZZA_TOPPINGS_CHANGED delta, empty for every other type
+    public Set<Long> getRemovedToppingIds() {
+        return removedToppingIds;
+    }
+
+    // The pizza version after a PIZZA_TOPPINGS_CHANGED delta, null for every other type
+    public Long getVersion() {
+        return version;
+    }
+
+    @Override
+    public String toString() {
+        return "MenuChangeEvent{" +
+                "type=" + type +
+                ", id=" + id +
+                '}';
+    }
+}
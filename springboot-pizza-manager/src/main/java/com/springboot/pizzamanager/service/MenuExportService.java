@@ -0,0 +1,32 @@
+package com.springboot.pizzamanager.service;
+
+import com.springboot.pizzamanager.dto.PizzaResponse;
+import com.springboot.pizzamanager.dto.PizzaToppingRow;
+import com.springboot.pizzamanager.repository.PizzaRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+@Service
+public class MenuExportService {
+
+    private final PizzaRepository pizzaRepository;
+
+    @Autowired
+    public MenuExportService(PizzaRepository pizzaRepository) {
+        this.pizzaRepository = pizzaRepository;
+    }
+
+    // Walks the whole menu over a database cursor and hands each pizza with its toppings to the sink
+    // as soon as its last row has been read. Only the pizza being assembled is held in memory, so the
+    // heap used does not depend on the size of the menu. Returns the number of pizzas exported.
+    @Transactional(readOnly = true)
+    public long exportPizzas(Consumer<PizzaResponse> sink) {
+        try (Stream<PizzaToppingRow> rows = pizzaRepository.streamMenuRows()) {
+            return PizzaRows.forEachPizza(rows.iterator(), sink);
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package com.springboot.pizzamanager.service;
+
+import com.springboot.pizzamanager.dto.NameSuggestion;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+// Case-insensitive prefix index over names, held in sorted parallel arrays. Whole names and the rest of a
+// name from each later word on are kept apart, so names starting with the prefix are listed before names
+// with a later word starting with it, each in alphabetical order. A lookup is one binary search plus a scan
+// over the matches it returns, whatever the number of names.
+// Readers see an immutable snapshot through one volatile read. Writers copy the arrays, one pass each.
+final class NamePrefixIndex {
+
+    private volatile Snapshot snapshot = new Snapshot(Keys.EMPTY, Keys.EMPTY);
+
+    // Up to limit names starting with the prefix, then names with a word starting with it
+    List<NameSuggestion> suggest(String prefix, int limit) {
+        String key = prefix.strip().toLowerCase(Locale.ROOT);
+        List<NameSuggestion> result = new ArrayList<>();
+        if (key.isEmpty() || limit <= 0) {
+            return result;
+        }
+        Snapshot current = snapshot;
+        current.names.collect(key, limit, result, null);
+        if (result.size() < limit) {
+            Set<Long> listed = new HashSet<>();
+            result.forEach(suggestion -> listed.add(suggestion.getId()));
+            current.words.collect(key, limit, result, listed);
+        }
+        return result;
+    }
+
+    int size() {
+        return snapshot.names.ids.length;
+    }
+
+    // Sets the names of all the given ids at once, a null name removes the id. However many names
+    // change, the arrays are copied in a single merge pass.
+    synchronized void update(Map<Long, String> namesById) {
+        if (namesById.isEmpty()) {
+            return;
+        }
+        List<Entry> names = new ArrayList<>();
+        List<Entry> words = new ArrayList<>();
+        namesById.forEach((id, name) -> {
+            if (name != null) {
+                addEntries(id, name, names, words);
+            }
+        });
+        names.sort(Entry.ORDER);
+        words.sort(Entry.ORDER);
+        Set<Long> ids = namesById.keySet();
+        Snapshot current = snapshot;
+        snapshot = new Snapshot(current.names.replace(ids, names), current.words.replace(ids, words));
+    }
+
+    // Replaces the whole index with the given names
+    synchronized void replaceAll(Collection<NameSuggestion> all) {
+        List<Entry> names = new ArrayList<>(all.size());
+        List<Entry> words = new ArrayList<>();
+        for (NameSuggestion suggestion : all) {
+            addEntries(suggestion.getId(), suggestion.getName(), names, words);
+        }
+        names.sort(Entry.ORDER);
+        words.sort(Entry.ORDER);
+        snapshot = new Snapshot(Keys.of(names), Keys.of(words));
+    }
+
+    private static void addEntries(long id, String name, List<Entry> names, List<Entry> words) {
+        String key = name.toLowerCase(Locale.ROOT);
+        names.add(new Entry(key, id, name));
+        for (int i = 1; i < key.length(); i++) {
+            if (!Character.isLetterOrDigit(key.charAt(i - 1)) && Character.isLetterOrDigit(key.charAt(i))) {
+                words.add(new Entry(key.substring(i), id, name));
+            }
+        }
+    }
+
+    private static final class Snapshot {
+        private final Keys names;
+        private final Keys words;
+
+        private Snapshot(Keys names, Keys words) {
+            this.names = names;
+            this.words = words;
+        }
+    }
+
+    // Keys in ascending order, ties broken by id, with the id and display name of each at the same index
+    private static final class Keys {
+        private static final Keys EMPTY = new Keys(new String[0], new long[0], new String[0]);
+
+        private final String[] keys;
+        private final long[] ids;
+        private final String[] names;
+
+        private Keys(String[] keys, long[] ids, String[] names) {
+            this.keys = keys;
+            this.ids = ids;
+            this.names = names;
+        }
+
+        private static Keys of(List<Entry> sorted) {
+            String[] keys = new String[sorted.size()];
+            long[] ids = new long[sorted.size()];
+            String[] names = new String[sorted.size()];
+            for (int i = 0; i < keys.length; i++) {
+                Entry entry = sorted.get(i);
+                keys[i] = entry.key;
+                ids[i] = entry.id;
+                names[i] = entry.name;
+            }
+            return new Keys(keys, ids, names);
+        }
+
+        private void collect(String prefix, int limit, List<NameSuggestion> result, Set<Long> listed) {
+            for (int i = lowerBound(prefix); i < keys.length && result.size() < limit && keys[i].startsWith(prefix); i++) {
+                if (listed == null || listed.add(ids[i])) {
+                    result.add(new NameSuggestion(ids[i], names[i]));
+                }
+            }
+        }
+
+        // Index of the first key not below the prefix
+        private int lowerBound(String prefix) {
+            int low = 0;
+            int high = keys.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (keys[mid].compareTo(prefix) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        // Drops the entries of the ids and merges in their new ones, which must be sorted
+        private Keys replace(Set<Long> replaced, List<Entry> added) {
+            boolean[] dropped = new boolean[keys.length];
+            int kept = 0;
+            for (int k = 0; k < ids.length; k++) {
+                dropped[k] = replaced.contains(ids[k]);
+                if (!dropped[k]) {
+                    kept++;
+                }
+            }
+            int size = kept + added.size();
+            String[] newKeys = new String[size];
+            long[] newIds = new long[size];
+            String[] newNames = new String[size];
+            int i = 0;
+            int j = 0;
+            for (int n = 0; n < size; n++) {
+                while (i < keys.length && dropped[i]) {
+                    i++;
+                }
+                boolean takeOld = j == added.size()
+                        || (i < keys.length && Entry.compare(keys[i], ids[i], added.get(j).key, added.get(j).id) < 0);
+                if (takeOld) {
+                    newKeys[n] = keys[i];
+                    newIds[n] = ids[i];
+                    newNames[n] = names[i];
+                    i++;
+                } else {
+                    Entry entry = added.get(j++);
+                    newKeys[n] = entry.key;
+                    newIds[n] = entry.id;
+                    newNames[n] = entry.name;
+                }
+            }
+            return new Keys(newKeys, newIds, newNames);
+        }
+    }
+
+    private static final class Entry {
+        private static final Comparator<Entry> ORDER = (a, b) -> compare(a.key, a.id, b.key, b.id);
+
+        private final String key;
+        private final long id;
+        private final String name;
+
+        private Entry(String key, long id, String name) {
+            this.key = key;
+            this.id = id;
+            this.name = name;
+        }
+
+        private static int compare(String key, long id, String otherKey, long otherId) {
+            int byKey = key.compareTo(otherKey);
+            return byKey != 0 ? byKey : Long.compare(id, otherId);
+        }
+    }
+}
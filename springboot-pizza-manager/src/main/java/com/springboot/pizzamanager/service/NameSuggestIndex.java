@@ -0,0 +1,131 @@
+package com.springboot.pizzamanager.service;
+
+import com.springboot.pizzamanager.dto.NameSuggestion;
+import com.springboot.pizzamanager.repository.PizzaRepository;
+import com.springboot.pizzamanager.repository.ToppingRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Name autocomplete for pizzas and toppings, answered from in-memory prefix indexes without touching
+// the database. Kept current from committed PizzaService and ToppingService writes, rebuilt on startup.
+@Component
+public class NameSuggestIndex {
+
+    public static final int DEFAULT_LIMIT = 10;
+    public static final int MAX_LIMIT = 50;
+
+    private final PizzaRepository pizzaRepository;
+    private final ToppingRepository toppingRepository;
+
+    private final NamePrefixIndex pizzas = new NamePrefixIndex();
+    private final NamePrefixIndex toppings = new NamePrefixIndex();
+    // Changes committed while a rebuild reads the database, replayed on top of the rebuilt indexes.
+    // Null when no rebuild is running.
+    private List<MenuChangeEvent> changedDuringRebuild;
+
+    @Autowired
+    public NameSuggestIndex(PizzaRepository pizzaRepository, ToppingRepository toppingRepository) {
+        this.pizzaRepository = pizzaRepository;
+        this.toppingRepository = toppingRepository;
+    }
+
+    public List<NameSuggestion> suggestPizzas(String prefix, int limit) {
+        return pizzas.suggest(prefix, clamp(limit));
+    }
+
+    public List<NameSuggestion> suggestToppings(String prefix, int limit) {
+        return toppings.suggest(prefix, clamp(limit));
+    }
+
+    // Changes are applied once their transaction has completed, all of them in one merge per index, so
+    // an import of many pizzas or toppings costs a single copy of the arrays rather than one per item.
+    // Changes published outside a transaction are applied right away.
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMenuChange(MenuChangeEvent event) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            apply(List.of(event));
+            return;
+        }
+        @SuppressWarnings("unchecked")
+        List<MenuChangeEvent> pending = (List<MenuChangeEvent>) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            List<MenuChangeEvent> committed = new ArrayList<>();
+            TransactionSynchronizationManager.bindResource(this, committed);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResource(NameSuggestIndex.this);
+                    apply(committed);
+                }
+            });
+            pending = committed;
+        }
+        pending.add(event);
+    }
+
+    // Reloads both indexes from the database. Lookups keep using the old names until the new ones are in,
+    // changes committed in the meantime are applied to both.
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        synchronized (this) {
+            changedDuringRebuild = new ArrayList<>();
+        }
+        List<NameSuggestion> pizzaNames;
+        List<NameSuggestion> toppingNames;
+        try {
+            pizzaNames = pizzaRepository.findAllNames();
+            toppingNames = toppingRepository.findAllNames();
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                changedDuringRebuild = null;
+            }
+            throw e;
+        }
+
+        synchronized (this) {
+            pizzas.replaceAll(pizzaNames);
+            toppings.replaceAll(toppingNames);
+            update(changedDuringRebuild);
+            changedDuringRebuild = null;
+        }
+    }
+
+    private synchronized void apply(List<MenuChangeEvent> events) {
+        if (changedDuringRebuild != null) {
+            changedDuringRebuild.addAll(events);
+        }
+        update(events);
+    }
+
+    // Folds the events into the latest name of every pizza and topping they touch, null once deleted
+    private void update(List<MenuChangeEvent> events) {
+        Map<Long, String> pizzaNames = new HashMap<>();
+        Map<Long, String> toppingNames = new HashMap<>();
+        for (MenuChangeEvent event : events) {
+            switch (event.getType()) {
+                case PIZZA_CREATED, PIZZA_UPDATED -> pizzaNames.put(event.getId(), event.getPizza().getName());
+                case PIZZA_DELETED -> pizzaNames.put(event.getId(), null);
+                case TOPPING_CREATED, TOPPING_UPDATED -> toppingNames.put(event.getId(), event.getTopping().getName());
+                case TOPPING_DELETED -> toppingNames.put(event.getId(), null);
+                default -> {
+                }
+            }
+        }
+        pizzas.update(pizzaNames);
+        toppings.update(toppingNames);
+    }
+
+    private static int clamp(int limit) {
+        return Math.max(1, Math.min(limit, MAX_LIMIT));
+    }
+}
@@ -0,0 +1,81 @@
+package com.springboot.pizzamanager.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+// Opaque keyset pagination cursor. It remembers the sort order and the sort key of the last row
+// of the previous page, so the next page can start with a "greater than" query instead of an offset.
+public final class PageCursor {
+
+    public static final int DEFAULT_LIMIT = 50;
+    public static final int MAX_LIMIT = 200;
+
+    public enum Sort {
+        ID, NAME;
+
+        // Parses the "sort" request parameter, e.g. "id" or "name"
+        public static Sort fromParam(String value) {
+            for (Sort sort : values()) {
+                if (sort.name().equalsIgnoreCase(value)) {
+                    return sort;
+                }
+            }
+            throw new IllegalArgumentException("Unsupported sort " + value + ", expected id or name.");
+        }
+    }
+
+    private final Sort sort;
+    private final String lastKey;
+
+    private PageCursor(Sort sort, String lastKey) {
+        this.sort = sort;
+        this.lastKey = lastKey;
+    }
+
+    public static PageCursor after(Sort sort, Long lastId, String lastName) {
+        return new PageCursor(sort, sort == Sort.ID ? String.valueOf(lastId) : lastName);
+    }
+
+    // Decodes a token previously produced by encode(), rejecting anything that was tampered with
+    public static PageCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = raw.indexOf(':');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Invalid cursor.");
+            }
+            PageCursor cursor = new PageCursor(Sort.fromParam(raw.substring(0, separator)), raw.substring(separator + 1));
+            if (cursor.sort == Sort.ID) {
+                Long.parseLong(cursor.lastKey);
+            }
+            return cursor;
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor.", e);
+        }
+    }
+
+    // Clamps the requested page size to the supported range
+    public static int clampLimit(Integer limit) {
+        if (limit == null) {
+            return DEFAULT_LIMIT;
+        }
+        return Math.max(1, Math.min(limit, MAX_LIMIT));
+    }
+
+    public String encode() {
+        String raw = sort.name().toLowerCase() + ":" + lastKey;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public Sort getSort() {
+        return sort;
+    }
+
+    public Long getLastId() {
+        return Long.valueOf(lastKey);
+    }
+
+    public String getLastName() {
+        return lastKey;
+    }
+}
@@ -0,0 +1,76 @@
+package com.springboot.pizzamanager.service;
+
+import com.springboot.pizzamanager.dto.PizzaResponse;
+import com.springboot.pizzamanager.dto.PizzaToppingRow;
+import com.springboot.pizzamanager.dto.ToppingDTO;
+import com.springboot.pizzamanager.model.Pizza;
+import com.springboot.pizzamanager.model.Topping;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+
+// Assembles PizzaResponses from pizza/topping rows ordered so the rows of one pizza are adjacent,
+// or from a loaded pizza
+final class PizzaRows {
+
+    private PizzaRows() {
+    }
+
+    // Hands each pizza to the sink as soon as its last row has been read, returns the number of pizzas
+    static long forEachPizza(Iterator<PizzaToppingRow> rows, Consumer<PizzaResponse> sink) {
+        long pizzas = 0;
+        PizzaResponse current = null;
+        while (rows.hasNext()) {
+            PizzaToppingRow row = rows.next();
+            if (current == null || !current.getId().equals(row.getPizzaId())) {
+                if (current != null) {
+                    sink.accept(current);
+                    pizzas++;
+                }
+                current = new PizzaResponse(row.getPizzaId(), row.getPizzaName(), new LinkedHashSet<>(),
+                        row.getPizzaVersion());
+            }
+            if (row.getToppingId() != null) {
+                current.getToppings().add(new ToppingDTO(row.getToppingId(), row.getToppingName()));
+            }
+        }
+        if (current != null) {
+            sink.accept(current);
+            pizzas++;
+        }
+        return pizzas;
+    }
+
+    // The same response for a loaded pizza, toppings in id order like the rows
+    static PizzaResponse toPizza(Pizza pizza) {
+        Set<ToppingDTO> toppings = new LinkedHashSet<>();
+        pizza.getToppings().stream()
+                .sorted(Comparator.comparing(Topping::getId))
+                .forEach(topping -> toppings.add(new ToppingDTO(topping.getId(), topping.getName())));
+        return new PizzaResponse(pizza.getId(), pizza.getName(), toppings, pizza.getVersion());
+    }
+
+    static List<PizzaResponse> toPizzas(List<PizzaToppingRow> rows) {
+        List<PizzaResponse> pizzas = new ArrayList<>();
+        forEachPizza(rows.iterator(), pizzas::add);
+        return pizzas;
+    }
+
+    // The pizzas in the order of the given ids, ids without rows are left out
+    static List<PizzaResponse> inOrder(List<Long> ids, List<PizzaToppingRow> rows) {
+        Map<Long, PizzaResponse> byId = new HashMap<>();
+        forEachPizza(rows.iterator(), pizza -> byId.put(pizza.getId(), pizza));
+        return ids.stream()
+                .map(byId::get)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+}
@@ -1,79 +1,404 @@
 package com.springboot.pizzamanager.service;
 
+import com.springboot.pizzamanager.dto.BatchImportResponse;
+import com.springboot.pizzamanager.dto.BatchItemResult;
+import com.springboot.pizzamanager.dto.PizzaRequest;
+import com.springboot.pizzamanager.dto.PizzaResponse;
+import com.springboot.pizzamanager.dto.PizzaToppingRow;
+import com.springboot.pizzamanager.dto.ToppingDTO;
+import com.springboot.pizzamanager.dto.ToppingDeltaRequest;
 import com.springboot.pizzamanager.dto.PizzaUpdateRequest;
+import com.springboot.pizzamanager.dto.NameSuggestion;
 import com.springboot.pizzamanager.model.Pizza;
 import com.springboot.pizzamanager.model.Topping;
 import com.springboot.pizzamanager.repository.PizzaRepository;
-import com.springboot.pizzamanager.repository.ToppingRepository;
+import com.springboot.pizzamanager.repository.ToppingUsageRepository;
 
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import io.micrometer.core.annotation.Timed;
+import org.roaringbitmap.longlong.PeekableLongIterator;
+import org.roaringbitmap.longlong.Roaring64Bitmap;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
+@Timed(value = "pizzamanager.service", histogram = true)
 public class PizzaService {
 
     private final PizzaRepository pizzaRepository;
-    private final ToppingRepository toppingRepository;
+    private final ToppingUsageRepository toppingUsageRepository;
+    private final ToppingCatalog toppingCatalog;
+    private final PizzaToppingIndex pizzaToppingIndex;
+    private final NameSuggestIndex nameSuggestIndex;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Validator validator;
+    private final boolean allowDuplicateRecipes;
+    private final TransactionTemplate transactionTemplate;
+    private final int maxAttempts;
+    private final long retryBackoffMillis;
 
     @Autowired
-    public PizzaService(PizzaRepository pizzaRepository, ToppingRepository toppingRepository) {
+    public PizzaService(PizzaRepository pizzaRepository, ToppingUsageRepository toppingUsageRepository,
+                        ToppingCatalog toppingCatalog,
+                        PizzaToppingIndex pizzaToppingIndex, NameSuggestIndex nameSuggestIndex,
+                        ApplicationEventPublisher eventPublisher, Validator validator,
+                        @Value("${pizzamanager.pizzas.allow-duplicate-recipes:true}") boolean allowDuplicateRecipes,
+                        PlatformTransactionManager transactionManager,
+                        @Value("${pizzamanager.concurrency.max-attempts:5}") int maxAttempts,
+                        @Value("${pizzamanager.concurrency.retry-backoff-ms:10}") long retryBackoffMillis) {
         this.pizzaRepository = pizzaRepository;
-        this.toppingRepository = toppingRepository;
+        this.toppingUsageRepository = toppingUsageRepository;
+        this.toppingCatalog = toppingCatalog;
+        this.pizzaToppingIndex = pizzaToppingIndex;
+        this.nameSuggestIndex = nameSuggestIndex;
+        this.eventPublisher = eventPublisher;
+        this.validator = validator;
+        this.allowDuplicateRecipes = allowDuplicateRecipes;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.retryBackoffMillis = retryBackoffMillis;
     }
 
-    // Fetches all pizzas from the database using PizzaRepository
-    public List<Pizza> findAllPizzas() {
-        return pizzaRepository.findAll();
+    // Fetches all pizzas with their toppings, ordered by id. The rows are read over a database cursor
+    // straight into DTOs, so no entity is loaded however large the menu is.
+    @Transactional(readOnly = true)
+    public List<PizzaResponse> findAllPizzas() {
+        List<PizzaResponse> pizzas = new ArrayList<>();
+        try (Stream<PizzaToppingRow> rows = pizzaRepository.streamMenuRows()) {
+            PizzaRows.forEachPizza(rows.iterator(), pizzas::add);
+        }
+        return pizzas;
+    }
+
+    // Pizzas whose name, or a word of it, starts with the prefix, served from the in-memory name index
+    public List<NameSuggestion> suggestPizzas(String prefix, int limit) {
+        return nameSuggestIndex.suggestPizzas(prefix, limit);
+    }
+
+    // Fetches one keyset page of pizzas ordered by id or name, starting after the given cursor.
+    // One extra row is read to tell whether another page follows, so every page costs the same two queries.
+    @Transactional(readOnly = true)
+    public KeysetPage<PizzaResponse> findPizzaPage(PageCursor.Sort sort, String cursor, int limit) {
+        PageCursor after = cursor != null ? PageCursor.decode(cursor) : null;
+        if (after != null && after.getSort() != sort) {
+            throw new IllegalArgumentException("Cursor does not match sort " + sort.name().toLowerCase() + ".");
+        }
+
+        Limit window = Limit.of(limit + 1);
+        List<PizzaResponse> rows;
+        if (sort == PageCursor.Sort.ID) {
+            rows = after == null
+                    ? pizzaRepository.findPageOrderById(window)
+                    : pizzaRepository.findPageAfterId(after.getLastId(), window);
+        } else {
+            rows = after == null
+                    ? pizzaRepository.findPageOrderByName(window)
+                    : pizzaRepository.findPageAfterName(after.getLastName(), window);
+        }
+
+        List<PizzaResponse> items = rows.size() > limit ? rows.subList(0, limit) : rows;
+        String nextCursor = null;
+        if (rows.size() > limit) {
+            PizzaResponse last = items.get(limit - 1);
+            nextCursor = PageCursor.after(sort, last.getId(), last.getName()).encode();
+        }
+        addToppings(items);
+        return new KeysetPage<>(items, nextCursor);
+    }
+
+    // Adds the toppings to a page of pizzas with one extra query
+    private void addToppings(List<PizzaResponse> page) {
+        if (page.isEmpty()) {
+            return;
+        }
+        Map<Long, PizzaResponse> byId = new HashMap<>();
+        page.forEach(pizza -> byId.put(pizza.getId(), pizza));
+        for (PizzaToppingRow row : pizzaRepository.findRowsByIdIn(byId.keySet())) {
+            if (row.getToppingId() != null) {
+                byId.get(row.getPizzaId()).getToppings().add(new ToppingDTO(row.getToppingId(), row.getToppingName()));
+            }
+        }
+    }
+
+    // Finds pizzas by their toppings: every topping in withAll, at least one in withAny and none in
+    // without. Matching runs on the in-memory topping index, only the requested page of matches is
+    // loaded from the database. Results are ordered by id and paged with an id cursor.
+    @Transactional(readOnly = true)
+    public KeysetPage<PizzaResponse> searchPizzasByToppings(Set<Long> withAll, Set<Long> withAny, Set<Long> without,
+                                                    String cursor, int limit) {
+        PageCursor after = cursor != null ? PageCursor.decode(cursor) : null;
+        if (after != null && after.getSort() != PageCursor.Sort.ID) {
+            throw new IllegalArgumentException("Cursor does not match sort id.");
+        }
+
+        Roaring64Bitmap matches = pizzaToppingIndex.match(withAll, withAny, without);
+        PeekableLongIterator iterator = after == null
+                ? matches.getLongIterator()
+                : matches.getLongIteratorFrom(after.getLastId() + 1);
+        List<Long> ids = new ArrayList<>();
+        while (iterator.hasNext() && ids.size() <= limit) {
+            ids.add(iterator.next());
+        }
+
+        String nextCursor = null;
+        if (ids.size() > limit) {
+            ids = ids.subList(0, limit);
+            nextCursor = PageCursor.after(PageCursor.Sort.ID, ids.get(limit - 1), null).encode();
+        }
+        return new KeysetPage<>(ids.isEmpty() ? List.of() : PizzaRows.inOrder(ids, pizzaRepository.findRowsByIdIn(ids)),
+                nextCursor);
     }
 
-    // Retrieves a pizza by its ID
-    public Optional<Pizza> findPizzaById(Long id) {
-        return pizzaRepository.findById(id);
+    // Retrieves a pizza with its toppings by its ID. Pizzas and their toppings are held in the
+    // second-level cache, a pizza read before is answered without a query.
+    @Transactional(readOnly = true)
+    public Optional<PizzaResponse> findPizzaById(Long id) {
+        return pizzaRepository.findById(id).map(PizzaRows::toPizza);
     }
 
-    // Creates a new pizza with associated toppings
+    // Creates a new pizza with associated toppings. A taken name is reported by the unique constraint
+    // on insert, there is no separate lookup beforehand.
     @Transactional
     public Pizza createPizzaWithToppings(Pizza pizza, Set<Long> toppingIds) {
-        // Check if the pizza name already exists
-        if (pizzaRepository.existsByName(pizza.getName())) {
-            throw new IllegalStateException("Pizza with name " + pizza.getName() + " already exists.");
+        // Fetch and associate toppings
+        pizza.setToppings(resolveToppings(toppingIds));
+        checkUniqueRecipe(pizza.getToppingSignature(), pizza.getId());
+        Pizza saved = saveWithUniqueName(pizza);
+        adjustUsage(toppingIds(saved.getToppings()), Set.of());
+        eventPublisher.publishEvent(MenuChangeEvent.pizzaCreated(saved));
+        return saved;
+    }
+    
+    // Writes the pizza right away, so a name taken in the meantime fails here on the unique constraint
+    // and is reported as a DuplicateNameException. A pizza loaded in this transaction is only flushed:
+    // merging it would load each topping taken from the catalog again, one select per topping.
+    private Pizza saveWithUniqueName(Pizza pizza) {
+        try {
+            if (pizza.getId() == null) {
+                return pizzaRepository.saveAndFlush(pizza);
+            }
+            pizzaRepository.flush();
+            return pizza;
+        } catch (DataIntegrityViolationException e) {
+            if (DuplicateNameException.violates(e, Pizza.NAME_CONSTRAINT)) {
+                throw new DuplicateNameException("Pizza with name " + pizza.getName() + " already exists.");
+            }
+            throw e;
         }
+    }
 
-        // Fetch and associate toppings
-        Set<Topping> toppings = new HashSet<>();
-        for (Long id : toppingIds) {
-            Topping topping = toppingRepository.findById(id)
-                .orElseThrow(() -> new IllegalStateException("Topping with id " + id + " does not exist."));
-            toppings.add(topping);
+    // Counts the toppings a write added to pizzas up and the ones it removed down, all in one batch
+    private void adjustUsage(Collection<Long> addedIds, Collection<Long> removedIds) {
+        Map<Long, Long> deltas = new HashMap<>();
+        addedIds.forEach(id -> deltas.merge(id, 1L, Long::sum));
+        removedIds.forEach(id -> deltas.merge(id, -1L, Long::sum));
+        toppingUsageRepository.adjustUsageCounts(deltas);
+    }
+
+    private static Set<Long> toppingIds(Collection<Topping> toppings) {
+        return toppings.stream().map(Topping::getId).collect(Collectors.toSet());
+    }
+
+    // Resolves all topping ids against the topping catalog, ids it does not know yet are
+    // fetched with a single IN query. Every unknown id is reported together in one validation error.
+    private Set<Topping> resolveToppings(Collection<Long> toppingIds) {
+        if (toppingIds == null || toppingIds.isEmpty()) {
+            return new HashSet<>();
+        }
+        Set<Long> requestedIds = new TreeSet<>(toppingIds);
+        Set<Topping> toppings = toppingCatalog.findAllById(requestedIds);
+        if (toppings.size() < requestedIds.size()) {
+            toppings.forEach(topping -> requestedIds.remove(topping.getId()));
+            throw new IllegalStateException(missingToppingsMessage(requestedIds));
         }
+        return toppings;
+    }
 
-        pizza.setToppings(toppings);
-        return pizzaRepository.save(pizza);
+    // Rejects a pizza whose toppings are exactly those of another pizza, when duplicate recipes are not
+    // allowed. One lookup on the indexed signature, however large the menu is. The check is best-effort:
+    // it is not backed by a unique constraint, so two concurrent writes can still both pass it, and a
+    // topping delete may leave two pizzas with the same toppings. findDuplicateRecipes lists them all.
+    private void checkUniqueRecipe(String signature, Long pizzaId) {
+        if (allowDuplicateRecipes || signature == null) {
+            return;
+        }
+        Optional<Pizza> sameRecipe = pizzaId == null
+                ? pizzaRepository.findFirstByToppingSignature(signature)
+                : pizzaRepository.findFirstByToppingSignatureAndIdNot(signature, pizzaId);
+        if (sameRecipe.isPresent()) {
+            throw new IllegalStateException("Pizza " + sameRecipe.get().getName() + " already has the same toppings.");
+        }
     }
-    
-    // Deletes a pizza by its ID after checking if it exists
+
+    // Groups of two or more pizzas sharing the same toppings, keyed by their signature.
+    // The groups are found by the database over the signature index, then read with one more query.
+    @Transactional(readOnly = true)
+    public Map<String, List<PizzaResponse>> findDuplicateRecipes() {
+        List<String> signatures = pizzaRepository.findDuplicateSignatures();
+        if (signatures.isEmpty()) {
+            return Map.of();
+        }
+        Map<String, List<PizzaResponse>> groups = new TreeMap<>();
+        for (PizzaResponse pizza : PizzaRows.toPizzas(pizzaRepository.findRowsByToppingSignatureIn(signatures))) {
+            String signature = Pizza.signatureOf(pizza.getToppings().stream().map(ToppingDTO::getId).toList());
+            groups.computeIfAbsent(signature, key -> new ArrayList<>()).add(pizza);
+        }
+        return groups;
+    }
+
+    private static String missingToppingsMessage(Set<Long> missingIds) {
+        return missingIds.size() == 1
+                ? "Topping with id " + missingIds.iterator().next() + " does not exist."
+                : "Toppings with ids " + missingIds.stream().map(String::valueOf).collect(Collectors.joining(", "))
+                        + " do not exist.";
+    }
+
+    // Creates many pizzas in one transaction. Names and topping references of the whole batch are
+    // validated set-wise (one query for taken names, one catalog lookup for all topping ids), invalid
+    // items are reported and skipped, and the valid ones are written with batched inserts.
     @Transactional
-    public void deletePizza(Long id) {
-        if (!pizzaRepository.existsById(id)) {
-            throw new IllegalStateException("Pizza with id " + id + " does not exist.");
+    public BatchImportResponse importPizzas(List<PizzaRequest> requests) {
+        BatchItemResult[] results = new BatchItemResult[requests.size()];
+
+        Set<String> names = new HashSet<>();
+        Set<Long> allToppingIds = new HashSet<>();
+        for (PizzaRequest request : requests) {
+            if (request.getName() != null) {
+                names.add(request.getName());
+            }
+            if (request.getToppingIds() != null) {
+                allToppingIds.addAll(request.getToppingIds());
+            }
+        }
+        Set<String> takenNames = names.isEmpty() ? Set.of() : pizzaRepository.findExistingNames(names);
+        Set<String> takenSignatures = allowDuplicateRecipes ? Set.of() : takenSignatures(requests);
+        Map<Long, Topping> toppingsById = allToppingIds.isEmpty() ? Map.of()
+                : toppingCatalog.findAllById(allToppingIds).stream()
+                        .collect(Collectors.toMap(Topping::getId, Function.identity()));
+
+        Set<String> batchNames = new HashSet<>();
+        Set<String> batchSignatures = new HashSet<>();
+        Map<Integer, Pizza> accepted = new LinkedHashMap<>();
+        for (int i = 0; i < requests.size(); i++) {
+            PizzaRequest request = requests.get(i);
+            Pizza pizza = new Pizza(request.getName());
+            String error = nameError(pizza);
+            if (error == null && takenNames.contains(pizza.getName())) {
+                error = "Pizza with name " + pizza.getName() + " already exists.";
+            }
+            if (error == null && !batchNames.add(pizza.getName())) {
+                error = "Pizza with name " + pizza.getName() + " appears more than once in the batch.";
+            }
+            if (error == null && request.getToppingIds() != null) {
+                Set<Long> missingIds = new TreeSet<>(request.getToppingIds());
+                missingIds.removeAll(toppingsById.keySet());
+                if (!missingIds.isEmpty()) {
+                    error = missingToppingsMessage(missingIds);
+                } else {
+                    request.getToppingIds().forEach(id -> pizza.addTopping(toppingsById.get(id)));
+                }
+            }
+            String signature = pizza.getToppingSignature();
+            if (error == null && !allowDuplicateRecipes && signature != null
+                    && (takenSignatures.contains(signature) || !batchSignatures.add(signature))) {
+                error = "Pizza " + pizza.getName() + " has the same toppings as another pizza.";
+            }
+
+            if (error != null) {
+                results[i] = BatchItemResult.rejected(i, request.getName(), error);
+            } else {
+                accepted.put(i, pizza);
+            }
         }
-        pizzaRepository.deleteById(id);
+
+        try {
+            pizzaRepository.saveAll(accepted.values());
+            pizzaRepository.flush();
+        } catch (DataIntegrityViolationException e) {
+            // Names checked free above were taken by a concurrent write before the insert
+            if (DuplicateNameException.violates(e, Pizza.NAME_CONSTRAINT)) {
+                throw new DuplicateNameException("A pizza name in the batch was taken concurrently, nothing was imported.");
+            }
+            throw e;
+        }
+        List<Long> usedToppingIds = new ArrayList<>();
+        accepted.values().forEach(pizza -> usedToppingIds.addAll(toppingIds(pizza.getToppings())));
+        adjustUsage(usedToppingIds, List.of());
+        accepted.forEach((index, pizza) -> {
+            results[index] = BatchItemResult.created(index, pizza.getName(), pizza.getId());
+            eventPublisher.publishEvent(MenuChangeEvent.pizzaCreated(pizza));
+        });
+        return new BatchImportResponse(Arrays.asList(results));
     }
 
-    // Updates a pizza's name and toppings
+    // Signatures of the requested topping sets that already belong to a pizza, one query for the whole batch
+    private Set<String> takenSignatures(List<PizzaRequest> requests) {
+        Set<String> signatures = requests.stream()
+                .map(request -> Pizza.signatureOf(request.getToppingIds()))
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        return signatures.isEmpty() ? Set.of() : pizzaRepository.findExistingSignatures(signatures);
+    }
+
+    // Checks the name against the constraints declared on Pizza, so a bad item is rejected on its own
+    // instead of failing the whole batch at flush time
+    private String nameError(Pizza pizza) {
+        Set<ConstraintViolation<Pizza>> violations = validator.validateProperty(pizza, "name");
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return "Pizza name " + violations.iterator().next().getMessage() + ".";
+    }
+
+    // Deletes a pizza by its ID after checking if it exists, and that it is still at the expected version when one is given.
+    // The delete is conditional on the version loaded together with the toppings, so the usage counters
+    // are lowered for exactly the toppings the deleted row had.
+    @Transactional
+    public void deletePizza(Long id, Long expectedVersion) {
+        Pizza pizza = pizzaRepository.findById(id)
+                .orElseThrow(() -> new IllegalStateException("Pizza with id " + id + " does not exist."));
+        VersionConflictException.check("Pizza", id, expectedVersion, pizza.getVersion());
+        adjustUsage(Set.of(), toppingIds(pizza.getToppings()));
+        pizzaRepository.delete(pizza);
+        eventPublisher.publishEvent(MenuChangeEvent.pizzaDeleted(id));
+    }
+
+    // Updates a pizza's name and toppings. The write is a full replacement, so it is never retried: a pizza
+    // that is not at the expected version, or that another writer changes before the flush, fails with a conflict.
     @Transactional
-    public Pizza updatePizza(Long id, PizzaUpdateRequest updateRequest) {
+    public Pizza updatePizza(Long id, PizzaUpdateRequest updateRequest, Long expectedVersion) {
         Pizza pizza = pizzaRepository.findById(id)
                 .orElseThrow(() -> new IllegalStateException(
                         "Pizza with id " + id + " does not exist."
                 ));
+        VersionConflictException.check("Pizza", id, expectedVersion, pizza.getVersion());
 
         String newName = updateRequest.getName();
         if (newName != null && newName.length() > 0 && !pizza.getName().equals(newName)) {
@@ -81,35 +406,111 @@ public class PizzaService {
         }
 
         // Handle topping updates
-        Set<Topping> updatedToppings = updateRequest.getToppingIds().stream()
-                .map(toppingId -> toppingRepository.findById(toppingId)
-                        .orElseThrow(() -> new IllegalStateException("Topping with id " + toppingId + " does not exist.")))
-                .collect(Collectors.toSet());
+        Set<Long> before = toppingIds(pizza.getToppings());
+        pizza.replaceToppings(resolveToppings(updateRequest.getToppingIds()));
+        checkUniqueRecipe(pizza.getToppingSignature(), pizza.getId());
 
-        pizza.setToppings(updatedToppings);
+        Pizza saved = saveWithUniqueName(pizza);
+        Set<Long> after = toppingIds(saved.getToppings());
+        adjustUsage(difference(after, before), difference(before, after));
+        eventPublisher.publishEvent(MenuChangeEvent.pizzaUpdated(saved));
+        return saved;
+    }
 
-        return pizzaRepository.save(pizza);
+    // Adds and removes toppings of one pizza with targeted statements on the join table, without loading
+    // the pizza or its toppings. Toppings the pizza already has are not added again and toppings it does
+    // not have are not removed, so repeating a delta changes nothing.
+    // Deltas commute, so one that loses a race against another writer is simply run again in a fresh
+    // transaction, up to max-attempts times after a short randomized pause that grows with every attempt,
+    // so writers racing for the same pizza spread out. With an expected version the caller asked for that
+    // exact state and a conflict is reported instead. Returns the version of the pizza after the delta.
+    public Long changePizzaToppings(Long pizzaId, Set<Long> add, Set<Long> remove, Long expectedVersion) {
+        Set<Long> toAdd = add != null ? add : Set.of();
+        Set<Long> toRemove = remove != null ? remove : Set.of();
+        checkDisjoint(toAdd, toRemove);
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status ->
+                        applyToppingDelta(pizzaId, toAdd, toRemove, expectedVersion));
+            } catch (OptimisticLockingFailureException e) {
+                if (expectedVersion != null || attempt >= maxAttempts) {
+                    throw e;
+                }
+                backOff(attempt);
+            }
+        }
     }
 
-    // Adds a topping to a pizza, ensuring the pizza exists before updating it
-    @Transactional
-    public Pizza addToppingToPizza(Long pizzaId, Topping topping) {
-        Pizza pizza = pizzaRepository.findById(pizzaId)
-                .orElseThrow(() -> new IllegalStateException(
-                        "Pizza with id " + pizzaId + " does not exist."
-                ));
-        pizza.addTopping(topping);
-        return pizzaRepository.save(pizza);
+    // Applies the topping deltas of several pizzas in one transaction, the group commit of ToppingDeltaBatcher.
+    // Pizzas are written in id order, so two batches never wait on each other's rows. Nothing is retried:
+    // any failure rolls back every delta and is thrown, the batcher then runs them one by one.
+    // Returns the version of every pizza once the batch has committed.
+    public Map<Long, Long> changeToppingsOfPizzas(Map<Long, ToppingDeltaRequest> deltas) {
+        return transactionTemplate.execute(status -> {
+            Map<Long, Long> versions = new TreeMap<>();
+            new TreeMap<>(deltas).forEach((pizzaId, delta) ->
+                    versions.put(pizzaId, applyToppingDelta(pizzaId, delta.getAdd(), delta.getRemove(), null)));
+            return versions;
+        });
     }
 
-    // Removes a topping from a pizza, it ensures the pizza exists before modifying its toppings list
-    @Transactional
-    public Pizza removeToppingFromPizza(Long pizzaId, Topping topping) {
-        Pizza pizza = pizzaRepository.findById(pizzaId)
-                .orElseThrow(() -> new IllegalStateException(
-                        "Pizza with id " + pizzaId + " does not exist."
-                ));
-        pizza.removeTopping(topping);
-        return pizzaRepository.save(pizza);
+    static void checkDisjoint(Set<Long> add, Set<Long> remove) {
+        Set<Long> conflicting = new TreeSet<>(add);
+        conflicting.retainAll(remove);
+        if (!conflicting.isEmpty()) {
+            throw new IllegalStateException("Topping with id " + conflicting.iterator().next()
+                    + " cannot be added and removed at the same time.");
+        }
+    }
+
+    private void backOff(int attempt) {
+        if (retryBackoffMillis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(retryBackoffMillis << Math.min(attempt, 10)));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new VersionConflictException("Interrupted while retrying a concurrent change.");
+        }
+    }
+
+    // Returns the version the pizza has after the delta, unchanged when the delta had nothing to do
+    private Long applyToppingDelta(Long pizzaId, Set<Long> toAdd, Set<Long> toRemove, Long expectedVersion) {
+        Long version = pizzaRepository.findVersionById(pizzaId)
+                .orElseThrow(() -> new IllegalStateException("Pizza with id " + pizzaId + " does not exist."));
+        VersionConflictException.check("Pizza", pizzaId, expectedVersion, version);
+
+        Set<Topping> addedToppings = resolveToppings(toAdd);
+        Set<Long> current = pizzaRepository.findToppingIds(pizzaId);
+        addedToppings.removeIf(topping -> current.contains(topping.getId()));
+        Set<Long> removedIds = new HashSet<>(toRemove);
+        removedIds.retainAll(current);
+        if (addedToppings.isEmpty() && removedIds.isEmpty()) {
+            return version;
+        }
+
+        Set<Long> addedIds = addedToppings.stream().map(Topping::getId).collect(Collectors.toSet());
+        Set<Long> result = new HashSet<>(current);
+        result.addAll(addedIds);
+        result.removeAll(removedIds);
+        String signature = Pizza.signatureOf(result);
+        checkUniqueRecipe(signature, pizzaId);
+
+        // Claiming the next version first serializes concurrent deltas on the pizza row, the join rows
+        // read above are only written by whoever still holds the version they were read at
+        if (!toppingUsageRepository.changeToppings(pizzaId, version, signature, addedIds, removedIds)) {
+            throw new VersionConflictException("Pizza with id " + pizzaId + " was changed concurrently.");
+        }
+        adjustUsage(addedIds, removedIds);
+        eventPublisher.publishEvent(MenuChangeEvent.pizzaToppingsChanged(pizzaId, version + 1, addedToppings, removedIds));
+        return version + 1;
+    }
+
+    private static Set<Long> difference(Set<Long> from, Set<Long> without) {
+        Set<Long> result = new HashSet<>(from);
+        result.removeAll(without);
+        return result;
     }
 }
@@ -0,0 +1,202 @@
+package com.springboot.pizzamanager.service;
+
+import com.springboot.pizzamanager.dto.ToppingDTO;
+import com.springboot.pizzamanager.model.Topping;
+import org.roaringbitmap.longlong.Roaring64Bitmap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Inverted index from topping id to the ids of the pizzas carrying that topping. Each posting list is a
+// compressed Roaring bitmap, so "with X and Y, without Z" is a handful of bitmap AND/OR/ANDNOT operations
+// instead of a scan over every pizza. Kept current from committed menu changes, rebuilt on startup.
+@Component
+public class PizzaToppingIndex {
+
+    private final MenuExportService menuExportService;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private Map<Long, Roaring64Bitmap> pizzasByTopping = new HashMap<>();
+    private Roaring64Bitmap allPizzas = new Roaring64Bitmap();
+    // Changes committed while a rebuild reads the database, replayed on top of the rebuilt index.
+    // Null when no rebuild is running.
+    private List<MenuChangeEvent> changedDuringRebuild;
+
+    @Autowired
+    public PizzaToppingIndex(MenuExportService menuExportService) {
+        this.menuExportService = menuExportService;
+    }
+
+    // Ids of the pizzas that carry every topping in withAll, at least one topping in withAny (when given)
+    // and no topping in without. The returned bitmap is a private copy.
+    public Roaring64Bitmap match(Collection<Long> withAll, Collection<Long> withAny, Collection<Long> without) {
+        lock.readLock().lock();
+        try {
+            Roaring64Bitmap result;
+            if (withAll.isEmpty()) {
+                result = allPizzas.clone();
+            } else {
+                List<Roaring64Bitmap> required = new ArrayList<>();
+                for (Long toppingId : withAll) {
+                    Roaring64Bitmap pizzas = pizzasByTopping.get(toppingId);
+                    if (pizzas == null) {
+                        return new Roaring64Bitmap();
+                    }
+                    required.add(pizzas);
+                }
+                // Intersecting from the rarest topping up keeps every intermediate result small
+                required.sort(Comparator.comparingLong(Roaring64Bitmap::getLongCardinality));
+                result = required.get(0).clone();
+                for (int i = 1; i < required.size() && !result.isEmpty(); i++) {
+                    result.and(required.get(i));
+                }
+            }
+
+            if (!withAny.isEmpty()) {
+                Roaring64Bitmap anyOf = new Roaring64Bitmap();
+                for (Long toppingId : withAny) {
+                    Roaring64Bitmap pizzas = pizzasByTopping.get(toppingId);
+                    if (pizzas != null) {
+                        anyOf.or(pizzas);
+                    }
+                }
+                result.and(anyOf);
+            }
+
+            for (Long toppingId : without) {
+                Roaring64Bitmap pizzas = pizzasByTopping.get(toppingId);
+                if (pizzas != null) {
+                    result.andNot(pizzas);
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Number of pizzas in the index
+    public long size() {
+        lock.readLock().lock();
+        try {
+            return allPizzas.getLongCardinality();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Keeps the index in step with committed PizzaService and ToppingService writes
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMenuChange(MenuChangeEvent event) {
+        lock.writeLock().lock();
+        try {
+            if (changedDuringRebuild != null) {
+                changedDuringRebuild.add(event);
+            }
+            apply(event, pizzasByTopping, allPizzas);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Reloads the whole index from the database. Queries keep using the old index until the new one
+    // is complete, changes committed in the meantime are applied to both.
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        lock.writeLock().lock();
+        try {
+            changedDuringRebuild = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        Map<Long, Roaring64Bitmap> loadedByTopping = new HashMap<>();
+        Roaring64Bitmap loadedPizzas = new Roaring64Bitmap();
+        try {
+            menuExportService.exportPizzas(pizza -> {
+                loadedPizzas.addLong(pizza.getId());
+                for (ToppingDTO topping : pizza.getToppings()) {
+                    loadedByTopping.computeIfAbsent(topping.getId(), id -> new Roaring64Bitmap()).addLong(pizza.getId());
+                }
+            });
+        } catch (RuntimeException e) {
+            lock.writeLock().lock();
+            try {
+                changedDuringRebuild = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            throw e;
+        }
+
+        lock.writeLock().lock();
+        try {
+            for (MenuChangeEvent event : changedDuringRebuild) {
+                apply(event, loadedByTopping, loadedPizzas);
+            }
+            loadedByTopping.values().forEach(Roaring64Bitmap::runOptimize);
+            loadedPizzas.runOptimize();
+            pizzasByTopping = loadedByTopping;
+            allPizzas = loadedPizzas;
+            changedDuringRebuild = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // A change either resets one pizza or adds and removes single entries. Replayed in commit order,
+    // a change that the rebuilt index already reflects leaves it as it is.
+    private static void apply(MenuChangeEvent event, Map<Long, Roaring64Bitmap> byTopping, Roaring64Bitmap pizzas) {
+        switch (event.getType()) {
+            case PIZZA_CREATED, PIZZA_UPDATED -> {
+                Long pizzaId = event.getPizza().getId();
+                removePizza(pizzaId, byTopping, pizzas);
+                pizzas.addLong(pizzaId);
+                for (Topping topping : event.getPizza().getToppings()) {
+                    byTopping.computeIfAbsent(topping.getId(), id -> new Roaring64Bitmap()).addLong(pizzaId);
+                }
+            }
+            case PIZZA_DELETED -> removePizza(event.getId(), byTopping, pizzas);
+            case PIZZA_TOPPINGS_CHANGED -> {
+                Long pizzaId = event.getId();
+                for (Topping topping : event.getAddedToppings()) {
+                    byTopping.computeIfAbsent(topping.getId(), id -> new Roaring64Bitmap()).addLong(pizzaId);
+                }
+                for (Long toppingId : event.getRemovedToppingIds()) {
+                    Roaring64Bitmap toppingPizzas = byTopping.get(toppingId);
+                    if (toppingPizzas != null) {
+                        toppingPizzas.removeLong(pizzaId);
+                        if (toppingPizzas.isEmpty()) {
+                            byTopping.remove(toppingId);
+                        }
+                    }
+                }
+            }
+            case TOPPING_DELETED -> byTopping.remove(event.getId());
+            default -> {
+            }
+        }
+    }
+
+    private static void removePizza(Long pizzaId, Map<Long, Roaring64Bitmap> byTopping, Roaring64Bitmap pizzas) {
+        if (!pizzas.contains(pizzaId)) {
+            return;
+        }
+        pizzas.removeLong(pizzaId);
+        byTopping.values().removeIf(toppingPizzas -> {
+            toppingPizzas.removeLong(pizzaId);
+            return toppingPizzas.isEmpty();
+        });
+    }
+}
@@ -0,0 +1,96 @@
+package com.springboot.pizzamanager.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+// Coalesces concurrent identical loads: the first caller for a key runs the loader, callers arriving
+// while it runs wait for it and share its result or exception. Nothing outlives the load, the next
+// call after it completes runs the loader again. Joining a running load is a map read, only the caller
+// that starts one writes to the map.
+// Owners key a load by the generation of their data, so a caller that has seen an invalidation never
+// joins a load that started before it.
+public class SingleFlight<K, V> implements MeterBinder {
+
+    private final String name;
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder executed = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    public SingleFlight(String name) {
+        this.name = name;
+    }
+
+    // Returns the result of the load running for the key, or runs the loader when there is none
+    public V load(K key, Supplier<V> loader) {
+        CompletableFuture<V> running = inFlight.get(key);
+        if (running == null) {
+            CompletableFuture<V> started = new CompletableFuture<>();
+            running = inFlight.putIfAbsent(key, started);
+            if (running == null) {
+                return run(key, started, loader);
+            }
+        }
+        coalesced.increment();
+        return await(running);
+    }
+
+    public long getExecuted() {
+        return executed.sum();
+    }
+
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("pizzamanager.single.flight.calls", executed, LongAdder::sum)
+                .description("Loads run by a caller, or shared with a load already in flight")
+                .tag("flight", name)
+                .tag("result", "executed")
+                .register(registry);
+        FunctionCounter.builder("pizzamanager.single.flight.calls", coalesced, LongAdder::sum)
+                .description("Loads run by a caller, or shared with a load already in flight")
+                .tag("flight", name)
+                .tag("result", "coalesced")
+                .register(registry);
+    }
+
+    private V run(K key, CompletableFuture<V> started, Supplier<V> loader) {
+        executed.increment();
+        try {
+            V value = loader.get();
+            started.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            started.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, started);
+        }
+    }
+
+    // Waiters see the loader's own exception, as if they had run it themselves
+    private static <V> V await(CompletableFuture<V> running) {
+        try {
+            return running.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+}
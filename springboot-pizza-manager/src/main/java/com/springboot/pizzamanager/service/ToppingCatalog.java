@@ -0,0 +1,247 @@
+package com.springboot.pizzamanager.service;
+
+import com.springboot.pizzamanager.dto.CatalogStats;
+import com.springboot.pizzamanager.model.Topping;
+import com.springboot.pizzamanager.repository.ToppingRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Node-local, read-mostly view of the topping table. Readers see an immutable snapshot
+// (id map, name index and the sorted list) through a single volatile read. Writers build a new
+// snapshot copy-on-write once a ToppingService change has committed. Readers that find the
+// snapshot dropped share one reload instead of each querying the whole table.
+@Component
+public class ToppingCatalog implements MeterBinder {
+
+    // The catalog applies a committed change before the listeners that read through it, such as
+    // MenuSnapshot, drop what they encoded from the old toppings
+    public static final int LISTENER_ORDER = 0;
+
+    private final ToppingRepository toppingRepository;
+
+    private volatile Snapshot snapshot;
+    // Bumped by every applied change, lets a rebuild detect that it raced with a write
+    private final AtomicLong changeCount = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder rebuilds = new LongAdder();
+    private final SingleFlight<Long, Snapshot> reloads = new SingleFlight<>("topping.catalog");
+
+    @Autowired
+    public ToppingCatalog(ToppingRepository toppingRepository) {
+        this.toppingRepository = toppingRepository;
+    }
+
+    // Returns every topping ordered by id
+    public List<Topping> findAll() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            misses.increment();
+            return rebuild().all;
+        }
+        hits.increment();
+        return current.all;
+    }
+
+    // Looks a topping up by id, falling back to the database for toppings this node has not seen yet
+    public Optional<Topping> findById(Long id) {
+        Topping topping = currentSnapshot().byId.get(id);
+        if (topping != null) {
+            hits.increment();
+            return Optional.of(topping);
+        }
+        misses.increment();
+        long seen = changeCount.get();
+        Optional<Topping> loaded = toppingRepository.findById(id).map(ToppingCatalog::copyOf);
+        loaded.ifPresent(copy -> putLoaded(List.of(copy), seen));
+        return loaded;
+    }
+
+    // Looks a topping up by its exact name, without going to the database
+    public Optional<Topping> findByName(String name) {
+        return Optional.ofNullable(currentSnapshot().byName.get(name));
+    }
+
+    // Returns the toppings for all ids that exist. Ids unknown to the snapshot are fetched
+    // together with one IN query, so the caller can tell which ones are missing.
+    public Set<Topping> findAllById(Collection<Long> ids) {
+        Snapshot current = currentSnapshot();
+        Set<Topping> found = new HashSet<>();
+        Set<Long> unknown = new HashSet<>();
+        for (Long id : ids) {
+            Topping topping = current.byId.get(id);
+            if (topping != null) {
+                found.add(topping);
+            } else {
+                unknown.add(id);
+            }
+        }
+
+        if (unknown.isEmpty()) {
+            hits.increment();
+            return found;
+        }
+        misses.increment();
+        long seen = changeCount.get();
+        List<Topping> loaded = new ArrayList<>();
+        for (Topping topping : toppingRepository.findAllById(unknown)) {
+            loaded.add(copyOf(topping));
+        }
+        putLoaded(loaded, seen);
+        found.addAll(loaded);
+        return found;
+    }
+
+    // Keeps the snapshot in step with committed ToppingService writes
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(LISTENER_ORDER)
+    public void onMenuChange(MenuChangeEvent event) {
+        switch (event.getType()) {
+            case TOPPING_CREATED, TOPPING_UPDATED -> put(copyOf(event.getTopping()));
+            case TOPPING_DELETED -> remove(event.getId());
+            default -> {
+            }
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        rebuild();
+    }
+
+    // Reloads the whole snapshot from the database. A reload that started before the last
+    // change is not shared with readers that come after it.
+    private Snapshot rebuild() {
+        long seen = changeCount.get();
+        return reloads.load(seen, () -> reload(seen));
+    }
+
+    private Snapshot reload(long seen) {
+        Snapshot loaded = new Snapshot(toppingRepository.findAll().stream().map(ToppingCatalog::copyOf).toList());
+        rebuilds.increment();
+        synchronized (this) {
+            // A change committed while we were loading may be missing from the result,
+            // leave the snapshot empty so the next read loads it again
+            if (changeCount.get() == seen) {
+                snapshot = loaded;
+            }
+        }
+        return loaded;
+    }
+
+    // Drops the snapshot, the next read rebuilds it
+    public synchronized void invalidate() {
+        changeCount.incrementAndGet();
+        snapshot = null;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        reloads.bindTo(registry);
+        FunctionCounter.builder("pizzamanager.topping.catalog.lookups", hits, LongAdder::sum)
+                .description("Catalog lookups answered from the snapshot, or that had to query the database")
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("pizzamanager.topping.catalog.lookups", misses, LongAdder::sum)
+                .description("Catalog lookups answered from the snapshot, or that had to query the database")
+                .tag("result", "miss")
+                .register(registry);
+        FunctionCounter.builder("pizzamanager.topping.catalog.rebuilds", rebuilds, LongAdder::sum)
+                .description("Full reloads of the catalog snapshot from the database")
+                .register(registry);
+    }
+
+    public CatalogStats getStats() {
+        Snapshot current = snapshot;
+        return new CatalogStats(hits.sum(), misses.sum(), rebuilds.sum(), current == null ? 0 : current.all.size());
+    }
+
+    private Snapshot currentSnapshot() {
+        Snapshot current = snapshot;
+        return current != null ? current : rebuild();
+    }
+
+    private synchronized void put(Topping topping) {
+        changeCount.incrementAndGet();
+        Snapshot current = snapshot;
+        if (current == null) {
+            return;
+        }
+        Map<Long, Topping> byId = new HashMap<>(current.byId);
+        byId.put(topping.getId(), topping);
+        snapshot = new Snapshot(byId.values());
+    }
+
+    // Adds toppings read on a miss. A change committed since the read may have renamed or deleted
+    // one of them, the event already applied wins and the read is not cached.
+    private synchronized void putLoaded(List<Topping> toppings, long seen) {
+        Snapshot current = snapshot;
+        if (current == null || toppings.isEmpty() || changeCount.get() != seen) {
+            return;
+        }
+        Map<Long, Topping> byId = new HashMap<>(current.byId);
+        toppings.forEach(topping -> byId.put(topping.getId(), topping));
+        snapshot = new Snapshot(byId.values());
+    }
+
+    private synchronized void remove(Long id) {
+        changeCount.incrementAndGet();
+        Snapshot current = snapshot;
+        if (current == null || !current.byId.containsKey(id)) {
+            return;
+        }
+        Map<Long, Topping> byId = new HashMap<>(current.byId);
+        byId.remove(id);
+        snapshot = new Snapshot(byId.values());
+    }
+
+    // Catalog entries are private copies, so nothing outside can change a published snapshot
+    // by mutating a managed entity
+    private static Topping copyOf(Topping topping) {
+        Topping copy = new Topping(topping.getName());
+        copy.setId(topping.getId());
+        copy.setVersion(topping.getVersion());
+        return copy;
+    }
+
+    private static final class Snapshot {
+        private final Map<Long, Topping> byId;
+        private final Map<String, Topping> byName;
+        private final List<Topping> all;
+
+        private Snapshot(Collection<Topping> toppings) {
+            List<Topping> sorted = new ArrayList<>(toppings);
+            sorted.sort(Comparator.comparing(Topping::getId));
+            Map<Long, Topping> ids = new HashMap<>();
+            Map<String, Topping> names = new HashMap<>();
+            for (Topping topping : sorted) {
+                ids.put(topping.getId(), topping);
+                names.put(topping.getName(), topping);
+            }
+            this.byId = Collections.unmodifiableMap(ids);
+            this.byName = Collections.unmodifiableMap(names);
+            this.all = Collections.unmodifiableList(sorted);
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package com.springboot.pizzamanager.service;
+
+import com.springboot.pizzamanager.dto.ToppingDeltaRequest;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+// Group commit for topping deltas sent without If-Match. Callers queue their delta and wait while one
+// flusher thread collects deltas for up to max-delay or max-batch of them, merges them per pizza and
+// applies them all in one transaction, so a burst of single-topping edits costs one commit instead of one
+// each. A caller only returns once the transaction holding its delta has committed.
+// Deltas in one batch come from requests that are all still waiting for their response, so any order of
+// them is a valid outcome, and adds and removes of different toppings commute. A delta that would undo a
+// topping another delta of the batch changes on the same pizza waits for the next batch instead.
+// When a batch fails, its deltas run again one by one through PizzaService.changePizzaToppings, so every
+// caller gets the outcome of its own delta, such as an unknown topping or a duplicate recipe.
+@Component
+@ConditionalOnProperty(name = "pizzamanager.group-commit.enabled", havingValue = "true")
+public class ToppingDeltaBatcher implements MeterBinder {
+
+    private static final Logger log = LoggerFactory.getLogger(ToppingDeltaBatcher.class);
+
+    private final PizzaService pizzaService;
+    private final int maxBatch;
+    private final long maxDelayNanos;
+    private final long maxWaitNanos;
+    private final BlockingQueue<Pending> queue;
+    private final ExecutorService flusher;
+    // Guards running together with the enqueue, so no delta is queued after shutdown has drained the queue
+    private final Object intake = new Object();
+    private volatile boolean running = true;
+
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder batched = new LongAdder();
+    private final LongAdder fallbacks = new LongAdder();
+
+    @Autowired
+    public ToppingDeltaBatcher(PizzaService pizzaService,
+                               @Value("${pizzamanager.group-commit.max-batch:64}") int maxBatch,
+                               @Value("${pizzamanager.group-commit.max-delay:5ms}") Duration maxDelay,
+                               @Value("${pizzamanager.group-commit.queue-capacity:10000}") int queueCapacity,
+                               @Value("${pizzamanager.group-commit.max-wait:30s}") Duration maxWait) {
+        this.pizzaService = pizzaService;
+        this.maxBatch = Math.max(1, maxBatch);
+        this.maxDelayNanos = maxDelay.toNanos();
+        this.maxWaitNanos = maxWait.toNanos();
+        this.queue = new LinkedBlockingQueue<>(queueCapacity);
+        this.flusher = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("topping-group-commit-"));
+        flusher.execute(this::flushUntilStopped);
+    }
+
+    // Queues the delta and waits until the batch holding it has committed, returns the pizza's version
+    // after that commit. A caller never waits longer than max-wait, a delta that got lost or stuck in the
+    // flusher fails with GroupCommitTimeoutException.
+    public Long changePizzaToppings(Long pizzaId, Set<Long> add, Set<Long> remove) {
+        try {
+            return submit(pizzaId, add, remove).orTimeout(maxWaitNanos, TimeUnit.NANOSECONDS).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof TimeoutException) {
+                throw new GroupCommitTimeoutException("The topping change was not committed within "
+                        + TimeUnit.NANOSECONDS.toMillis(maxWaitNanos) + " ms.");
+            }
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    // Queues the delta, the future completes with the pizza's version when the batch holding it has committed.
+    // A full queue or a batcher that is shutting down applies the delta right away on the caller's thread instead.
+    CompletableFuture<Long> submit(Long pizzaId, Set<Long> add, Set<Long> remove) {
+        Set<Long> toAdd = add != null ? add : Set.of();
+        Set<Long> toRemove = remove != null ? remove : Set.of();
+        PizzaService.checkDisjoint(toAdd, toRemove);
+
+        Pending pending = new Pending(pizzaId, toAdd, toRemove);
+        boolean queued;
+        synchronized (intake) {
+            queued = running && queue.offer(pending);
+        }
+        if (!queued) {
+            pending.done.complete(pizzaService.changePizzaToppings(pizzaId, toAdd, toRemove, null));
+        }
+        return pending.done;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("pizzamanager.group.commit.batches", batches, LongAdder::sum)
+                .description("Transactions committing a batch of topping deltas")
+                .register(registry);
+        FunctionCounter.builder("pizzamanager.group.commit.deltas", batched, LongAdder::sum)
+                .description("Topping deltas committed in a batch, or run on their own after the batch failed")
+                .tag("result", "batched")
+                .register(registry);
+        FunctionCounter.builder("pizzamanager.group.commit.deltas", fallbacks, LongAdder::sum)
+                .description("Topping deltas committed in a batch, or run on their own after the batch failed")
+                .tag("result", "fallback")
+                .register(registry);
+    }
+
+    // Stops taking deltas and lets the flusher commit the ones already queued
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        stopIntake();
+        flusher.shutdown();
+        if (!flusher.awaitTermination(10, TimeUnit.SECONDS)) {
+            log.warn("Topping deltas still queued at shutdown were not committed.");
+        }
+        Pending pending;
+        while ((pending = queue.poll()) != null) {
+            pending.done.completeExceptionally(new IllegalStateException("The server is shutting down."));
+        }
+    }
+
+    private void stopIntake() {
+        synchronized (intake) {
+            running = false;
+        }
+    }
+
+    private void flushUntilStopped() {
+        List<Pending> batch = new ArrayList<>();
+        while (running || !batch.isEmpty() || !queue.isEmpty()) {
+            try {
+                collect(batch);
+            } catch (InterruptedException e) {
+                stopIntake();
+                queue.drainTo(batch, maxBatch - batch.size());
+            }
+            if (!batch.isEmpty()) {
+                batch = flush(batch);
+            }
+        }
+    }
+
+    // Waits for a first delta, then keeps collecting until the batch is full or max-delay has passed
+    private void collect(List<Pending> batch) throws InterruptedException {
+        if (batch.isEmpty()) {
+            Pending first = queue.poll(100, TimeUnit.MILLISECONDS);
+            if (first == null) {
+                return;
+            }
+            batch.add(first);
+        }
+        long deadline = System.nanoTime() + maxDelayNanos;
+        while (batch.size() < maxBatch) {
+            long remaining = deadline - System.nanoTime();
+            Pending next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    // Commits the batch and returns the deltas held back for the next one
+    private List<Pending> flush(List<Pending> batch) {
+        Map<Long, ToppingDeltaRequest> merged = new HashMap<>();
+        Set<Long> heldBackPizzas = new HashSet<>();
+        List<Pending> included = new ArrayList<>();
+        List<Pending> heldBack = new ArrayList<>();
+        for (Pending pending : batch) {
+            ToppingDeltaRequest delta = merged.get(pending.pizzaId);
+            if (heldBackPizzas.contains(pending.pizzaId) || (delta != null && undoes(pending, delta))) {
+                // Later deltas for the pizza wait as well, so they still apply in the order they came
+                heldBackPizzas.add(pending.pizzaId);
+                heldBack.add(pending);
+                continue;
+            }
+            if (delta == null) {
+                delta = new ToppingDeltaRequest(new HashSet<>(), new HashSet<>());
+                merged.put(pending.pizzaId, delta);
+            }
+            delta.getAdd().addAll(pending.add);
+            delta.getRemove().addAll(pending.remove);
+            included.add(pending);
+        }
+
+        try {
+            Map<Long, Long> versions = pizzaService.changeToppingsOfPizzas(merged);
+            batches.increment();
+            batched.add(included.size());
+            included.forEach(pending -> pending.done.complete(versions.get(pending.pizzaId)));
+        } catch (RuntimeException e) {
+            log.debug("Topping delta batch of {} failed, applying its deltas one by one.", included.size(), e);
+            included.forEach(this::applyAlone);
+        }
+        return heldBack;
+    }
+
+    private void applyAlone(Pending pending) {
+        fallbacks.increment();
+        try {
+            pending.done.complete(pizzaService.changePizzaToppings(pending.pizzaId, pending.add, pending.remove, null));
+        } catch (RuntimeException e) {
+            pending.done.completeExceptionally(e);
+        }
+    }
+
+    private static boolean undoes(Pending pending, ToppingDeltaRequest delta) {
+        return pending.add.stream().anyMatch(delta.getRemove()::contains)
+                || pending.remove.stream().anyMatch(delta.getAdd()::contains);
+    }
+
+    private static final class Pending {
+        private final Long pizzaId;
+        private final Set<Long> add;
+        private final Set<Long> remove;
+        private final CompletableFuture<Long> done = new CompletableFuture<>();
+
+        private Pending(Long pizzaId, Set<Long> add, Set<Long> remove) {
+            this.pizzaId = pizzaId;
+            this.add = add;
+            this.remove = remove;
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.springboot.pizzamanager.service;
+
+// Thrown when a topping that pizzas still use is deleted without detaching it from them
+public class ToppingInUseException extends RuntimeException {
+
+    public ToppingInUseException(String message) {
+        super(message);
+    }
+}
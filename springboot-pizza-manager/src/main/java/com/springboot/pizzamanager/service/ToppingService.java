@@ -1,67 +1,247 @@
 package com.springboot.pizzamanager.service;
 
+import com.springboot.pizzamanager.dto.BatchImportResponse;
+import com.springboot.pizzamanager.dto.BatchItemResult;
+import com.springboot.pizzamanager.dto.CatalogStats;
+import com.springboot.pizzamanager.dto.ToppingDTO;
+import com.springboot.pizzamanager.dto.NameSuggestion;
 import com.springboot.pizzamanager.model.Topping;
 import com.springboot.pizzamanager.repository.ToppingRepository;
+import com.springboot.pizzamanager.repository.ToppingUsageRepository;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import io.micrometer.core.annotation.Timed;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 
 @Service
+@Timed(value = "pizzamanager.service", histogram = true)
 public class ToppingService {
 
     private final ToppingRepository toppingRepository;
+    private final ToppingUsageRepository toppingUsageRepository;
+    private final ToppingCatalog toppingCatalog;
+    private final NameSuggestIndex nameSuggestIndex;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Validator validator;
 
     @Autowired
-    public ToppingService(ToppingRepository toppingRepository) {
+    public ToppingService(ToppingRepository toppingRepository, ToppingUsageRepository toppingUsageRepository,
+                          ToppingCatalog toppingCatalog, NameSuggestIndex nameSuggestIndex,
+                          ApplicationEventPublisher eventPublisher, Validator validator) {
         this.toppingRepository = toppingRepository;
+        this.toppingUsageRepository = toppingUsageRepository;
+        this.toppingCatalog = toppingCatalog;
+        this.nameSuggestIndex = nameSuggestIndex;
+        this.eventPublisher = eventPublisher;
+        this.validator = validator;
     }
 
-    // Retrieves all topping records from the database
+    // Retrieves all toppings, served from the in-memory catalog
     public List<Topping> findAllToppings() {
-        return toppingRepository.findAll();
+        return toppingCatalog.findAll();
     }
 
-    // Searches for a single topping by its ID
+    // Retrieves all toppings with their usage counters, read from the database since the counters move
+    // with every pizza write. The counters are materialized, so this is a plain scan of the topping table.
+    @Transactional(readOnly = true)
+    public List<ToppingDTO> findAllToppingsWithUsage() {
+        return toppingRepository.findAllDtosOrderById();
+    }
+
+    // Fetches one keyset page of toppings ordered by id or name, starting after the given cursor.
+    // One extra row is read to tell whether another page follows, so every page costs the same single query.
+    // The toppings carry their usage counters.
+    @Transactional(readOnly = true)
+    public KeysetPage<ToppingDTO> findToppingPage(PageCursor.Sort sort, String cursor, int limit) {
+        PageCursor after = cursor != null ? PageCursor.decode(cursor) : null;
+        if (after != null && after.getSort() != sort) {
+            throw new IllegalArgumentException("Cursor does not match sort " + sort.name().toLowerCase() + ".");
+        }
+
+        Limit window = Limit.of(limit + 1);
+        List<ToppingDTO> rows;
+        if (sort == PageCursor.Sort.ID) {
+            rows = after == null
+                    ? toppingRepository.findPageOrderById(window)
+                    : toppingRepository.findPageAfterId(after.getLastId(), window);
+        } else {
+            rows = after == null
+                    ? toppingRepository.findPageOrderByName(window)
+                    : toppingRepository.findPageAfterName(after.getLastName(), window);
+        }
+
+        if (rows.size() <= limit) {
+            return new KeysetPage<>(rows, null);
+        }
+        List<ToppingDTO> items = rows.subList(0, limit);
+        ToppingDTO last = items.get(limit - 1);
+        return new KeysetPage<>(items, PageCursor.after(sort, last.getId(), last.getName()).encode());
+    }
+
+    // Searches for a single topping by its ID, served from the in-memory catalog
     public Optional<Topping> findToppingById(Long id) {
-        return toppingRepository.findById(id);
+        return toppingCatalog.findById(id);
     }
 
-    // Adds a new topping to the database
+    // Toppings whose name, or a word of it, starts with the prefix, served from the in-memory name index
+    public List<NameSuggestion> suggestToppings(String prefix, int limit) {
+        return nameSuggestIndex.suggestToppings(prefix, limit);
+    }
+
+    // Hit, miss and rebuild counters of the topping catalog
+    public CatalogStats getCatalogStats() {
+        return toppingCatalog.getStats();
+    }
+
+    // Adds a new topping to the database, a taken name is reported by the unique constraint on insert
     @Transactional
     public Topping addTopping(Topping topping) {
-    	// Check if the topping already exists
-        if (toppingRepository.existsByName(topping.getName())) {
-            throw new IllegalStateException("Topping already exists.");
+        Topping saved = saveWithUniqueName(topping);
+        eventPublisher.publishEvent(MenuChangeEvent.toppingCreated(saved));
+        return saved;
+    }
+
+    // Writes the topping right away, so a name taken in the meantime fails here on the unique constraint
+    // and is reported as a DuplicateNameException
+    private Topping saveWithUniqueName(Topping topping) {
+        try {
+            return toppingRepository.saveAndFlush(topping);
+        } catch (DataIntegrityViolationException e) {
+            if (DuplicateNameException.violates(e, Topping.NAME_CONSTRAINT)) {
+                throw new DuplicateNameException("Topping " + topping.getName() + " already exists.");
+            }
+            throw e;
         }
-        return toppingRepository.save(topping);
     }
 
-    // Deletes a topping by its ID after checking if the topping exists in the database
+    // Creates many toppings in one transaction. All names are checked against the database with one
+    // query, invalid or duplicate items are reported and skipped, the rest go out as batched inserts.
     @Transactional
-    public void deleteTopping(Long id) {
-        if (!toppingRepository.existsById(id)) {
-            throw new IllegalStateException("Topping with id " + id + " does not exist.");
+    public BatchImportResponse importToppings(List<ToppingDTO> requests) {
+        BatchItemResult[] results = new BatchItemResult[requests.size()];
+
+        Set<String> names = new HashSet<>();
+        requests.stream().map(ToppingDTO::getName).filter(Objects::nonNull).forEach(names::add);
+        Set<String> takenNames = names.isEmpty() ? Set.of() : toppingRepository.findExistingNames(names);
+
+        Set<String> batchNames = new HashSet<>();
+        Map<Integer, Topping> accepted = new LinkedHashMap<>();
+        for (int i = 0; i < requests.size(); i++) {
+            Topping topping = new Topping(requests.get(i).getName());
+            String error = nameError(topping);
+            if (error == null && takenNames.contains(topping.getName())) {
+                error = "Topping " + topping.getName() + " already exists.";
+            }
+            if (error == null && !batchNames.add(topping.getName())) {
+                error = "Topping " + topping.getName() + " appears more than once in the batch.";
+            }
+
+            if (error != null) {
+                results[i] = BatchItemResult.rejected(i, topping.getName(), error);
+            } else {
+                accepted.put(i, topping);
+            }
         }
-        toppingRepository.deleteById(id);
+
+        try {
+            toppingRepository.saveAll(accepted.values());
+            toppingRepository.flush();
+        } catch (DataIntegrityViolationException e) {
+            // Names checked free above were taken by a concurrent write before the insert
+            if (DuplicateNameException.violates(e, Topping.NAME_CONSTRAINT)) {
+                throw new DuplicateNameException("A topping name in the batch was taken concurrently, nothing was imported.");
+            }
+            throw e;
+        }
+        accepted.forEach((index, topping) -> {
+            results[index] = BatchItemResult.created(index, topping.getName(), topping.getId());
+            eventPublisher.publishEvent(MenuChangeEvent.toppingCreated(topping));
+        });
+        return new BatchImportResponse(Arrays.asList(results));
+    }
+
+    // Checks the name against the constraints declared on Topping before anything is written
+    private String nameError(Topping topping) {
+        Set<ConstraintViolation<Topping>> violations = validator.validateProperty(topping, "name");
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return "Topping name " + violations.iterator().next().getMessage() + ".";
     }
 
-    // Updates an existing topping's details, fetches the topping by ID, checks if it exists, and then updates
+    // Deletes a topping by its ID after checking if the topping exists in the database, and that it is
+    // still at the expected version when one is given. A topping in use is only deleted with detach, which
+    // first removes it from every pizza with set-based statements in the same transaction. Pizzas that
+    // differed only by this topping may end up with the same recipe, they show up as duplicates.
+    // Every detached pizza is announced as a toppings change carrying its new version.
     @Transactional
-    public Topping updateTopping(Long id, Topping updatedTopping) {
+    public void deleteTopping(Long id, Long expectedVersion, boolean detach) {
         Topping topping = toppingRepository.findById(id)
                 .orElseThrow(() -> new IllegalStateException(
                         "Topping with id " + id + " does not exist."
                 ));
+        VersionConflictException.check("Topping", id, expectedVersion, topping.getVersion());
+        Map<Long, Long> detachedVersions = Map.of();
+        if (detach) {
+            detachedVersions = toppingUsageRepository.detachFromAllPizzas(id);
+        } else {
+            // The counter of the loaded topping may come from the second-level cache and be stale
+            long usageCount = toppingUsageRepository.findUsageCount(id);
+            if (usageCount > 0) {
+                throw inUse(topping, usageCount);
+            }
+        }
+
+        try {
+            toppingRepository.delete(topping);
+            toppingRepository.flush();
+        } catch (DataIntegrityViolationException e) {
+            // Added to a pizza after the usage counter was read, the foreign key has the last word
+            throw inUse(topping, toppingUsageRepository.findUsageCount(id));
+        }
+        detachedVersions.forEach((pizzaId, version) -> eventPublisher.publishEvent(
+                MenuChangeEvent.pizzaToppingsChanged(pizzaId, version, Set.of(), Set.of(id))));
+        eventPublisher.publishEvent(MenuChangeEvent.toppingDeleted(id));
+    }
+
+    // Updates an existing topping's details, fetches the topping by ID, checks if it exists and is still at
+    // the expected version when one is given, and then updates
+    @Transactional
+    public Topping updateTopping(Long id, Topping updatedTopping, Long expectedVersion) {
+        Topping topping = toppingRepository.findById(id)
+                .orElseThrow(() -> new IllegalStateException(
+                        "Topping with id " + id + " does not exist."
+                ));
+        VersionConflictException.check("Topping", id, expectedVersion, topping.getVersion());
 
         String newName = updatedTopping.getName();
         if (newName != null && newName.length() > 0 && !topping.getName().equals(newName)) {
             topping.setName(newName);
         }
-        
 
-        return toppingRepository.save(topping);
+        Topping saved = saveWithUniqueName(topping);
+        eventPublisher.publishEvent(MenuChangeEvent.toppingUpdated(saved));
+        return saved;
+    }
+
+    // A topping reported in use is used by at least one pizza, whatever count was read
+    private static ToppingInUseException inUse(Topping topping, long usageCount) {
+        return new ToppingInUseException("Topping " + topping.getName() + " is used by "
+                + (usageCount > 1 ? usageCount + " pizzas" : "a pizza")
+                + ", delete it with detach=true to remove it from them.");
     }
 }
@@ -0,0 +1,21 @@
+package com.springboot.pizzamanager.service;
+
+import org.springframework.dao.OptimisticLockingFailureException;
+
+// Thrown when a write names a version (from If-Match) that is no longer the current one, or when a
+// concurrent write is detected. Shares its base class with the failures Hibernate reports at flush time,
+// so both end up as the same 409 Conflict.
+public class VersionConflictException extends OptimisticLockingFailureException {
+
+    public VersionConflictException(String message) {
+        super(message);
+    }
+
+    // Fails unless the expected version is absent or still the current one
+    static void check(String entity, Long id, Long expectedVersion, Long currentVersion) {
+        if (expectedVersion != null && !expectedVersion.equals(currentVersion)) {
+            throw new VersionConflictException(entity + " with id " + id + " is at version " + currentVersion
+                    + ", not " + expectedVersion + ". Reload it and try again.");
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.springboot.pizzamanager.controller;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.RequestBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+// Hammers the create endpoints with the same name from many threads against the real database.
+// The unique constraints alone must pick exactly one winner and turn every loser into a 409.
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@AutoConfigureMockMvc
+public class ConcurrentCreateTest {
+
+    private static final int THREADS = 16;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void createPizza_SameNameFromManyThreadsHasOneWinner() throws Exception {
+        Map<Integer, Integer> statuses = hammer(post("/api/pizzas")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"name\":\"Race Pizza\",\"toppingIds\":[]}"));
+
+        assertEquals(Map.of(201, 1, 409, THREADS - 1), statuses);
+    }
+
+    @Test
+    void addTopping_SameNameFromManyThreadsHasOneWinner() throws Exception {
+        Map<Integer, Integer> statuses = hammer(post("/api/toppings")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"name\":\"Race Topping\"}"));
+
+        assertEquals(Map.of(200, 1, 409, THREADS - 1), statuses);
+    }
+
+    @Test
+    void addTopping_RunsNoLookupBeforeTheInsert() throws Exception {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        assertEquals(200, mockMvc.perform(post("/api/toppings")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"name\":\"Lone Topping\"}")).andReturn().getResponse().getStatus());
+
+        assertEquals(1, statistics.getEntityInsertCount());
+        assertEquals(0, statistics.getQueryExecutionCount());
+    }
+
+    // Fires the same request from all threads at once and counts the response statuses
+    private Map<Integer, Integer> hammer(RequestBuilder request) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Integer>> responses = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                responses.add(pool.submit(() -> {
+                    start.await();
+                    return mockMvc.perform(request).andReturn().getResponse().getStatus();
+                }));
+            }
+            start.countDown();
+
+            Map<Integer, Integer> statuses = new TreeMap<>();
+            for (Future<Integer> response : responses) {
+                statuses.merge(response.get(), 1, Integer::sum);
+            }
+            return statuses;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.springboot.pizzamanager.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.springboot.pizzamanager.dto.PizzaRequest;
+import com.springboot.pizzamanager.metrics.StatementCountExtension;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.StringJoiner;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Holds the pizza and topping endpoints to the number of SQL statements they need today, against the real
+// database. A new lazy load or a per-item query in a loop makes the endpoint that picked it up fail here.
+@SpringBootTest
+@AutoConfigureMockMvc
+public class EndpointStatementBudgetTest {
+
+    @RegisterExtension
+    final StatementCountExtension statements = new StatementCountExtension();
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void getPizzaById() throws Exception {
+        long pizzaId = createPizza("Budget Get", createToppings("Budget Get", 3));
+
+        statements.expectAtMost(1, () -> mockMvc.perform(get("/api/pizzas/{id}", pizzaId)))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void pagedListings() throws Exception {
+        List<Long> toppingIds = createToppings("Budget Page", 3);
+        for (int i = 0; i < 3; i++) {
+            createPizza("Budget Page " + i, toppingIds.subList(0, 1 + i));
+        }
+
+        statements.expectAtMost(2, () -> mockMvc.perform(get("/api/pizzas").param("limit", "5")))
+                .andExpect(status().isOk());
+        statements.expectAtMost(1, () -> mockMvc.perform(get("/api/toppings").param("limit", "5")
+                        .param("includeUsage", "true")))
+                .andExpect(status().isOk());
+        statements.expectAtMost(1, () -> mockMvc.perform(get("/api/pizzas/search")
+                        .param("with", toppingIds.get(0).toString()).param("limit", "5")))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void createPizza() throws Exception {
+        List<Long> toppingIds = createToppings("Budget Create", 5);
+
+        statements.expectAtMost(3, () -> mockMvc.perform(post("/api/pizzas")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(pizzaJson("Budget Create", toppingIds))))
+                .andExpect(status().isCreated());
+    }
+
+    @Test
+    void updatePizza() throws Exception {
+        List<Long> toppingIds = createToppings("Budget Update", 5);
+        long pizzaId = createPizza("Budget Update", toppingIds.subList(0, 2));
+
+        statements.expectAtMost(5, () -> mockMvc.perform(put("/api/pizzas/{id}", pizzaId)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(pizzaJson("Budget Updated", toppingIds.subList(1, 5)))))
+                .andExpect(status().isOk());
+        statements.expectAtMost(6, () -> mockMvc.perform(patch("/api/pizzas/{id}/toppings", pizzaId)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"add\":[" + toppingIds.get(0) + "],\"remove\":[" + toppingIds.get(4) + "]}")))
+                .andExpect(status().isNoContent());
+    }
+
+    @Test
+    void deleteToppingDetachingItFromPizzas() throws Exception {
+        List<Long> toppingIds = createToppings("Budget Delete", 4);
+        for (int i = 0; i < 3; i++) {
+            createPizza("Budget Delete " + i, List.of(toppingIds.get(0), toppingIds.get(1 + i)));
+        }
+
+        statements.expectAtMost(5, () -> mockMvc.perform(delete("/api/toppings/{id}", toppingIds.get(0))
+                        .param("detach", "true")))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void importPizzas() throws Exception {
+        List<Long> toppingIds = createToppings("Budget Import", 4);
+        StringJoiner body = new StringJoiner("\n");
+        for (int i = 0; i < 20; i++) {
+            body.add(pizzaJson("Budget Import " + i, List.of(toppingIds.get(i % 4), toppingIds.get((i + 1) % 4))));
+        }
+
+        statements.expectAtMost(6, () -> mockMvc.perform(post("/api/pizzas/batch")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content(body.toString())))
+                .andExpect(status().isOk());
+    }
+
+    private List<Long> createToppings(String prefix, int count) throws Exception {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            ids.add(idOf(mockMvc.perform(post("/api/toppings")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content("{\"name\":\"" + prefix + " T" + i + "\"}"))
+                    .andReturn().getResponse().getContentAsString()));
+        }
+        return ids;
+    }
+
+    private long createPizza(String name, List<Long> toppingIds) throws Exception {
+        return idOf(mockMvc.perform(post("/api/pizzas")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(pizzaJson(name, toppingIds)))
+                .andReturn().getResponse().getContentAsString());
+    }
+
+    private String pizzaJson(String name, List<Long> toppingIds) throws Exception {
+        return objectMapper.writeValueAsString(new PizzaRequest(name, new LinkedHashSet<>(toppingIds)));
+    }
+
+    private long idOf(String json) throws Exception {
+        return objectMapper.readTree(json).get("id").asLong();
+    }
+}
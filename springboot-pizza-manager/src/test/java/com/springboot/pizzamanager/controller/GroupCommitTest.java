@@ -0,0 +1,112 @@
+package com.springboot.pizzamanager.controller;
+
+import com.springboot.pizzamanager.dto.PizzaResponse;
+import com.springboot.pizzamanager.dto.ToppingDTO;
+import com.springboot.pizzamanager.model.Pizza;
+import com.springboot.pizzamanager.model.Topping;
+import com.springboot.pizzamanager.service.PizzaService;
+import com.springboot.pizzamanager.service.ToppingService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+// Topping edits fired at one pizza at the same time with group commit on, against the real database.
+// Every request sees its change committed, and all of them together cost a single version bump.
+@SpringBootTest(properties = {
+        "pizzamanager.group-commit.enabled=true",
+        "pizzamanager.group-commit.max-batch=" + GroupCommitTest.EDITS,
+        "pizzamanager.group-commit.max-delay=2s"})
+@AutoConfigureMockMvc
+public class GroupCommitTest {
+
+    static final int EDITS = 8;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private PizzaService pizzaService;
+
+    @Autowired
+    private ToppingService toppingService;
+
+    @Test
+    void concurrentToppingEdits_CommitTogether() throws Exception {
+        List<Long> toppingIds = new ArrayList<>();
+        for (int i = 0; i < EDITS; i++) {
+            toppingIds.add(toppingService.addTopping(new Topping("Group Topping " + i)).getId());
+        }
+        Long pizzaId = pizzaService.createPizzaWithToppings(new Pizza("Group Pizza"), Set.of(toppingIds.get(0))).getId();
+        long versionBefore = pizzaService.findPizzaById(pizzaId).orElseThrow().getVersion();
+
+        ExecutorService pool = Executors.newFixedThreadPool(EDITS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Integer>> statuses = new ArrayList<>();
+            // Removes the pizza's only topping and adds all the others
+            statuses.add(pool.submit(() -> {
+                start.await();
+                return mockMvc.perform(delete("/api/pizzas/{pizzaId}/toppings/{toppingId}", pizzaId, toppingIds.get(0)))
+                        .andReturn().getResponse().getStatus();
+            }));
+            for (Long toppingId : toppingIds.subList(1, EDITS)) {
+                statuses.add(pool.submit(() -> {
+                    start.await();
+                    return mockMvc.perform(post("/api/pizzas/{pizzaId}/toppings/{toppingId}", pizzaId, toppingId))
+                            .andReturn().getResponse().getStatus();
+                }));
+            }
+            start.countDown();
+            for (Future<Integer> status : statuses) {
+                assertEquals(204, status.get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        PizzaResponse pizza = pizzaService.findPizzaById(pizzaId).orElseThrow();
+        assertEquals(new TreeSet<>(toppingIds.subList(1, EDITS)),
+                pizza.getToppings().stream().map(ToppingDTO::getId).collect(Collectors.toCollection(TreeSet::new)));
+        assertEquals(versionBefore + 1, pizza.getVersion());
+    }
+
+    @Test
+    void unknownTopping_OnlyFailsItsOwnRequest() throws Exception {
+        Long cheese = toppingService.addTopping(new Topping("Group Cheese")).getId();
+        Long pizzaId = pizzaService.createPizzaWithToppings(new Pizza("Group Margherita"), Set.of()).getId();
+
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            // Both land in the same batch, which fails as a whole and is then applied delta by delta
+            Future<Integer> unknown = pool.submit(() -> mockMvc.perform(
+                    post("/api/pizzas/{pizzaId}/toppings/{toppingId}", pizzaId, 999_999L)).andReturn().getResponse().getStatus());
+            Future<Integer> known = pool.submit(() -> mockMvc.perform(
+                    post("/api/pizzas/{pizzaId}/toppings/{toppingId}", pizzaId, cheese)).andReturn().getResponse().getStatus());
+
+            assertEquals(400, unknown.get(10, TimeUnit.SECONDS));
+            assertEquals(204, known.get(10, TimeUnit.SECONDS));
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(Set.of(cheese), pizzaService.findPizzaById(pizzaId).orElseThrow().getToppings().stream()
+                .map(ToppingDTO::getId).collect(Collectors.toSet()));
+    }
+}
@@ -0,0 +1,238 @@
+package com.springboot.pizzamanager.controller;
+
+import com.springboot.pizzamanager.model.Pizza;
+import com.springboot.pizzamanager.model.Topping;
+import com.springboot.pizzamanager.service.DuplicateNameException;
+import com.springboot.pizzamanager.service.PizzaService;
+import com.springboot.pizzamanager.service.ToppingService;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@Import({MenuSnapshot.class, BatchRequestReader.class, IdempotencyKeyFilter.class})
+@WebMvcTest({PizzaController.class, ToppingController.class})
+public class IdempotencyKeyFilterTest {
+
+    private static final String MARGHERITA = "{\"name\":\"Margherita\",\"toppingIds\":[]}";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private PizzaService pizzaService;
+
+    @MockBean
+    private ToppingService toppingService;
+
+    @Test
+    void createPizza_RetryIsAnsweredFromMemory() throws Exception {
+        given(pizzaService.createPizzaWithToppings(any(), any())).willReturn(pizza(7L, "Margherita"));
+
+        String created = mockMvc.perform(createPizza("retry-1", MARGHERITA))
+                .andExpect(status().isCreated())
+                .andExpect(header().doesNotExist(IdempotencyKeyFilter.REPLAYED_HEADER))
+                .andReturn().getResponse().getContentAsString();
+        String replayed = mockMvc.perform(createPizza("retry-1", MARGHERITA))
+                .andExpect(status().isCreated())
+                .andExpect(header().string(IdempotencyKeyFilter.REPLAYED_HEADER, "true"))
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andReturn().getResponse().getContentAsString();
+
+        assertEquals(created, replayed);
+        verify(pizzaService, times(1)).createPizzaWithToppings(any(), any());
+    }
+
+    @Test
+    void createPizza_KeyReusedForAnotherBodyIsRejected() throws Exception {
+        given(pizzaService.createPizzaWithToppings(any(), any())).willReturn(pizza(7L, "Margherita"));
+        mockMvc.perform(createPizza("reuse-1", MARGHERITA)).andExpect(status().isCreated());
+
+        mockMvc.perform(createPizza("reuse-1", "{\"name\":\"Hawaiian\",\"toppingIds\":[]}"))
+                .andExpect(status().isUnprocessableEntity())
+                .andExpect(content().string("Idempotency-Key reuse-1 was already used for a different request."));
+
+        verify(pizzaService, times(1)).createPizzaWithToppings(any(), any());
+    }
+
+    @Test
+    void createPizza_RetryWhileTheOriginalRunsWaitsForIt() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        given(pizzaService.createPizzaWithToppings(any(), any())).willAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return pizza(7L, "Margherita");
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<MvcResult> original = executor.submit(() -> mockMvc.perform(createPizza("wait-1", MARGHERITA)).andReturn());
+            verify(pizzaService, timeout(5000)).createPizzaWithToppings(any(), any());
+            Future<MvcResult> retry = executor.submit(() -> mockMvc.perform(createPizza("wait-1", MARGHERITA)).andReturn());
+            release.countDown();
+
+            assertEquals(201, original.get(5, TimeUnit.SECONDS).getResponse().getStatus());
+            MvcResult replayed = retry.get(5, TimeUnit.SECONDS);
+            assertEquals(201, replayed.getResponse().getStatus());
+            assertEquals(original.get().getResponse().getContentAsString(), replayed.getResponse().getContentAsString());
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+        verify(pizzaService, times(1)).createPizzaWithToppings(any(), any());
+    }
+
+    @Test
+    void createPizza_ServerErrorIsNotKept() throws Exception {
+        given(pizzaService.createPizzaWithToppings(any(), any()))
+                .willThrow(new RuntimeException("Connection reset."))
+                .willReturn(pizza(7L, "Margherita"));
+
+        mockMvc.perform(createPizza("error-1", MARGHERITA)).andExpect(status().isInternalServerError());
+        mockMvc.perform(createPizza("error-1", MARGHERITA))
+                .andExpect(status().isCreated())
+                .andExpect(header().doesNotExist(IdempotencyKeyFilter.REPLAYED_HEADER));
+
+        verify(pizzaService, times(2)).createPizzaWithToppings(any(), any());
+    }
+
+    @Test
+    void addTopping_ConflictIsReplayedWithoutTheService() throws Exception {
+        given(toppingService.addTopping(any())).willThrow(new DuplicateNameException("Topping Cheese already exists."));
+
+        for (int i = 0; i < 2; i++) {
+            mockMvc.perform(post("/api/toppings")
+                            .header(IdempotencyKeyFilter.IDEMPOTENCY_KEY_HEADER, "topping-1")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("{\"name\":\"Cheese\"}"))
+                    .andExpect(status().isConflict())
+                    .andExpect(content().string("Topping Cheese already exists."));
+        }
+
+        verify(toppingService, times(1)).addTopping(any(Topping.class));
+    }
+
+    @Test
+    void createPizza_WithoutKeyAlwaysRuns() throws Exception {
+        given(pizzaService.createPizzaWithToppings(any(), any())).willReturn(pizza(7L, "Margherita"));
+
+        for (int i = 0; i < 2; i++) {
+            mockMvc.perform(post("/api/pizzas").contentType(MediaType.APPLICATION_JSON).content(MARGHERITA))
+                    .andExpect(status().isCreated());
+        }
+
+        verify(pizzaService, times(2)).createPizzaWithToppings(any(), any());
+    }
+
+    @Test
+    void oldestResponsesAreDroppedBeyondMaxEntries() throws Exception {
+        IdempotencyKeyFilter filter = new IdempotencyKeyFilter(1, Duration.ofHours(1), Duration.ofSeconds(1));
+        AtomicInteger runs = new AtomicInteger();
+        FilterChain chain = (request, response) -> {
+            runs.incrementAndGet();
+            ((HttpServletResponse) response).setStatus(201);
+        };
+
+        filter.doFilter(keyed("a"), new MockHttpServletResponse(), chain);
+        filter.doFilter(keyed("b"), new MockHttpServletResponse(), chain);
+        filter.doFilter(keyed("b"), new MockHttpServletResponse(), chain);
+        filter.doFilter(keyed("a"), new MockHttpServletResponse(), chain);
+
+        assertEquals(3, runs.get());
+    }
+
+    @Test
+    void expiredResponsesAreNotReplayed() throws Exception {
+        IdempotencyKeyFilter filter = new IdempotencyKeyFilter(10, Duration.ZERO, Duration.ofSeconds(1));
+        AtomicInteger runs = new AtomicInteger();
+        FilterChain chain = (request, response) -> runs.incrementAndGet();
+
+        filter.doFilter(keyed("a"), new MockHttpServletResponse(), chain);
+        filter.doFilter(keyed("a"), new MockHttpServletResponse(), chain);
+
+        assertEquals(2, runs.get());
+    }
+
+    @Test
+    void bufferedBody_CanBeReadThroughAReadListener() throws Exception {
+        IdempotencyKeyFilter filter = new IdempotencyKeyFilter(10, Duration.ofHours(1), Duration.ofSeconds(1));
+        ByteArrayOutputStream read = new ByteArrayOutputStream();
+        List<String> calls = new ArrayList<>();
+        FilterChain chain = (request, response) -> {
+            ServletInputStream in = request.getInputStream();
+            in.setReadListener(new ReadListener() {
+                @Override
+                public void onDataAvailable() throws IOException {
+                    calls.add("onDataAvailable");
+                    read.write(in.readAllBytes());
+                }
+
+                @Override
+                public void onAllDataRead() {
+                    calls.add("onAllDataRead");
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                    calls.add("onError");
+                }
+            });
+        };
+
+        filter.doFilter(keyed("listener"), new MockHttpServletResponse(), chain);
+
+        assertEquals(List.of("onDataAvailable", "onAllDataRead"), calls);
+        assertEquals("{\"name\":\"Cheese\"}", read.toString(StandardCharsets.UTF_8));
+    }
+
+    private static RequestBuilder createPizza(String key, String body) {
+        return post("/api/pizzas")
+                .header(IdempotencyKeyFilter.IDEMPOTENCY_KEY_HEADER, key)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(body);
+    }
+
+    private static MockHttpServletRequest keyed(String key) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/toppings");
+        request.addHeader(IdempotencyKeyFilter.IDEMPOTENCY_KEY_HEADER, key);
+        request.setContent("{\"name\":\"Cheese\"}".getBytes());
+        return request;
+    }
+
+    private static Pizza pizza(Long id, String name) {
+        Pizza pizza = new Pizza(name);
+        pizza.setId(id);
+        pizza.setVersion(0L);
+        return pizza;
+    }
+}
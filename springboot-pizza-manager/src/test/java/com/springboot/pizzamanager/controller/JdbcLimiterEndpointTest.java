@@ -0,0 +1,48 @@
+package com.springboot.pizzamanager.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+// With the only JDBC permit taken, requests that need the database are turned away with 503 while
+// requests answered from memory go through untouched.
+@SpringBootTest(properties = {
+        "pizzamanager.jdbc-limiter.enabled=true",
+        "pizzamanager.jdbc-limiter.permits=1",
+        "pizzamanager.jdbc-limiter.max-wait=50ms"})
+@AutoConfigureMockMvc
+public class JdbcLimiterEndpointTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Test
+    void onlyDatabaseWorkWaitsForAPermit() throws Exception {
+        // Loads the menu snapshot while the permit is free
+        mockMvc.perform(get("/api/pizzas")).andExpect(status().isOk());
+
+        try (Connection held = dataSource.getConnection()) {
+            mockMvc.perform(get("/api/pizzas").param("limit", "5"))
+                    .andExpect(status().isServiceUnavailable())
+                    .andExpect(header().string(HttpHeaders.RETRY_AFTER, "1"));
+
+            mockMvc.perform(get("/api/pizzas")).andExpect(status().isOk());
+            mockMvc.perform(get("/api/toppings/suggest").param("q", "ch")).andExpect(status().isOk());
+            mockMvc.perform(get("/api/toppings/catalog/stats")).andExpect(status().isOk());
+        }
+
+        mockMvc.perform(get("/api/pizzas").param("limit", "5")).andExpect(status().isOk());
+    }
+}
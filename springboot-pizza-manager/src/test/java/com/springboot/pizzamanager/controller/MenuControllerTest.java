@@ -0,0 +1,55 @@
+package com.springboot.pizzamanager.controller;
+
+import com.springboot.pizzamanager.dto.PizzaResponse;
+import com.springboot.pizzamanager.dto.ToppingDTO;
+import com.springboot.pizzamanager.service.MenuExportService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.Set;
+import java.util.function.Consumer;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(MenuController.class)
+public class MenuControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private MenuExportService menuExportService;
+
+    @MockBean
+    private MenuEventBroadcaster menuEventBroadcaster;
+
+    @Test
+    void exportMenu_WritesOnePizzaPerLine() throws Exception {
+        given(menuExportService.exportPizzas(any())).willAnswer(invocation -> {
+            Consumer<PizzaResponse> sink = invocation.getArgument(0);
+            sink.accept(new PizzaResponse(1L, "Margherita", Set.of(new ToppingDTO(10L, "Cheese"))));
+            sink.accept(new PizzaResponse(2L, "Plain", Set.of()));
+            return 2L;
+        });
+
+        MvcResult result = mockMvc.perform(get("/api/menu/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andExpect(content().string(
+                        "{\"id\":1,\"name\":\"Margherita\",\"toppings\":[{\"id\":10,\"name\":\"Cheese\"}]}\n"
+                                + "{\"id\":2,\"name\":\"Plain\",\"toppings\":[]}\n"));
+    }
+}
@@ -0,0 +1,101 @@
+package com.springboot.pizzamanager.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.springboot.pizzamanager.model.Topping;
+import com.springboot.pizzamanager.service.MenuChangeEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MenuEventBroadcasterTest {
+
+    private ManualExecutor senders;
+    private MenuEventBroadcaster broadcaster;
+
+    @BeforeEach
+    void setUp() {
+        senders = new ManualExecutor();
+        broadcaster = new MenuEventBroadcaster(new ObjectMapper(), 2, senders, 0);
+    }
+
+    @AfterEach
+    void tearDown() {
+        broadcaster.shutdown();
+    }
+
+    @Test
+    void onMenuChange_SchedulesOneDrainPerSubscriber() {
+        broadcaster.subscribe();
+        broadcaster.subscribe();
+
+        broadcaster.onMenuChange(MenuChangeEvent.toppingDeleted(1L));
+        broadcaster.onMenuChange(MenuChangeEvent.toppingDeleted(2L));
+
+        // The second event joins the drain that is already pending for each subscriber
+        assertEquals(2, senders.pending.size());
+        senders.runAll();
+        assertEquals(2, broadcaster.getSubscriberCount());
+    }
+
+    @Test
+    void onMenuChange_DisconnectsSubscriberWithFullBuffer() {
+        broadcaster.subscribe();
+        Topping cheese = new Topping("Cheese");
+        cheese.setId(1L);
+
+        broadcaster.onMenuChange(MenuChangeEvent.toppingCreated(cheese));
+        broadcaster.onMenuChange(MenuChangeEvent.toppingUpdated(cheese));
+        assertEquals(1, broadcaster.getSubscriberCount());
+
+        // Nothing has been sent yet, so a third event overflows the buffer of two
+        broadcaster.onMenuChange(MenuChangeEvent.toppingDeleted(1L));
+        assertEquals(0, broadcaster.getSubscriberCount());
+    }
+
+    // Runs submitted tasks only when the test asks for it
+    private static class ManualExecutor extends AbstractExecutorService {
+        private final List<Runnable> pending = new ArrayList<>();
+
+        void runAll() {
+            List<Runnable> tasks = new ArrayList<>(pending);
+            pending.clear();
+            tasks.forEach(Runnable::run);
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            pending.add(command);
+        }
+
+        @Override
+        public void shutdown() {
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return pending;
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return false;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return false;
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return true;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.springboot.pizzamanager.controller;
+
+import com.springboot.pizzamanager.model.Topping;
+import com.springboot.pizzamanager.service.MenuChangeEvent;
+import com.springboot.pizzamanager.service.ToppingService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// A GET that arrives while a topping change is being applied must not cache the old toppings
+@SpringBootTest
+public class MenuSnapshotTest {
+
+    @Autowired
+    private MenuSnapshot menuSnapshot;
+
+    @Autowired
+    private ToppingService toppingService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Test
+    void toppingUpdated_SnapshotIsEncodedFromTheUpdatedCatalog() {
+        Topping topping = toppingService.addTopping(new Topping("Snapshot Basil"));
+        String before = new String(menuSnapshot.toppings().getBody(), StandardCharsets.UTF_8);
+        assertTrue(before.contains("\"Snapshot Basil\""));
+
+        Topping renamed = new Topping("Snapshot Pesto");
+        renamed.setId(topping.getId());
+        renamed.setVersion(topping.getVersion() + 1);
+        eventPublisher.publishEvent(MenuChangeEvent.toppingUpdated(renamed));
+
+        MenuSnapshot.Encoded after = menuSnapshot.toppings();
+        String body = new String(after.getBody(), StandardCharsets.UTF_8);
+        assertTrue(body.contains("\"Snapshot Pesto\""), body);
+        assertFalse(body.contains("\"Snapshot Basil\""), body);
+        assertNotEquals(before, body);
+    }
+
+    // Reads the topping listing right after the snapshot dropped it, like a GET arriving then would
+    static class SnapshotReader {
+        private final MenuSnapshot menuSnapshot;
+
+        SnapshotReader(MenuSnapshot menuSnapshot) {
+            this.menuSnapshot = menuSnapshot;
+        }
+
+        @EventListener
+        @Order(MenuSnapshot.LISTENER_ORDER + 1)
+        public void onMenuChange(MenuChangeEvent event) {
+            if (event.getType() == MenuChangeEvent.Type.TOPPING_UPDATED) {
+                menuSnapshot.toppings();
+            }
+        }
+    }
+
+    @TestConfiguration
+    static class SnapshotReaderConfig {
+
+        @Bean
+        SnapshotReader snapshotReader(@Lazy MenuSnapshot menuSnapshot) {
+            return new SnapshotReader(menuSnapshot);
+        }
+    }
+}
@@ -1,10 +1,20 @@
 package com.springboot.pizzamanager.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.springboot.pizzamanager.dto.BatchImportResponse;
+import com.springboot.pizzamanager.dto.BatchItemResult;
+import com.springboot.pizzamanager.dto.PizzaRequest;
+import com.springboot.pizzamanager.dto.PizzaResponse;
 import com.springboot.pizzamanager.dto.PizzaUpdateRequest;
 import com.springboot.pizzamanager.model.Pizza;
+import com.springboot.pizzamanager.service.KeysetPage;
+import com.springboot.pizzamanager.service.MenuChangeEvent;
+import com.springboot.pizzamanager.service.PageCursor;
 import com.springboot.pizzamanager.service.PizzaService;
 import com.springboot.pizzamanager.service.ToppingService;
+import com.springboot.pizzamanager.service.VersionConflictException;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -12,25 +22,39 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.web.context.WebApplicationContext;
 import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 
 
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.BDDMockito.given;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(SpringExtension.class)
+@Import({MenuSnapshot.class, BatchRequestReader.class})
 @WebMvcTest(PizzaController.class)
 class PizzaControllerTest {
 
@@ -46,32 +70,32 @@ class PizzaControllerTest {
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private MenuSnapshot menuSnapshot;
+
     @BeforeEach
     void setUp(WebApplicationContext webApplicationContext) {
         mockMvc = MockMvcBuilders.webAppContextSetup(webApplicationContext).build();
+        menuSnapshot.invalidate();
     }
 
     @Test
     void getPizzaById_Success() throws Exception {
-        Pizza pizza = new Pizza();
-        pizza.setId(1L);
-        pizza.setName("Margherita");
-        pizza.setToppings(new HashSet<>());
+        PizzaResponse pizza = new PizzaResponse(1L, "Margherita", 2L);
 
         given(pizzaService.findPizzaById(1L)).willReturn(Optional.of(pizza));
 
         mockMvc.perform(get("/api/pizzas/{id}", 1)
                 .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"2\""))
                 .andExpect(jsonPath("$.name").value("Margherita"));
     }
 
     @Test
     void getAllPizzas_Success() throws Exception {
-        Pizza pizza1 = new Pizza("Margherita");
-        pizza1.setId(1L);
-        Pizza pizza2 = new Pizza("Pepperoni");
-        pizza2.setId(2L);
+        PizzaResponse pizza1 = new PizzaResponse(1L, "Margherita", 0L);
+        PizzaResponse pizza2 = new PizzaResponse(2L, "Pepperoni", 0L);
 
         given(pizzaService.findAllPizzas()).willReturn(Arrays.asList(pizza1, pizza2));
 
@@ -83,7 +107,7 @@ class PizzaControllerTest {
 
     @Test
     void deletePizza_Success() throws Exception {
-        doNothing().when(pizzaService).deletePizza(anyLong());
+        doNothing().when(pizzaService).deletePizza(anyLong(), isNull());
 
         mockMvc.perform(delete("/api/pizzas/{id}", 1)
                 .contentType(MediaType.APPLICATION_JSON))
@@ -96,16 +120,264 @@ class PizzaControllerTest {
         Pizza updatedPizzaEntity = new Pizza();
         updatedPizzaEntity.setId(1L);
         updatedPizzaEntity.setName("Margherita Updated");
+        updatedPizzaEntity.setVersion(4L);
 
-        given(pizzaService.updatePizza(eq(1L), any(PizzaUpdateRequest.class))).willReturn(updatedPizzaEntity);
+        given(pizzaService.updatePizza(eq(1L), any(PizzaUpdateRequest.class), eq(3L))).willReturn(updatedPizzaEntity);
 
         mockMvc.perform(put("/api/pizzas/{id}", 1)
+                .header("If-Match", "\"3\"")
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(objectMapper.writeValueAsString(updateRequest)))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$.name").value("Margherita Updated"));
+                .andExpect(header().string("ETag", "\"4\""))
+                .andExpect(jsonPath("$.name").value("Margherita Updated"))
+                .andExpect(jsonPath("$.version").value(4));
     }
 
+    @Test
+    void updatePizza_StaleIfMatchReturnsConflict() throws Exception {
+        given(pizzaService.updatePizza(eq(1L), any(PizzaUpdateRequest.class), eq(2L)))
+                .willThrow(new VersionConflictException("Pizza with id 1 is at version 3, not 2. Reload it and try again."));
 
-}
+        mockMvc.perform(put("/api/pizzas/{id}", 1)
+                .header("If-Match", "\"2\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"name\":\"Margherita\",\"toppingIds\":[]}"))
+                .andExpect(status().isConflict())
+                .andExpect(content().string("Pizza with id 1 is at version 3, not 2. Reload it and try again."));
+    }
+
+    @Test
+    void updatePizza_DuplicateRecipeReturnsBadRequest() throws Exception {
+        given(pizzaService.updatePizza(eq(1L), any(PizzaUpdateRequest.class), isNull()))
+                .willThrow(new IllegalStateException("Pizza Margherita already has the same toppings."));
+
+        mockMvc.perform(put("/api/pizzas/{id}", 1)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"name\":\"Plain\",\"toppingIds\":[1,2]}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("Pizza Margherita already has the same toppings."));
+    }
+
+    @Test
+    void deletePizza_MalformedIfMatchReturnsBadRequest() throws Exception {
+        mockMvc.perform(delete("/api/pizzas/{id}", 1).header("If-Match", "\"abc\""))
+                .andExpect(status().isBadRequest());
+
+        verify(pizzaService, never()).deletePizza(anyLong(), any());
+    }
+
+    @Test
+    void getAllPizzas_PaginatedReturnsNextCursorHeader() throws Exception {
+        PizzaResponse pizza = new PizzaResponse(1L, "Margherita", 0L);
+
+        given(pizzaService.findPizzaPage(PageCursor.Sort.NAME, null, 1))
+                .willReturn(new KeysetPage<>(List.of(pizza), "next-token"));
+
+        mockMvc.perform(get("/api/pizzas").param("limit", "1").param("sort", "name")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Next-Cursor", "next-token"))
+                .andExpect(jsonPath("$[0].name").value("Margherita"));
+    }
+
+    @Test
+    void getAllPizzas_InvalidSortReturnsBadRequest() throws Exception {
+        mockMvc.perform(get("/api/pizzas").param("limit", "10").param("sort", "price")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void getAllPizzas_RevalidationWithMatchingEtagReturnsNotModified() throws Exception {
+        PizzaResponse pizza = new PizzaResponse(1L, "Margherita", 0L);
+        given(pizzaService.findAllPizzas()).willReturn(List.of(pizza));
+
+        String etag = mockMvc.perform(get("/api/pizzas"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("ETag"))
+                .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/api/pizzas").header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+
+        // The snapshot was encoded once and served from memory afterwards
+        verify(pizzaService, times(1)).findAllPizzas();
+    }
+
+    @Test
+    void getAllPizzas_ReencodedAfterMenuChange() throws Exception {
+        PizzaResponse pizza = new PizzaResponse(1L, "Margherita", 0L);
+        PizzaResponse renamed = new PizzaResponse(1L, "Margherita Deluxe", 1L);
+        given(pizzaService.findAllPizzas()).willReturn(List.of(pizza)).willReturn(List.of(renamed));
+
+        String etag = mockMvc.perform(get("/api/pizzas"))
+                .andReturn().getResponse().getHeader("ETag");
+        Pizza updated = new Pizza("Margherita Deluxe");
+        updated.setId(1L);
+        menuSnapshot.onMenuChange(MenuChangeEvent.pizzaUpdated(updated));
+
+        mockMvc.perform(get("/api/pizzas").header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].name").value("Margherita Deluxe"));
+    }
+
+    @Test
+    void getAllPizzas_ConcurrentMissesShareOneLoad() throws Exception {
+        PizzaResponse pizza = new PizzaResponse(1L, "Margherita", 0L);
+        CountDownLatch release = new CountDownLatch(1);
+        given(pizzaService.findAllPizzas()).willAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return List.of(pizza);
+        });
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        menuSnapshot.bindTo(registry);
+        FunctionCounter coalesced = registry.get("pizzamanager.single.flight.calls")
+                .tags("flight", "menu.pizzas", "result", "coalesced").functionCounter();
+        double coalescedBefore = coalesced.count();
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<MvcResult>> responses = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                responses.add(executor.submit(() -> mockMvc.perform(get("/api/pizzas")).andReturn()));
+            }
+            // Three requests wait on the one loading the listing
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (coalesced.count() - coalescedBefore < 3 && System.nanoTime() < deadline) {
+                Thread.onSpinWait();
+            }
+            release.countDown();
+
+            for (Future<MvcResult> response : responses) {
+                MvcResult result = response.get(5, TimeUnit.SECONDS);
+                assertEquals(200, result.getResponse().getStatus());
+                assertTrue(result.getResponse().getContentAsString().contains("Margherita"));
+            }
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+        assertEquals(3, coalesced.count() - coalescedBefore);
+        verify(pizzaService, times(1)).findAllPizzas();
+    }
+
+    @Test
+    void importPizzas_ReadsNewlineDelimitedJson() throws Exception {
+        given(pizzaService.importPizzas(anyList())).willAnswer(invocation -> {
+            List<PizzaRequest> requests = invocation.getArgument(0);
+            return new BatchImportResponse(List.of(
+                    BatchItemResult.created(0, requests.get(0).getName(), 1L),
+                    BatchItemResult.created(1, requests.get(1).getName(), 2L)));
+        });
+
+        mockMvc.perform(post("/api/pizzas/batch")
+                .contentType("application/x-ndjson")
+                .content("{\"name\":\"Margherita\",\"toppingIds\":[1]}\n{\"name\":\"Pepperoni\",\"toppingIds\":[2]}\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.created").value(2))
+                .andExpect(jsonPath("$.items[1].name").value("Pepperoni"));
+
+        verify(pizzaService).importPizzas(argThat(requests -> requests.size() == 2));
+    }
+
+    @Test
+    void importPizzas_MalformedBodyReturnsBadRequest() throws Exception {
+        mockMvc.perform(post("/api/pizzas/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[{\"name\":\"Margherita\"},{\"name\":"))
+                .andExpect(status().isBadRequest());
+
+        verify(pizzaService, never()).importPizzas(anyList());
+    }
+
+    @Test
+    void searchPizzas_PassesToppingFiltersAndReturnsCursor() throws Exception {
+        PizzaResponse funghi = new PizzaResponse(4L, "Funghi", 0L);
+        given(pizzaService.searchPizzasByToppings(Set.of(1L, 2L), Set.of(), Set.of(3L), null, 1))
+                .willReturn(new KeysetPage<>(List.of(funghi), "next"));
 
+        mockMvc.perform(get("/api/pizzas/search")
+                .param("with", "1,2")
+                .param("without", "3")
+                .param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(PizzaController.NEXT_CURSOR_HEADER, "next"))
+                .andExpect(jsonPath("$[0].name").value("Funghi"));
+    }
+
+    @Test
+    void searchPizzas_WithoutFiltersReturnsBadRequest() throws Exception {
+        mockMvc.perform(get("/api/pizzas/search"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void getDuplicateRecipes_ListsGroups() throws Exception {
+        PizzaResponse first = new PizzaResponse(1L, "Funghi", 0L);
+        PizzaResponse second = new PizzaResponse(2L, "Mushroom Special", 0L);
+        given(pizzaService.findDuplicateRecipes()).willReturn(Map.of("abc", List.of(first, second)));
+
+        mockMvc.perform(get("/api/pizzas/duplicates"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].toppingSignature").value("abc"))
+                .andExpect(jsonPath("$[0].pizzas[1].name").value("Mushroom Special"));
+    }
+
+    @Test
+    void changePizzaToppings_AppliesDeltaAndReturnsNoContent() throws Exception {
+        given(pizzaService.changePizzaToppings(1L, Set.of(2L, 3L), Set.of(4L), null)).willReturn(6L);
+
+        mockMvc.perform(patch("/api/pizzas/{id}/toppings", 1)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"add\":[2,3],\"remove\":[4]}"))
+                .andExpect(status().isNoContent())
+                .andExpect(header().string("ETag", "\"6\""));
+
+        verify(pizzaService).changePizzaToppings(1L, Set.of(2L, 3L), Set.of(4L), null);
+    }
+
+    @Test
+    void addToppingToPizza_ReturnsTheNewVersionForTheNextIfMatch() throws Exception {
+        given(pizzaService.changePizzaToppings(1L, Set.of(2L), Set.of(), 3L)).willReturn(4L);
+
+        mockMvc.perform(post("/api/pizzas/{id}/toppings/{toppingId}", 1, 2).header("If-Match", "\"3\""))
+                .andExpect(status().isNoContent())
+                .andExpect(header().string("ETag", "\"4\""));
+    }
+
+    @Test
+    void createPizza_ReturnsCreatedWithETag() throws Exception {
+        Pizza created = new Pizza();
+        created.setId(7L);
+        created.setName("Marinara");
+        created.setVersion(0L);
+        given(pizzaService.createPizzaWithToppings(any(Pizza.class), eq(Set.of()))).willReturn(created);
+
+        mockMvc.perform(post("/api/pizzas")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(new PizzaRequest("Marinara", Set.of()))))
+                .andExpect(status().isCreated())
+                .andExpect(header().string("ETag", "\"0\""))
+                .andExpect(jsonPath("$.id").value(7));
+    }
+
+    @Test
+    void pizzaVersion_IsNeverReadFromARequestBody() throws Exception {
+        Pizza pizza = objectMapper.readValue("{\"name\":\"Marinara\",\"version\":9}", Pizza.class);
+
+        assertEquals("Marinara", pizza.getName());
+        assertNull(pizza.getVersion());
+    }
+
+    @Test
+    void removeToppingFromPizza_ReturnsBadRequestForUnknownPizza() throws Exception {
+        doThrow(new IllegalStateException("Pizza with id 9 does not exist."))
+                .when(pizzaService).changePizzaToppings(9L, Set.of(), Set.of(2L), null);
+
+        mockMvc.perform(delete("/api/pizzas/{id}/toppings/{toppingId}", 9, 2))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("Pizza with id 9 does not exist."));
+    }
+
+}
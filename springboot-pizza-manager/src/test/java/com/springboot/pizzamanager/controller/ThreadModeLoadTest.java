@@ -0,0 +1,161 @@
+package com.springboot.pizzamanager.controller;
+
+import com.springboot.pizzamanager.SpringbootPizzaManagerApplication;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Compares throughput and p99 latency of the pizza and topping endpoints served on Tomcat's platform
+// thread pool against virtual threads with the JDBC limiter. Each mode gets its own application on a
+// random port and its own in-memory database, seeded the same way, and the same closed-loop client load.
+// Only runs with -Ploadtest, tune it with -Dload.clients, -Dload.requests and -Dload.pizzas.
+@Tag("load")
+public class ThreadModeLoadTest {
+
+    private static final int CLIENTS = Integer.getInteger("load.clients", 400);
+    private static final int REQUESTS = Integer.getInteger("load.requests", 40_000);
+    private static final int PIZZAS = Integer.getInteger("load.pizzas", 200);
+    private static final int TOPPINGS = 20;
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+
+    @Test
+    void platformThreadsVersusVirtualThreads() throws Exception {
+        Result platform = run("platform", false);
+        Result virtual = run("virtual", true);
+
+        System.out.println(platform);
+        System.out.println(virtual);
+        System.out.printf("virtual/platform: throughput x%.2f, p99 x%.2f%n",
+                virtual.throughput() / platform.throughput(), virtual.p99Millis() / platform.p99Millis());
+
+        // The limiter may shed load with 503, anything else is a failure of the mode itself
+        for (Result result : List.of(platform, virtual)) {
+            result.statuses().keySet().forEach(status ->
+                    assertTrue(status == 200 || status == 503, result.mode() + " answered " + status));
+        }
+    }
+
+    private Result run(String mode, boolean virtualThreads) throws Exception {
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(SpringbootPizzaManagerApplication.class)
+                .run("--server.port=0",
+                        "--spring.datasource.url=jdbc:h2:mem:load-" + mode + ";DB_CLOSE_DELAY=-1",
+                        "--spring.threads.virtual.enabled=" + virtualThreads,
+                        "--logging.level.root=WARN");
+        try {
+            assertEquals(virtualThreads, context.containsBean("jdbcConcurrencyLimiter"));
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            String baseUrl = "http://localhost:" + port + "/api";
+            seed(baseUrl);
+
+            // Warm up the JIT and the connection pool before measuring
+            drive("warm-up", baseUrl, Math.min(CLIENTS, 50), REQUESTS / 10);
+            return drive(mode, baseUrl, CLIENTS, REQUESTS);
+        } finally {
+            context.close();
+        }
+    }
+
+    private void seed(String baseUrl) throws Exception {
+        for (int i = 0; i < TOPPINGS; i++) {
+            assertEquals(200, send(post(baseUrl + "/toppings", "{\"name\":\"Topping " + i + "\"}")));
+        }
+        // The bits of i + 1 pick the toppings, so no two pizzas share a recipe
+        for (int i = 0; i < PIZZAS; i++) {
+            int recipe = i + 1;
+            String toppingIds = IntStream.range(0, TOPPINGS)
+                    .filter(bit -> (recipe & (1 << bit)) != 0)
+                    .mapToObj(bit -> String.valueOf(bit + 1))
+                    .collect(Collectors.joining(","));
+            assertEquals(201, send(post(baseUrl + "/pizzas",
+                    "{\"name\":\"Pizza " + i + "\",\"toppingIds\":[" + toppingIds + "]}")));
+        }
+    }
+
+    // Every client sends its next request as soon as the previous one is answered, cycling through
+    // a listing, single pizzas, a search and the topping list
+    private Result drive(String mode, String baseUrl, int clients, int requests) throws Exception {
+        long[] latencies = new long[requests];
+        int[] statuses = new int[requests];
+        AtomicInteger next = new AtomicInteger();
+
+        long started = System.nanoTime();
+        try (ExecutorService pool = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int c = 0; c < clients; c++) {
+                workers.add(pool.submit(() -> {
+                    for (int i = next.getAndIncrement(); i < requests; i = next.getAndIncrement()) {
+                        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path(i))).GET().build();
+                        long sent = System.nanoTime();
+                        statuses[i] = send(request);
+                        latencies[i] = System.nanoTime() - sent;
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        }
+        long elapsed = System.nanoTime() - started;
+
+        Map<Integer, Integer> statusCounts = new TreeMap<>();
+        for (int status : statuses) {
+            statusCounts.merge(status, 1, Integer::sum);
+        }
+        Arrays.sort(latencies);
+        return new Result(mode, requests * 1e9 / elapsed,
+                latencies[(int) Math.ceil(requests * 0.99) - 1] / 1e6, statusCounts);
+    }
+
+    private static String path(int i) {
+        return switch (i % 4) {
+            case 0 -> "/pizzas";
+            case 1 -> "/pizzas/" + (i % PIZZAS + 1);
+            case 2 -> "/pizzas/search?any=" + (i % TOPPINGS + 1);
+            default -> "/toppings";
+        };
+    }
+
+    private static HttpRequest post(String url, String json) {
+        return HttpRequest.newBuilder(URI.create(url))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .build();
+    }
+
+    private int send(HttpRequest request) throws Exception {
+        return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    private record Result(String mode, double throughput, double p99Millis, Map<Integer, Integer> statuses) {
+        @Override
+        public String toString() {
+            return String.format("%-8s %,10.0f req/s   p99 %8.2f ms   %s", mode, throughput, p99Millis, statuses);
+        }
+    }
+}
@@ -1,7 +1,15 @@
 package com.springboot.pizzamanager.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.springboot.pizzamanager.dto.BatchImportResponse;
+import com.springboot.pizzamanager.dto.BatchItemResult;
+import com.springboot.pizzamanager.dto.NameSuggestion;
+import com.springboot.pizzamanager.dto.ToppingDTO;
 import com.springboot.pizzamanager.model.Topping;
+import com.springboot.pizzamanager.service.KeysetPage;
+import com.springboot.pizzamanager.service.PageCursor;
+import com.springboot.pizzamanager.service.PizzaService;
+import com.springboot.pizzamanager.service.ToppingInUseException;
 import com.springboot.pizzamanager.service.ToppingService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -9,6 +17,8 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.servlet.MockMvc;
@@ -16,14 +26,20 @@ import org.springframework.test.web.servlet.MockMvc;
 import java.util.Arrays;
 import java.util.List;
 
+import static org.hamcrest.Matchers.containsString;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.verify;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @ExtendWith(SpringExtension.class)
+@Import({MenuSnapshot.class, BatchRequestReader.class})
 @WebMvcTest(ToppingController.class)
 public class ToppingControllerTest {
 
@@ -33,11 +49,19 @@ public class ToppingControllerTest {
     @MockBean
     private ToppingService toppingService;
 
+    @MockBean
+    private PizzaService pizzaService;
+
+    @Autowired
+    private MenuSnapshot menuSnapshot;
+
     @Autowired
     private ObjectMapper objectMapper;
 
     @BeforeEach
     void setUp() {
+        menuSnapshot.invalidate();
+
         Topping cheese = new Topping("Cheese");
         cheese.setId(1L);
         Topping tomatoSauce = new Topping("Tomato Sauce");
@@ -46,6 +70,24 @@ public class ToppingControllerTest {
         basil.setId(3L);
     }
 
+    @Test
+    void suggestToppings_ReturnsTheIndexMatches() throws Exception {
+        given(toppingService.suggestToppings("pep", 5)).willReturn(List.of(
+                new NameSuggestion(1L, "Pepperoni"), new NameSuggestion(3L, "Green Peppers")));
+
+        mockMvc.perform(get("/api/toppings/suggest").param("q", "pep").param("limit", "5"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(1))
+                .andExpect(jsonPath("$[0].name").value("Pepperoni"))
+                .andExpect(jsonPath("$[1].name").value("Green Peppers"));
+    }
+
+    @Test
+    void suggestToppings_WithoutQueryIsABadRequest() throws Exception {
+        mockMvc.perform(get("/api/toppings/suggest"))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     void getAllToppings_Success() throws Exception {
         Topping topping1 = new Topping("Cheese");
@@ -61,18 +103,70 @@ public class ToppingControllerTest {
                 .andExpect(jsonPath("$[1].name").value("Tomato Sauce"));
     }
 
+    @Test
+    void getAllToppings_IncludesUsageWhenAsked() throws Exception {
+        given(toppingService.findAllToppingsWithUsage()).willReturn(List.of(new ToppingDTO(1L, "Cheese", 0L, 4L)));
+
+        mockMvc.perform(get("/api/toppings").param("includeUsage", "true"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].name").value("Cheese"))
+                .andExpect(jsonPath("$[0].usageCount").value(4));
+    }
+
+    @Test
+    void getAllToppings_PageLeavesOutUsageUnlessAsked() throws Exception {
+        given(toppingService.findToppingPage(PageCursor.Sort.ID, null, 1))
+                .willReturn(new KeysetPage<>(List.of(new ToppingDTO(1L, "Cheese", 3L, 4L)), "next"));
+
+        mockMvc.perform(get("/api/toppings").param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(ToppingController.NEXT_CURSOR_HEADER, "next"))
+                .andExpect(jsonPath("$[0].name").value("Cheese"))
+                .andExpect(jsonPath("$[0].version").value(3))
+                .andExpect(jsonPath("$[0].usageCount").doesNotExist());
+    }
+
+    @Test
+    void deleteTopping_InUseReturnsConflict() throws Exception {
+        doThrow(new ToppingInUseException("Topping Cheese is used by a pizza, delete it with detach=true to remove it from them."))
+                .when(toppingService).deleteTopping(1L, null, false);
+
+        mockMvc.perform(delete("/api/toppings/{id}", 1))
+                .andExpect(status().isConflict());
+
+        mockMvc.perform(delete("/api/toppings/{id}", 1).param("detach", "true"))
+                .andExpect(status().isOk());
+        verify(toppingService).deleteTopping(1L, null, true);
+    }
+
     @Test
     void addTopping_Success() throws Exception {
         Topping newTopping = new Topping("Basil");
+        newTopping.setVersion(0L);
         given(toppingService.addTopping(any(Topping.class))).willReturn(newTopping);
 
         mockMvc.perform(post("/api/toppings")
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(objectMapper.writeValueAsString(newTopping)))
                 .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"0\""))
                 .andExpect(jsonPath("$.name").value("Basil"));
     }
 
+    @Test
+    void addTopping_ExposesTheETagToTheFrontEnd() throws Exception {
+        Topping newTopping = new Topping("Basil");
+        newTopping.setVersion(0L);
+        given(toppingService.addTopping(any(Topping.class))).willReturn(newTopping);
+
+        mockMvc.perform(post("/api/toppings")
+                .header(HttpHeaders.ORIGIN, "http://localhost:3000")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"name\":\"Basil\"}"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ACCESS_CONTROL_EXPOSE_HEADERS, containsString(HttpHeaders.ETAG)));
+    }
+
     @Test
     void deleteTopping_Success() throws Exception {
         long toppingId = 1L;
@@ -81,21 +175,49 @@ public class ToppingControllerTest {
                 .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk());
 
-        verify(toppingService).deleteTopping(toppingId);
+        verify(toppingService).deleteTopping(toppingId, null, false);
     }
 
     @Test
     void updateTopping_Success() throws Exception {
         Topping updatedTopping = new Topping("Updated Basil");
         updatedTopping.setId(1L);
-        given(toppingService.updateTopping(anyLong(), any(Topping.class))).willReturn(updatedTopping);
+        updatedTopping.setVersion(3L);
+        given(toppingService.updateTopping(anyLong(), any(Topping.class), isNull())).willReturn(updatedTopping);
 
         mockMvc.perform(put("/api/toppings/{id}", 1)
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(objectMapper.writeValueAsString(updatedTopping)))
                 .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"3\""))
                 .andExpect(jsonPath("$.name").value("Updated Basil"));
     }
 
-}
+    @Test
+    void updateTopping_UnknownToppingReturnsBadRequest() throws Exception {
+        given(toppingService.updateTopping(eq(9L), any(Topping.class), isNull()))
+                .willThrow(new IllegalStateException("Topping with id 9 does not exist."));
 
+        mockMvc.perform(put("/api/toppings/{id}", 9)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"name\":\"Basil\"}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("Topping with id 9 does not exist."));
+    }
+
+    @Test
+    void importToppings_ReadsJsonArray() throws Exception {
+        given(toppingService.importToppings(anyList())).willReturn(new BatchImportResponse(List.of(
+                BatchItemResult.created(0, "Basil", 3L),
+                BatchItemResult.rejected(1, "Cheese", "Topping Cheese already exists."))));
+
+        mockMvc.perform(post("/api/toppings/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[{\"name\":\"Basil\"},{\"name\":\"Cheese\"}]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.created").value(1))
+                .andExpect(jsonPath("$.rejected").value(1))
+                .andExpect(jsonPath("$.items[1].error").value("Topping Cheese already exists."));
+    }
+
+}
@@ -0,0 +1,184 @@
+package com.springboot.pizzamanager.load;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+// Open-loop load driver. Scenarios arrive as a Poisson process at a fixed rate and each one starts on
+// its own virtual thread at its scheduled time, whether or not earlier ones have been answered, so a
+// slow server faces a growing queue like it would with real users. The first request of a scenario is
+// timed from its scheduled arrival, which keeps the queueing delay in the numbers instead of hiding it.
+// Latencies are recorded per endpoint in HdrHistograms, in microseconds.
+final class LoadHarness {
+
+    // A unit of user behaviour, sending one or more requests through the session
+    interface Scenario {
+        void run(Session session, SplittableRandom random) throws Exception;
+    }
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+    private final String baseUrl;
+    private final Map<String, EndpointStats> stats = new ConcurrentHashMap<>();
+
+    LoadHarness(String baseUrl) {
+        this.baseUrl = baseUrl;
+    }
+
+    HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path)).timeout(Duration.ofMinutes(1));
+    }
+
+    // Sends a request outside of any measurement, for seeding
+    HttpResponse<String> send(HttpRequest request) throws IOException, InterruptedException {
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    // Runs scenarios picked by the chooser at the given rate, first for the warm-up without recording,
+    // then for the measured duration. Returns once every scenario that arrived has finished.
+    Report run(ScenarioChooser chooser, double perSecond, Duration warmUp, Duration duration, long seed) {
+        SplittableRandom arrivals = new SplittableRandom(seed);
+        long start = System.nanoTime();
+        long measureFrom = start + warmUp.toNanos();
+        long end = measureFrom + duration.toNanos();
+        double meanGapNanos = TimeUnit.SECONDS.toNanos(1) / perSecond;
+
+        try (ExecutorService users = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (long next = start; next < end; next += (long) (-Math.log(1 - arrivals.nextDouble()) * meanGapNanos)) {
+                long wait = next - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                Session session = new Session(next, next >= measureFrom);
+                SplittableRandom random = arrivals.split();
+                Scenario scenario = chooser.next(random);
+                users.submit(() -> {
+                    try {
+                        scenario.run(session, random);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } catch (Exception e) {
+                        session.failed();
+                    }
+                    return null;
+                });
+            }
+        }
+        return new Report(duration, new TreeMap<>(stats));
+    }
+
+    // Picks the next scenario, given a random source private to that arrival
+    interface ScenarioChooser {
+        Scenario next(SplittableRandom random);
+    }
+
+    // The requests of one scenario. The first is timed from the scheduled arrival of the scenario,
+    // later ones from when they are sent, since they wait on the earlier answers like a browser would.
+    final class Session {
+        private long timedFrom;
+        private final boolean measured;
+        private String lastEndpoint;
+
+        private Session(long arrival, boolean measured) {
+            this.timedFrom = arrival;
+            this.measured = measured;
+        }
+
+        // Sends the request and records it under the endpoint, a transport failure is counted and rethrown
+        HttpResponse<String> send(String endpoint, HttpRequest request) throws IOException, InterruptedException {
+            lastEndpoint = endpoint;
+            long from = timedFrom;
+            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            long done = System.nanoTime();
+            timedFrom = done;
+            if (measured) {
+                stats.computeIfAbsent(endpoint, name -> new EndpointStats()).record(done - from, response.statusCode());
+            }
+            return response;
+        }
+
+        private void failed() {
+            if (measured && lastEndpoint != null) {
+                stats.computeIfAbsent(lastEndpoint, name -> new EndpointStats()).failures.increment();
+            }
+        }
+    }
+
+    static final class EndpointStats {
+        private final Histogram latencyMicros = new ConcurrentHistogram(3);
+        private final Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+        private final LongAdder failures = new LongAdder();
+
+        private void record(long nanos, int status) {
+            latencyMicros.recordValue(TimeUnit.NANOSECONDS.toMicros(nanos));
+            statuses.computeIfAbsent(status, code -> new LongAdder()).increment();
+        }
+
+        Histogram latencyMicros() {
+            return latencyMicros;
+        }
+
+        Map<Integer, Long> statuses() {
+            Map<Integer, Long> counts = new TreeMap<>();
+            statuses.forEach((status, count) -> counts.put(status, count.sum()));
+            return counts;
+        }
+
+        long failures() {
+            return failures.sum();
+        }
+    }
+
+    record Report(Duration duration, Map<String, EndpointStats> endpoints) {
+
+        // One line per endpoint with its throughput and latency percentiles in milliseconds
+        void print(PrintStream out) {
+            out.printf("%-28s %9s %9s %9s %9s %9s %9s %9s  %s%n",
+                    "endpoint", "count", "req/s", "p50", "p90", "p99", "p99.9", "max", "statuses");
+            double seconds = duration.toNanos() / 1e9;
+            endpoints.forEach((endpoint, stats) -> {
+                Histogram histogram = stats.latencyMicros();
+                out.printf("%-28s %9d %9.1f %9.2f %9.2f %9.2f %9.2f %9.2f  %s%s%n",
+                        endpoint, histogram.getTotalCount(), histogram.getTotalCount() / seconds,
+                        millis(histogram, 50), millis(histogram, 90), millis(histogram, 99), millis(histogram, 99.9),
+                        histogram.getMaxValue() / 1000.0, stats.statuses(),
+                        stats.failures() > 0 ? " failures=" + stats.failures() : "");
+            });
+        }
+
+        // Writes the full percentile distribution of every endpoint as an .hgrm file, in milliseconds
+        void writeHistograms(Path directory) throws IOException {
+            Files.createDirectories(directory);
+            for (Map.Entry<String, EndpointStats> entry : endpoints.entrySet()) {
+                String file = entry.getKey().replaceAll("[^A-Za-z0-9]+", "_").replaceAll("^_|_$", "") + ".hgrm";
+                try (PrintStream out = new PrintStream(Files.newOutputStream(directory.resolve(file)))) {
+                    entry.getValue().latencyMicros().outputPercentileDistribution(out, 1000.0);
+                }
+            }
+        }
+
+        private static double millis(Histogram histogram, double percentile) {
+            return histogram.getValueAtPercentile(percentile) / 1000.0;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.springboot.pizzamanager.load;
+
+import com.springboot.pizzamanager.SpringbootPizzaManagerApplication;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// End-to-end load run: boots the application on a random port with a fresh in-memory database, seeds
+// a synthetic menu and replays the UI workload at a fixed arrival rate. Prints throughput and latency
+// percentiles per endpoint and writes their full histograms to target/load-report. Only runs with
+// -Ploadtest, the same seed gives the same menu and the same sequence of scenarios. Tune it with
+// -Dload.pizzas, -Dload.toppings, -Dload.skew, -Dload.rate (scenarios per second),
+// -Dload.warmup and -Dload.duration (seconds), -Dload.seed and any application property via -Dload.args.
+@Tag("load")
+public class MenuLoadTest {
+
+    private static final int PIZZAS = Integer.getInteger("load.pizzas", 100_000);
+    private static final int TOPPINGS = Integer.getInteger("load.toppings", 500);
+    private static final double SKEW = Double.parseDouble(System.getProperty("load.skew", "1.0"));
+    private static final double RATE = Double.parseDouble(System.getProperty("load.rate", "100"));
+    private static final Duration WARM_UP = Duration.ofSeconds(Long.getLong("load.warmup", 15));
+    private static final Duration DURATION = Duration.ofSeconds(Long.getLong("load.duration", 60));
+    private static final long SEED = Long.getLong("load.seed", 42);
+    private static final String ARGS = System.getProperty("load.args", "");
+
+    @Test
+    void mixedMenuWorkload() throws Exception {
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(SpringbootPizzaManagerApplication.class)
+                .run(arguments());
+        try {
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            LoadHarness harness = new LoadHarness("http://localhost:" + port + "/api");
+            MenuWorkload workload = new MenuWorkload(harness, new SyntheticMenu(TOPPINGS, SKEW));
+
+            long seeding = System.nanoTime();
+            workload.seed(PIZZAS, SEED);
+            System.out.printf("Seeded %,d pizzas over %,d toppings in %.1f s%n",
+                    PIZZAS, TOPPINGS, (System.nanoTime() - seeding) / 1e9);
+            System.out.printf("Running %.0f scenarios/s for %d s after a %d s warm-up: %s%n",
+                    RATE, DURATION.toSeconds(), WARM_UP.toSeconds(), workload.weights());
+
+            LoadHarness.Report report = harness.run(workload, RATE, WARM_UP, DURATION, SEED);
+            report.print(System.out);
+            report.writeHistograms(Path.of("target", "load-report"));
+
+            // Errors and timeouts under overload are part of the result and show in the report,
+            // the run only fails when it measured nothing
+            assertFalse(report.endpoints().isEmpty(), "No request was measured");
+        } finally {
+            context.close();
+        }
+    }
+
+    private static String[] arguments() {
+        String defaults = "--server.port=0 --logging.level.root=WARN --spring.datasource.url=jdbc:h2:mem:menu-load";
+        return (defaults + " " + ARGS).trim().split("\\s+");
+    }
+}
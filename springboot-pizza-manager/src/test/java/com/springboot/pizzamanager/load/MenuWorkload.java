@@ -0,0 +1,214 @@
+package com.springboot.pizzamanager.load;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// The mixed read/write traffic of the two UIs. PizzaChef loads the full pizza listing and the toppings
+// on open and after every menu event, creates pizzas, edits them with If-Match and deletes them.
+// StoreOwner loads the toppings the same way, adds and renames toppings and deletes them, retrying with
+// detach=true when a topping is still in use. Only pizzas and toppings the run created are deleted or
+// renamed, so the seeded menu keeps its size for the whole run.
+final class MenuWorkload implements LoadHarness.ScenarioChooser {
+
+    private static final String NDJSON = MediaType.APPLICATION_NDJSON_VALUE;
+    private static final String JSON = MediaType.APPLICATION_JSON_VALUE;
+    private static final int BATCH_SIZE = 5000;
+
+    private final LoadHarness harness;
+    private final SyntheticMenu menu;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final Map<String, Integer> weights = new LinkedHashMap<>();
+    private final List<LoadHarness.Scenario> scenarios = new ArrayList<>();
+    private int totalWeight;
+
+    private long[] toppingIds;
+    private long[] pizzaIds;
+    private final ConcurrentLinkedDeque<Long> createdPizzas = new ConcurrentLinkedDeque<>();
+    private final ConcurrentLinkedDeque<Long> createdToppings = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger createdCount = new AtomicInteger();
+
+    MenuWorkload(LoadHarness harness, SyntheticMenu menu) {
+        this.harness = harness;
+        this.menu = menu;
+
+        scenario("chef opens the menu", 15, this::chefOpensMenu);
+        scenario("chef edits a pizza", 15, this::chefEditsPizza);
+        scenario("chef creates a pizza", 10, this::chefCreatesPizza);
+        scenario("chef deletes a pizza", 5, this::chefDeletesPizza);
+        scenario("owner opens the toppings", 40, this::ownerOpensToppings);
+        scenario("owner adds a topping", 7, this::ownerAddsTopping);
+        scenario("owner renames a topping", 5, this::ownerRenamesTopping);
+        scenario("owner deletes a topping", 3, this::ownerDeletesTopping);
+    }
+
+    private void scenario(String name, int weight, LoadHarness.Scenario scenario) {
+        weights.put(name, weight);
+        scenarios.add(scenario);
+        totalWeight += weight;
+    }
+
+    Map<String, Integer> weights() {
+        return weights;
+    }
+
+    @Override
+    public LoadHarness.Scenario next(SplittableRandom random) {
+        int pick = random.nextInt(totalWeight);
+        int index = 0;
+        for (int weight : weights.values()) {
+            if (pick < weight) {
+                break;
+            }
+            pick -= weight;
+            index++;
+        }
+        return scenarios.get(index);
+    }
+
+    // Creates the synthetic menu through the batch endpoints, in chunks the server accepts
+    void seed(int pizzaCount, long seed) throws Exception {
+        List<String> toppingItems = new ArrayList<>();
+        for (int rank = 0; rank < menu.toppingCount(); rank++) {
+            toppingItems.add(objectMapper.writeValueAsString(Map.of("name", SyntheticMenu.toppingName(rank))));
+        }
+        toppingIds = importBatches("/toppings/batch", toppingItems);
+
+        List<Set<Integer>> recipes = menu.recipes(pizzaCount, new Random(seed));
+        List<String> pizzaItems = new ArrayList<>();
+        for (int i = 0; i < pizzaCount; i++) {
+            pizzaItems.add(objectMapper.writeValueAsString(
+                    Map.of("name", SyntheticMenu.pizzaName(i), "toppingIds", toppingIdsOf(recipes.get(i)))));
+        }
+        pizzaIds = importBatches("/pizzas/batch", pizzaItems);
+    }
+
+    private long[] importBatches(String path, List<String> items) throws Exception {
+        long[] ids = new long[items.size()];
+        for (int from = 0; from < items.size(); from += BATCH_SIZE) {
+            List<String> chunk = items.subList(from, Math.min(items.size(), from + BATCH_SIZE));
+            HttpResponse<String> response = harness.send(harness.request(path)
+                    .header(HttpHeaders.CONTENT_TYPE, NDJSON)
+                    .POST(HttpRequest.BodyPublishers.ofString(String.join("\n", chunk)))
+                    .build());
+            JsonNode body = objectMapper.readTree(response.body());
+            if (response.statusCode() != 200 || body.get("rejected").asInt() > 0) {
+                throw new IllegalStateException("Seeding " + path + " failed: " + response.body());
+            }
+            int index = from;
+            for (JsonNode item : body.get("items")) {
+                ids[index++] = item.get("id").asLong();
+            }
+        }
+        return ids;
+    }
+
+    private List<Long> toppingIdsOf(Set<Integer> recipe) {
+        return recipe.stream().map(rank -> toppingIds[rank]).toList();
+    }
+
+    private List<Long> randomRecipe(SplittableRandom random) {
+        return toppingIdsOf(menu.recipe(new Random(random.nextLong())));
+    }
+
+    private void chefOpensMenu(LoadHarness.Session session, SplittableRandom random) throws Exception {
+        session.send("GET /api/pizzas", harness.request("/pizzas").GET().build());
+        session.send("GET /api/toppings", harness.request("/toppings").GET().build());
+    }
+
+    // The chef picks a pizza off the listing, which carries its version, and saves new toppings with it
+    private void chefEditsPizza(LoadHarness.Session session, SplittableRandom random) throws Exception {
+        int index = random.nextInt(pizzaIds.length);
+        long id = pizzaIds[index];
+        HttpResponse<String> current = session.send("GET /api/pizzas/{id}",
+                harness.request("/pizzas/" + id).GET().build());
+        String etag = current.headers().firstValue(HttpHeaders.ETAG).orElse(null);
+        if (etag == null) {
+            return;
+        }
+        String body = objectMapper.writeValueAsString(
+                Map.of("name", SyntheticMenu.pizzaName(index), "toppingIds", randomRecipe(random)));
+        session.send("PUT /api/pizzas/{id}", harness.request("/pizzas/" + id)
+                .header(HttpHeaders.CONTENT_TYPE, JSON)
+                .header(HttpHeaders.IF_MATCH, etag)
+                .PUT(HttpRequest.BodyPublishers.ofString(body))
+                .build());
+    }
+
+    private void chefCreatesPizza(LoadHarness.Session session, SplittableRandom random) throws Exception {
+        String body = objectMapper.writeValueAsString(
+                Map.of("name", "Load Pizza " + createdCount.incrementAndGet(), "toppingIds", randomRecipe(random)));
+        HttpResponse<String> response = session.send("POST /api/pizzas", harness.request("/pizzas")
+                .header(HttpHeaders.CONTENT_TYPE, JSON)
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build());
+        if (response.statusCode() == 201) {
+            createdPizzas.add(objectMapper.readTree(response.body()).get("id").asLong());
+        }
+    }
+
+    private void chefDeletesPizza(LoadHarness.Session session, SplittableRandom random) throws Exception {
+        Long id = createdPizzas.pollFirst();
+        if (id == null) {
+            chefCreatesPizza(session, random);
+            return;
+        }
+        session.send("DELETE /api/pizzas/{id}", harness.request("/pizzas/" + id).DELETE().build());
+    }
+
+    private void ownerOpensToppings(LoadHarness.Session session, SplittableRandom random) throws Exception {
+        session.send("GET /api/toppings", harness.request("/toppings").GET().build());
+    }
+
+    private void ownerAddsTopping(LoadHarness.Session session, SplittableRandom random) throws Exception {
+        String body = objectMapper.writeValueAsString(Map.of("name", "Load Topping " + createdCount.incrementAndGet()));
+        HttpResponse<String> response = session.send("POST /api/toppings", harness.request("/toppings")
+                .header(HttpHeaders.CONTENT_TYPE, JSON)
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build());
+        if (response.statusCode() == 200) {
+            createdToppings.add(objectMapper.readTree(response.body()).get("id").asLong());
+        }
+    }
+
+    private void ownerRenamesTopping(LoadHarness.Session session, SplittableRandom random) throws Exception {
+        Long id = createdToppings.peekLast();
+        if (id == null) {
+            ownerAddsTopping(session, random);
+            return;
+        }
+        String body = objectMapper.writeValueAsString(Map.of("name", "Load Topping " + createdCount.incrementAndGet()));
+        session.send("PUT /api/toppings/{id}", harness.request("/toppings/" + id)
+                .header(HttpHeaders.CONTENT_TYPE, JSON)
+                .PUT(HttpRequest.BodyPublishers.ofString(body))
+                .build());
+    }
+
+    private void ownerDeletesTopping(LoadHarness.Session session, SplittableRandom random) throws Exception {
+        Long id = createdToppings.pollFirst();
+        if (id == null) {
+            ownerAddsTopping(session, random);
+            return;
+        }
+        HttpResponse<String> response = session.send("DELETE /api/toppings/{id}",
+                harness.request("/toppings/" + id).DELETE().build());
+        if (response.statusCode() == 409) {
+            session.send("DELETE /api/toppings/{id}?detach", harness.request("/toppings/" + id + "?detach=true")
+                    .DELETE().build());
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.springboot.pizzamanager.load;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+// Generates a reproducible menu of the given size. Topping popularity follows a Zipf distribution,
+// so a few toppings like cheese are on most pizzas and the long tail is on a handful. Pizzas have 1 to
+// 8 toppings, most of them 3 to 5, and no two pizzas share a recipe, as the service requires by default.
+final class SyntheticMenu {
+
+    static final int MIN_TOPPINGS_PER_PIZZA = 1;
+    static final int MAX_TOPPINGS_PER_PIZZA = 8;
+
+    private final int toppingCount;
+    // Cumulative popularity of the toppings, by rank
+    private final double[] cumulative;
+
+    SyntheticMenu(int toppingCount, double skew) {
+        this.toppingCount = toppingCount;
+        this.cumulative = new double[toppingCount];
+        double total = 0;
+        for (int rank = 0; rank < toppingCount; rank++) {
+            total += 1 / Math.pow(rank + 1, skew);
+            cumulative[rank] = total;
+        }
+        for (int rank = 0; rank < toppingCount; rank++) {
+            cumulative[rank] /= total;
+        }
+    }
+
+    int toppingCount() {
+        return toppingCount;
+    }
+
+    static String toppingName(int rank) {
+        return String.format("Topping %04d", rank);
+    }
+
+    static String pizzaName(int index) {
+        return String.format("Pizza %06d", index);
+    }
+
+    // Picks a topping rank, popular toppings far more often than the long tail
+    int pickTopping(Random random) {
+        int found = Arrays.binarySearch(cumulative, random.nextDouble());
+        return Math.min(found < 0 ? -found - 1 : found, toppingCount - 1);
+    }
+
+    // A recipe of distinct topping ranks, most pizzas get 3 to 5 toppings
+    Set<Integer> recipe(Random random) {
+        int size = (int) Math.round(4 + random.nextGaussian() * 1.5);
+        size = Math.max(MIN_TOPPINGS_PER_PIZZA, Math.min(MAX_TOPPINGS_PER_PIZZA, Math.min(size, toppingCount)));
+        Set<Integer> recipe = new TreeSet<>();
+        while (recipe.size() < size) {
+            recipe.add(pickTopping(random));
+        }
+        return recipe;
+    }
+
+    // Generates the recipes of a whole menu, a recipe that is already taken is drawn again
+    List<Set<Integer>> recipes(int pizzaCount, Random random) {
+        Set<Set<Integer>> taken = new HashSet<>();
+        List<Set<Integer>> recipes = new ArrayList<>(pizzaCount);
+        int attempts = 0;
+        while (recipes.size() < pizzaCount) {
+            Set<Integer> recipe = recipe(random);
+            if (taken.add(recipe)) {
+                recipes.add(recipe);
+                attempts = 0;
+            } else if (++attempts > 1_000) {
+                throw new IllegalStateException("Cannot find " + pizzaCount + " distinct recipes over "
+                        + toppingCount + " toppings.");
+            }
+        }
+        return recipes;
+    }
+}
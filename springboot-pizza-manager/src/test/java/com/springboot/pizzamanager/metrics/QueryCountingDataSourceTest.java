@@ -0,0 +1,62 @@
+package com.springboot.pizzamanager.metrics;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class QueryCountingDataSourceTest {
+
+    @AfterEach
+    void stopCounting() {
+        while (RequestQueryCounter.end() != null) {
+            // unwind anything a failed test left running
+        }
+    }
+
+    @Test
+    void statementsSentThroughJdbcTemplate_AreCounted() {
+        DataSource dataSource = (DataSource) new QueryCountingDataSource().postProcessAfterInitialization(
+                new DriverManagerDataSource("jdbc:h2:mem:query-counting;DB_CLOSE_DELAY=-1"), "dataSource");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("create table counted (id bigint primary key, total bigint)");
+
+        RequestQueryCounter.begin();
+        jdbcTemplate.batchUpdate("insert into counted (id, total) values (?, ?)",
+                List.of(new Object[]{1L, 0L}, new Object[]{2L, 0L}, new Object[]{3L, 0L}));
+        jdbcTemplate.update("update counted set total = total + ? where id = ?", 2L, 1L);
+        jdbcTemplate.queryForList("select total from counted where id = ?", Long.class, 1L);
+        jdbcTemplate.execute("delete from counted where id = 3");
+        RequestQueryCounter.Counts counts = RequestQueryCounter.end();
+
+        // The batch of three rows is one statement
+        assertEquals(4, counts.getStatements());
+        assertEquals(Map.of(
+                "insert into counted (id, total) values (?)", 1,
+                "update counted set total = total + ? where id = ?", 1,
+                "select total from counted where id = ?", 1,
+                "delete from counted where id = ?", 1), counts.getStatementShapes());
+    }
+
+    @Test
+    void statementOverTheBudget_IsStoppedBeforeItRuns() {
+        DataSource dataSource = (DataSource) new QueryCountingDataSource().postProcessAfterInitialization(
+                new DriverManagerDataSource("jdbc:h2:mem:query-budget;DB_CLOSE_DELAY=-1"), "dataSource");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("create table budgeted (id bigint primary key)");
+
+        RequestQueryCounter.begin(1);
+        jdbcTemplate.update("insert into budgeted (id) values (?)", 1L);
+        assertThrows(StatementBudgetExceededException.class,
+                () -> jdbcTemplate.update("insert into budgeted (id) values (?)", 2L));
+        RequestQueryCounter.end();
+
+        assertEquals(List.of(1L), jdbcTemplate.queryForList("select id from budgeted", Long.class));
+    }
+}
@@ -0,0 +1,84 @@
+package com.springboot.pizzamanager.metrics;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RequestQueryCounterTest {
+
+    private static final String TOPPING_BY_ID = "select t1_0.id,t1_0.name from topping t1_0 where t1_0.id=?";
+
+    @AfterEach
+    void stopCounting() {
+        while (RequestQueryCounter.end() != null) {
+            // unwind anything a failed test left running
+        }
+    }
+
+    @Test
+    void shapeOf_ReplacesLiteralsAndCollapsesParameterLists() {
+        assertEquals("select p1_0.id from pizza p1_0 where p1_0.id in (?) and p1_0.name=? fetch first ? rows only",
+                RequestQueryCounter.shapeOf("select p1_0.id from pizza p1_0\n  where p1_0.id in (?, ?,?) "
+                        + "and p1_0.name='It''s' fetch first 10 rows only"));
+        assertEquals("insert into pizza_toppings (pizza_id,topping_id) values (?)",
+                RequestQueryCounter.shapeOf("insert into pizza_toppings (pizza_id,topping_id) values (?,?)"));
+        assertEquals("update pizza set name=?,version=? where id=?",
+                RequestQueryCounter.shapeOf("update pizza set name=?,version=? where id=?"));
+    }
+
+    @Test
+    void shapeOf_HandlesThousandsOfParameters() {
+        String sql = "select t1_0.id from topping t1_0 where t1_0.id in (" + "?,".repeat(9999) + "?)";
+
+        assertEquals("select t1_0.id from topping t1_0 where t1_0.id in (?)", RequestQueryCounter.shapeOf(sql));
+    }
+
+    @Test
+    void repeatedStatements_AreQueriesReadingRowsOnly() {
+        RequestQueryCounter.begin();
+        for (int i = 0; i < 3; i++) {
+            RequestQueryCounter.statementPrepared(TOPPING_BY_ID);
+            RequestQueryCounter.statementPrepared("select next value for pizza_seq");
+            RequestQueryCounter.statementPrepared("insert into pizza (name,id) values (?,?)");
+        }
+        RequestQueryCounter.statementPrepared("select p1_0.id from pizza p1_0");
+
+        RequestQueryCounter.Counts counts = RequestQueryCounter.end();
+
+        assertEquals(10, counts.getStatements());
+        assertEquals(Map.of("select t1_0.id,t1_0.name from topping t1_0 where t1_0.id=?", 3),
+                counts.getRepeatedStatements(3));
+        assertTrue(counts.getRepeatedStatements(4).isEmpty());
+    }
+
+    @Test
+    void nestedCounting_AddsInnerCountsToTheOuterOnes() {
+        RequestQueryCounter.begin();
+        RequestQueryCounter.statementPrepared(TOPPING_BY_ID);
+        RequestQueryCounter.begin();
+        RequestQueryCounter.statementPrepared(TOPPING_BY_ID);
+        RequestQueryCounter.entityLoaded();
+
+        RequestQueryCounter.Counts inner = RequestQueryCounter.end();
+        RequestQueryCounter.Counts outer = RequestQueryCounter.end();
+
+        assertEquals(1, inner.getStatements());
+        assertEquals(2, outer.getStatements());
+        assertEquals(1, outer.getEntityLoads());
+        assertEquals(Map.of(TOPPING_BY_ID, 2), outer.getStatementShapes());
+        assertNull(RequestQueryCounter.end());
+    }
+
+    @Test
+    void statementOverTheLimit_IsStopped() {
+        RequestQueryCounter.begin(2);
+        RequestQueryCounter.statementPrepared(TOPPING_BY_ID);
+        RequestQueryCounter.statementPrepared(TOPPING_BY_ID);
+
+        assertThrows(StatementBudgetExceededException.class,
+                () -> RequestQueryCounter.statementPrepared(TOPPING_BY_ID));
+    }
+}
@@ -0,0 +1,76 @@
+package com.springboot.pizzamanager.metrics;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureObservability
+public class RequestQueryMetricsTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void getPizzaById_RecordsItsHibernateWorkUnderTheEndpoint() throws Exception {
+        long toppingId = idOf(mockMvc.perform(post("/api/toppings")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"name\":\"Metrics Cheese\"}")).andReturn().getResponse().getContentAsString());
+        long pizzaId = idOf(mockMvc.perform(post("/api/pizzas")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"name\":\"Metrics Pizza\",\"toppingIds\":[" + toppingId + "]}"))
+                .andReturn().getResponse().getContentAsString());
+
+        mockMvc.perform(get("/api/pizzas/{id}", pizzaId));
+        mockMvc.perform(get("/api/pizzas/{id}", pizzaId));
+
+        // The pizza is cached when it is created, the first read loads its toppings with one query and
+        // caches them too. The second read is answered from the second-level cache alone.
+        DistributionSummary statements = summary("hibernate.request.statements");
+        assertEquals(2, statements.count());
+        assertEquals(1, statements.totalAmount());
+        assertEquals(4, summary("hibernate.request.entity.loads").totalAmount());
+        assertEquals(2, summary("hibernate.request.collection.fetches").totalAmount());
+    }
+
+    @Test
+    void prometheus_ExposesRequestServicePoolAndAllocationMetrics() throws Exception {
+        mockMvc.perform(get("/api/toppings"));
+
+        String scrape = mockMvc.perform(get("/actuator/prometheus")).andReturn().getResponse().getContentAsString();
+
+        assertTrue(scrape.contains("http_server_requests_seconds_bucket{"));
+        assertTrue(scrape.contains("pizzamanager_service_seconds_bucket{class=\"com.springboot.pizzamanager.service.ToppingService\""));
+        assertTrue(scrape.contains("hibernate_request_statements_bucket{"));
+        assertTrue(scrape.contains("hibernate_query_executions_total{"));
+        assertTrue(scrape.contains("hikaricp_connections_acquire_seconds_bucket{"));
+        assertTrue(scrape.contains("jvm_memory_allocated_bytes_total"));
+        assertTrue(scrape.contains("hibernate_second_level_cache_hit_ratio{region=\"com.springboot.pizzamanager.model.Pizza\""));
+    }
+
+    private DistributionSummary summary(String name) {
+        return meterRegistry.get(name).tag("method", "GET").tag("uri", "/api/pizzas/{id}").summary();
+    }
+
+    private long idOf(String json) throws Exception {
+        return objectMapper.readTree(json).get("id").asLong();
+    }
+}
@@ -0,0 +1,59 @@
+package com.springboot.pizzamanager.metrics;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+// A budget that rejects stops the request at the statement over the limit and rolls its transaction back
+@SpringBootTest(properties = {
+        "pizzamanager.statement-budget.max-statements=5",
+        "pizzamanager.statement-budget.reject=true",
+        "pizzamanager.pizzas.allow-duplicate-recipes=false"
+})
+@AutoConfigureMockMvc
+public class StatementBudgetRejectTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void requestOverTheBudget_IsStoppedAndRolledBack() throws Exception {
+        long cheese = idOf(mockMvc.perform(post("/api/toppings")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"name\":\"Reject Cheese\"}")).andReturn().getResponse().getContentAsString());
+        long ham = idOf(mockMvc.perform(post("/api/toppings")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"name\":\"Reject Ham\"}")).andReturn().getResponse().getContentAsString());
+        long pizzaId = idOf(mockMvc.perform(post("/api/pizzas")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"name\":\"Reject Pizza\",\"toppingIds\":[" + cheese + "]}"))
+                .andReturn().getResponse().getContentAsString());
+
+        // Loading, the recipe check, the update, both join table changes and the usage counters are
+        // six statements
+        mockMvc.perform(put("/api/pizzas/{id}", pizzaId)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\":\"Reject Renamed\",\"toppingIds\":[" + ham + "]}"))
+                .andExpect(status().isInternalServerError())
+                .andExpect(content().string("The request needed more than 5 SQL statements and was stopped."));
+
+        mockMvc.perform(get("/api/pizzas/{id}", pizzaId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name").value("Reject Pizza"))
+                .andExpect(jsonPath("$.toppings[0].id").value(cheese));
+    }
+
+    private long idOf(String json) throws Exception {
+        return objectMapper.readTree(json).get("id").asLong();
+    }
+}
@@ -0,0 +1,46 @@
+package com.springboot.pizzamanager.metrics;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.boot.test.system.CapturedOutput;
+import org.springframework.boot.test.system.OutputCaptureExtension;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(OutputCaptureExtension.class)
+public class StatementBudgetTest {
+
+    @Test
+    void check_LogsRequestsOverTheBudgetAndRepeatedQueries(CapturedOutput output) {
+        StatementBudget budget = new StatementBudget(3, false, 3);
+
+        budget.check("PUT /api/pizzas/{id}", counted(4));
+
+        assertTrue(output.getOut().contains("PUT /api/pizzas/{id} prepared 4 SQL statements, over the budget of 3"));
+        assertTrue(output.getOut().contains("PUT /api/pizzas/{id} repeated SQL statements, possible N+1 queries: "
+                + "{select t1_0.id from topping t1_0 where t1_0.id=?=4}"));
+    }
+
+    @Test
+    void check_StaysQuietWithinTheBudget(CapturedOutput output) {
+        StatementBudget budget = new StatementBudget(4, false, 5);
+
+        budget.check("GET /api/pizzas", counted(4));
+
+        assertFalse(output.getOut().contains("GET /api/pizzas"));
+    }
+
+    @Test
+    void rejectAbove_IsTheBudgetOnlyWhenRejecting() {
+        assertEquals(0, new StatementBudget(50, false, 5).rejectAbove());
+        assertEquals(50, new StatementBudget(50, true, 5).rejectAbove());
+    }
+
+    private static RequestQueryCounter.Counts counted(int toppingLookups) {
+        RequestQueryCounter.begin();
+        for (int i = 0; i < toppingLookups; i++) {
+            RequestQueryCounter.statementPrepared("select t1_0.id from topping t1_0 where t1_0.id=" + i);
+        }
+        return RequestQueryCounter.end();
+    }
+}
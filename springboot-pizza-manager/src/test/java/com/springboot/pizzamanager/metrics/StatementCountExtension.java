@@ -0,0 +1,68 @@
+package com.springboot.pizzamanager.metrics;
+
+import org.junit.jupiter.api.extension.AfterEachCallback;
+import org.junit.jupiter.api.extension.ExtensionContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Lets tests that send requests through MockMvc to the full application pin down how many SQL statements
+// an endpoint may prepare. Register it as a field and wrap the request:
+//
+//     @RegisterExtension
+//     final StatementCountExtension statements = new StatementCountExtension();
+//
+//     statements.expectAtMost(1, () -> mockMvc.perform(get("/api/pizzas/{id}", id)))
+//             .andExpect(status().isOk());
+//
+// A call also fails when it prepares the same statement shape repeatThreshold times, the N+1 pattern.
+// The statement count of every call is published as a report entry of the test, so it shows up in the
+// test reports next to the budget it was held to.
+public class StatementCountExtension implements AfterEachCallback {
+
+    @FunctionalInterface
+    public interface Call<T> {
+        T run() throws Exception;
+    }
+
+    private final int repeatThreshold;
+    private final List<String> counted = new ArrayList<>();
+
+    public StatementCountExtension() {
+        this(3);
+    }
+
+    public StatementCountExtension(int repeatThreshold) {
+        this.repeatThreshold = repeatThreshold;
+    }
+
+    // Runs the call, fails when it prepared more than maxStatements statements or repeated one, and returns its result
+    public <T> T expectAtMost(int maxStatements, Call<T> call) throws Exception {
+        RequestQueryCounter.begin();
+        T result;
+        try {
+            result = call.run();
+        } catch (Exception | Error e) {
+            RequestQueryCounter.end();
+            throw e;
+        }
+        RequestQueryCounter.Counts counts = RequestQueryCounter.end();
+        counted.add(counts.getStatements() + "/" + maxStatements);
+        assertTrue(counts.getStatements() <= maxStatements, () -> "Expected at most " + maxStatements
+                + " SQL statements but " + counts.getStatements() + " were prepared: " + counts.getStatementShapes());
+        Map<String, Integer> repeated = counts.getRepeatedStatements(repeatThreshold);
+        assertTrue(repeated.isEmpty(), () -> "Repeated SQL statements, possible N+1 queries: " + repeated);
+        return result;
+    }
+
+    @Override
+    public void afterEach(ExtensionContext context) {
+        if (!counted.isEmpty()) {
+            context.publishReportEntry("sqlStatements", String.join(", ", counted));
+            counted.clear();
+        }
+    }
+}
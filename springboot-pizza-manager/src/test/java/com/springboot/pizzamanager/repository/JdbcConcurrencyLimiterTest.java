@@ -0,0 +1,88 @@
+package com.springboot.pizzamanager.repository;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class JdbcConcurrencyLimiterTest {
+
+    @Test
+    void getConnection_HoldsThePermitUntilTheConnectionIsClosed() throws Exception {
+        JdbcConcurrencyLimiter limiter = new JdbcConcurrencyLimiter(2, Duration.ofMillis(50));
+        Connection target = mock(Connection.class);
+        DataSource dataSource = limiter.limit(dataSource(target));
+
+        Connection connection = dataSource.getConnection();
+        assertEquals(1, limiter.getAvailablePermits());
+
+        connection.close();
+        connection.close();
+        assertEquals(2, limiter.getAvailablePermits());
+        verify(target, times(2)).close();
+    }
+
+    @Test
+    void getConnection_ReleasesThePermitWhenTheCheckoutFails() throws Exception {
+        JdbcConcurrencyLimiter limiter = new JdbcConcurrencyLimiter(1, Duration.ofMillis(50));
+        DataSource target = mock(DataSource.class);
+        when(target.getConnection()).thenThrow(new SQLException("Connection refused."));
+        DataSource dataSource = limiter.limit(target);
+
+        assertThrows(SQLException.class, dataSource::getConnection);
+        assertEquals(1, limiter.getAvailablePermits());
+    }
+
+    @Test
+    void getConnection_FailsWhenNoPermitFreesUpInTime() throws Exception {
+        JdbcConcurrencyLimiter limiter = new JdbcConcurrencyLimiter(1, Duration.ofMillis(50));
+        DataSource dataSource = limiter.limit(dataSource(mock(Connection.class)));
+
+        try (Connection held = dataSource.getConnection()) {
+            assertThrows(SQLTransientConnectionException.class, dataSource::getConnection);
+        }
+        dataSource.getConnection().close();
+        assertEquals(1, limiter.getAvailablePermits());
+    }
+
+    @Test
+    void permits_FollowTheConnectionPool() {
+        HikariDataSource dataSource = new HikariDataSource();
+        JdbcConcurrencyLimiter limiter = new JdbcConcurrencyLimiter(0, Duration.ofSeconds(1));
+        limiter.limit(dataSource);
+        assertEquals(10, limiter.getPermitCount());
+
+        dataSource.setMaximumPoolSize(4);
+        limiter.limit(dataSource);
+        assertEquals(4, limiter.getPermitCount());
+
+        JdbcConcurrencyLimiter configured = new JdbcConcurrencyLimiter(2, Duration.ofSeconds(1));
+        configured.limit(dataSource);
+        assertEquals(2, configured.getPermitCount());
+    }
+
+    @Test
+    void postProcessAfterInitialization_OnlyWrapsDataSources() throws Exception {
+        JdbcConcurrencyLimiter limiter = new JdbcConcurrencyLimiter(1, Duration.ofMillis(50));
+        DataSource target = dataSource(mock(Connection.class));
+
+        Object wrapped = limiter.postProcessAfterInitialization(target, "dataSource");
+        assertNotSame(target, wrapped);
+        assertSame(wrapped, limiter.postProcessAfterInitialization(wrapped, "dataSource"));
+        Object other = new Object();
+        assertSame(other, limiter.postProcessAfterInitialization(other, "other"));
+    }
+
+    private static DataSource dataSource(Connection connection) throws SQLException {
+        DataSource dataSource = mock(DataSource.class);
+        when(dataSource.getConnection()).thenReturn(connection);
+        return dataSource;
+    }
+}
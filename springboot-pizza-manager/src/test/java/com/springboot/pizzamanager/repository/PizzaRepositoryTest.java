@@ -0,0 +1,146 @@
+package com.springboot.pizzamanager.repository;
+
+import com.springboot.pizzamanager.dto.PizzaResponse;
+import com.springboot.pizzamanager.dto.PizzaToppingRow;
+import com.springboot.pizzamanager.model.Pizza;
+import com.springboot.pizzamanager.model.Topping;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Limit;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Import(SecondLevelCacheConfiguration.class)
+public class PizzaRepositoryTest {
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private PizzaRepository pizzaRepository;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        Topping cheese = entityManager.persist(new Topping("Cheese"));
+        Topping basil = entityManager.persist(new Topping("Basil"));
+        Topping onions = entityManager.persist(new Topping("Onions"));
+
+        for (int i = 0; i < 5; i++) {
+            Pizza pizza = new Pizza("Pizza " + i);
+            pizza.setToppings(new HashSet<>(Set.of(cheese, i % 2 == 0 ? basil : onions)));
+            entityManager.persist(pizza);
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        statistics = entityManager.getEntityManager().getEntityManagerFactory()
+                .unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void findById_LoadsPizzaAndToppingsInOneStatement() {
+        Long id = pizzaRepository.findPageOrderById(Limit.of(1)).get(0).getId();
+        entityManager.clear();
+        statistics.clear();
+
+        Pizza pizza = pizzaRepository.findById(id).orElseThrow();
+
+        assertEquals(2, pizza.getToppings().size());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void findRowsByIdIn_ReadsPizzaAndToppingsWithoutLoadingEntities() {
+        Long id = pizzaRepository.findPageOrderById(Limit.of(1)).get(0).getId();
+        statistics.clear();
+
+        List<PizzaToppingRow> rows = pizzaRepository.findRowsByIdIn(List.of(id));
+
+        assertEquals(2, rows.size());
+        assertEquals("Pizza 0", rows.get(0).getPizzaName());
+        assertTrue(rows.get(0).getToppingId() < rows.get(1).getToppingId());
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+    }
+
+    @Test
+    void keysetPage_ReadsPageAndToppingsInTwoStatements() {
+        List<PizzaResponse> page = pizzaRepository.findPageOrderById(Limit.of(3));
+        List<Long> ids = page.stream().map(PizzaResponse::getId).toList();
+        List<PizzaToppingRow> rows = pizzaRepository.findRowsByIdIn(ids);
+
+        assertEquals(3, page.size());
+        assertEquals(6, rows.size());
+        assertEquals(2, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+    }
+
+    @Test
+    void keysetPage_SeeksPastTheLastName() {
+        List<PizzaResponse> page = pizzaRepository.findPageAfterName("Pizza 2", Limit.of(5));
+
+        assertEquals(List.of("Pizza 3", "Pizza 4"), page.stream().map(PizzaResponse::getName).toList());
+    }
+
+    @Test
+    void streamMenuRows_KeepsRowsOfOnePizzaTogether() {
+        entityManager.persist(new Pizza("Plain"));
+        entityManager.flush();
+        entityManager.clear();
+
+        List<PizzaToppingRow> rows;
+        try (Stream<PizzaToppingRow> stream = pizzaRepository.streamMenuRows()) {
+            rows = stream.toList();
+        }
+
+        assertEquals(11, rows.size());
+        for (int i = 1; i < rows.size(); i++) {
+            assertTrue(rows.get(i - 1).getPizzaId() <= rows.get(i).getPizzaId());
+        }
+        PizzaToppingRow plain = rows.get(rows.size() - 1);
+        assertEquals("Plain", plain.getPizzaName());
+        assertNull(plain.getToppingId());
+        assertEquals(0, statistics.getEntityLoadCount());
+    }
+
+    @Test
+    void findDuplicateSignatures_GroupsPizzasWithSameToppings() {
+        List<String> signatures = pizzaRepository.findDuplicateSignatures();
+
+        // Pizzas 0, 2 and 4 share cheese and basil, 1 and 3 share cheese and onions
+        assertEquals(2, signatures.size());
+        List<PizzaToppingRow> rows = pizzaRepository.findRowsByToppingSignatureIn(signatures);
+        assertEquals(10, rows.size());
+        assertEquals(5, rows.stream().map(PizzaToppingRow::getPizzaId).distinct().count());
+    }
+
+    @Test
+    void replaceToppings_UpdatesCollectionWithoutRecreatingIt() {
+        Pizza pizza = pizzaRepository.findAll().get(0);
+        Topping peppers = entityManager.persist(new Topping("Peppers"));
+        Set<Topping> toppings = new HashSet<>(pizza.getToppings());
+        toppings.add(peppers);
+        statistics.clear();
+
+        pizza.replaceToppings(toppings);
+        entityManager.flush();
+
+        assertEquals(0, statistics.getCollectionRecreateCount());
+        assertEquals(1, statistics.getCollectionUpdateCount());
+    }
+}
@@ -0,0 +1,127 @@
+package com.springboot.pizzamanager.repository;
+
+import com.springboot.pizzamanager.model.Pizza;
+import com.springboot.pizzamanager.model.Topping;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@Import({ToppingUsageRepository.class, SecondLevelCacheConfiguration.class})
+public class ToppingUsageRepositoryTest {
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private ToppingUsageRepository toppingUsageRepository;
+
+    private Topping cheese;
+    private Topping basil;
+    private Pizza margherita;
+    private Pizza plain;
+    private Pizza marinara;
+
+    @BeforeEach
+    void setUp() {
+        cheese = entityManager.persist(new Topping("Cheese"));
+        basil = entityManager.persist(new Topping("Basil"));
+        Topping garlic = entityManager.persist(new Topping("Garlic"));
+
+        margherita = pizza("Margherita", cheese, basil);
+        plain = pizza("Plain", cheese);
+        marinara = pizza("Marinara", garlic);
+        entityManager.flush();
+    }
+
+    private Pizza pizza(String name, Topping... toppings) {
+        Pizza pizza = new Pizza(name);
+        pizza.setToppings(new HashSet<>(Set.of(toppings)));
+        return entityManager.persist(pizza);
+    }
+
+    @Test
+    void changeToppings_TouchesOnlyTheGivenJoinRows() {
+        Topping olives = entityManager.persistAndFlush(new Topping("Olives"));
+        String signature = Pizza.signatureOf(List.of(basil.getId(), olives.getId()));
+
+        assertTrue(toppingUsageRepository.changeToppings(margherita.getId(), 0L, signature,
+                Set.of(olives.getId()), Set.of(cheese.getId())));
+        entityManager.clear();
+
+        Pizza reloaded = entityManager.find(Pizza.class, margherita.getId());
+        assertEquals(Set.of(basil.getId(), olives.getId()), reloaded.getToppings().stream().map(Topping::getId)
+                .collect(Collectors.toSet()));
+        assertEquals(signature, reloaded.getToppingSignature());
+        assertEquals(1L, reloaded.getVersion());
+        assertEquals(Set.of(cheese.getId()), entityManager.find(Pizza.class, plain.getId()).getToppings().stream()
+                .map(Topping::getId).collect(Collectors.toSet()));
+    }
+
+    @Test
+    void changeToppings_WritesNothingWhenThePizzaMovedOn() {
+        assertFalse(toppingUsageRepository.changeToppings(margherita.getId(), 3L, null,
+                Set.of(), Set.of(cheese.getId(), basil.getId())));
+        entityManager.clear();
+
+        Pizza reloaded = entityManager.find(Pizza.class, margherita.getId());
+        assertEquals(2, reloaded.getToppings().size());
+        assertEquals(0L, reloaded.getVersion());
+    }
+
+    @Test
+    void detachFromAllPizzas_RemovesToppingAndRefreshesSignatures() {
+        Map<Long, Long> detached = toppingUsageRepository.detachFromAllPizzas(cheese.getId());
+        entityManager.clear();
+
+        assertEquals(Map.of(margherita.getId(), 1L, plain.getId(), 1L), detached);
+        Pizza reloaded = entityManager.find(Pizza.class, margherita.getId());
+        assertEquals(Set.of(basil.getId()), reloaded.getToppings().stream().map(Topping::getId)
+                .collect(Collectors.toSet()));
+        assertEquals(Pizza.signatureOf(List.of(basil.getId())), reloaded.getToppingSignature());
+        assertEquals(1L, reloaded.getVersion());
+
+        Pizza emptied = entityManager.find(Pizza.class, plain.getId());
+        assertTrue(emptied.getToppings().isEmpty());
+        assertNull(emptied.getToppingSignature());
+
+        // Pizzas without the topping are not touched
+        assertEquals(0L, entityManager.find(Pizza.class, marinara.getId()).getVersion());
+    }
+
+    @Test
+    void detachFromAllPizzas_UnusedToppingChangesNothing() {
+        Topping olives = entityManager.persistAndFlush(new Topping("Olives"));
+
+        assertTrue(toppingUsageRepository.detachFromAllPizzas(olives.getId()).isEmpty());
+    }
+
+    @Test
+    void adjustUsageCounts_MovesCountersRelatively() {
+        toppingUsageRepository.adjustUsageCounts(Map.of(cheese.getId(), 2L, basil.getId(), 1L));
+        toppingUsageRepository.adjustUsageCounts(Map.of(cheese.getId(), -1L));
+        entityManager.clear();
+
+        assertEquals(1, entityManager.find(Topping.class, cheese.getId()).getUsageCount());
+        assertEquals(1, entityManager.find(Topping.class, basil.getId()).getUsageCount());
+    }
+
+    @Test
+    void findUsageCount_ReadsTheCounterFromTheTable() {
+        toppingUsageRepository.adjustUsageCounts(Map.of(cheese.getId(), 2L));
+
+        assertEquals(2, toppingUsageRepository.findUsageCount(cheese.getId()));
+        assertEquals(0, toppingUsageRepository.findUsageCount(-1L));
+    }
+}
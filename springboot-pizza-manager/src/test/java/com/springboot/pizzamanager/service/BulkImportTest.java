@@ -0,0 +1,85 @@
+package com.springboot.pizzamanager.service;
+
+import com.springboot.pizzamanager.dto.BatchImportResponse;
+import com.springboot.pizzamanager.dto.BatchItemResult;
+import com.springboot.pizzamanager.dto.NameSuggestion;
+import com.springboot.pizzamanager.dto.PizzaRequest;
+import com.springboot.pizzamanager.dto.PizzaToppingRow;
+import com.springboot.pizzamanager.dto.ToppingDTO;
+import com.springboot.pizzamanager.repository.PizzaRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Runs the bulk imports against the real database to check that rows go out in JDBC batches
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+public class BulkImportTest {
+
+    private static final int PIZZAS = 200;
+
+    @Autowired
+    private PizzaService pizzaService;
+
+    @Autowired
+    private ToppingService toppingService;
+
+    @Autowired
+    private PizzaRepository pizzaRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void importPizzas_WritesRowsInBatches() {
+        List<ToppingDTO> toppings = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            toppings.add(new ToppingDTO(null, "Bulk Topping " + i));
+        }
+        BatchImportResponse toppingResponse = toppingService.importToppings(toppings);
+        assertEquals(12, toppingResponse.getCreated());
+        List<Long> toppingIds = toppingResponse.getItems().stream().map(BatchItemResult::getId).toList();
+
+        // Every pizza gets a different set of three toppings
+        List<PizzaRequest> requests = new ArrayList<>();
+        for (int a = 0; a < 12 && requests.size() < PIZZAS; a++) {
+            for (int b = a + 1; b < 12 && requests.size() < PIZZAS; b++) {
+                for (int c = b + 1; c < 12 && requests.size() < PIZZAS; c++) {
+                    requests.add(new PizzaRequest("Bulk Pizza " + requests.size(),
+                            Set.of(toppingIds.get(a), toppingIds.get(b), toppingIds.get(c))));
+                }
+            }
+        }
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        BatchImportResponse response = pizzaService.importPizzas(requests);
+
+        assertEquals(PIZZAS, response.getCreated());
+        assertEquals(PIZZAS, statistics.getEntityInsertCount());
+        // 200 pizza rows, 600 join rows and their ids would be 1000 statements one by one,
+        // batches of 50 and a pooled sequence bring that down to a few dozen
+        assertTrue(statistics.getPrepareStatementCount() < 40,
+                "expected batched inserts, prepared " + statistics.getPrepareStatementCount() + " statements");
+
+        Set<Long> ids = response.getItems().stream().map(BatchItemResult::getId).collect(Collectors.toSet());
+        Map<Long, Long> toppingsPerPizza = pizzaRepository.findRowsByIdIn(ids).stream()
+                .collect(Collectors.groupingBy(PizzaToppingRow::getPizzaId, Collectors.counting()));
+        assertEquals(PIZZAS, toppingsPerPizza.values().stream().filter(count -> count == 3).count());
+
+        // The whole import reaches the name suggestions once committed
+        assertEquals(11, pizzaService.suggestPizzas("bulk pizza 19", 50).size());
+        assertEquals(List.of("Bulk Topping 1", "Bulk Topping 10", "Bulk Topping 11"),
+                toppingService.suggestToppings("Bulk Topping 1", 10).stream().map(NameSuggestion::getName).toList());
+    }
+}
@@ -0,0 +1,56 @@
+package com.springboot.pizzamanager.service;
+
+import com.springboot.pizzamanager.dto.PizzaToppingRow;
+import com.springboot.pizzamanager.dto.PizzaResponse;
+import com.springboot.pizzamanager.dto.ToppingDTO;
+import com.springboot.pizzamanager.repository.PizzaRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class MenuExportServiceTest {
+
+    @Mock
+    private PizzaRepository pizzaRepository;
+
+    @InjectMocks
+    private MenuExportService menuExportService;
+
+    @Test
+    void exportPizzas_GroupsConsecutiveRowsAndClosesCursor() {
+        AtomicBoolean closed = new AtomicBoolean();
+        when(pizzaRepository.streamMenuRows()).thenReturn(Stream.of(
+                new PizzaToppingRow(1L, "Margherita", 0L, 10L, "Cheese"),
+                new PizzaToppingRow(1L, "Margherita", 0L, 11L, "Basil"),
+                new PizzaToppingRow(2L, "Plain", 0L, null, null),
+                new PizzaToppingRow(3L, "Cheesy", 0L, 10L, "Cheese")).onClose(() -> closed.set(true)));
+
+        List<PizzaResponse> exported = new ArrayList<>();
+        long count = menuExportService.exportPizzas(exported::add);
+
+        assertEquals(3, count);
+        assertEquals(List.of("Cheese", "Basil"),
+                exported.get(0).getToppings().stream().map(ToppingDTO::getName).toList());
+        assertTrue(exported.get(1).getToppings().isEmpty());
+        assertEquals("Cheesy", exported.get(2).getName());
+        assertTrue(closed.get());
+    }
+
+    @Test
+    void exportPizzas_EmptyMenuExportsNothing() {
+        when(pizzaRepository.streamMenuRows()).thenReturn(Stream.empty());
+
+        assertEquals(0, menuExportService.exportPizzas(pizza -> fail("nothing to export")));
+    }
+}
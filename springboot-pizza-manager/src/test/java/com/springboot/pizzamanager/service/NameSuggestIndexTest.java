@@ -0,0 +1,135 @@
+package com.springboot.pizzamanager.service;
+
+import com.springboot.pizzamanager.dto.NameSuggestion;
+import com.springboot.pizzamanager.model.Pizza;
+import com.springboot.pizzamanager.model.Topping;
+import com.springboot.pizzamanager.repository.PizzaRepository;
+import com.springboot.pizzamanager.repository.ToppingRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class NameSuggestIndexTest {
+
+    @Mock
+    private PizzaRepository pizzaRepository;
+
+    @Mock
+    private ToppingRepository toppingRepository;
+
+    private NameSuggestIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new NameSuggestIndex(pizzaRepository, toppingRepository);
+        index.onMenuChange(MenuChangeEvent.toppingCreated(topping(1L, "Pepperoni")));
+        index.onMenuChange(MenuChangeEvent.toppingCreated(topping(2L, "Peppers")));
+        index.onMenuChange(MenuChangeEvent.toppingCreated(topping(3L, "Green Peppers")));
+        index.onMenuChange(MenuChangeEvent.toppingCreated(topping(4L, "Pineapple")));
+    }
+
+    @Test
+    void suggestToppings_NamesStartingWithThePrefixComeFirst() {
+        assertEquals(List.of("Pepperoni", "Peppers", "Green Peppers"), names(index.suggestToppings("pep", 10)));
+        assertEquals(List.of("Pepperoni", "Peppers", "Pineapple", "Green Peppers"), names(index.suggestToppings("P", 10)));
+    }
+
+    @Test
+    void suggestToppings_IsCaseInsensitiveAndIgnoresSurroundingBlanks() {
+        assertEquals(List.of("Green Peppers"), names(index.suggestToppings("  GREEN p ", 10)));
+    }
+
+    @Test
+    void suggestToppings_StopsAtTheLimit() {
+        assertEquals(List.of("Pepperoni", "Peppers"), names(index.suggestToppings("pep", 2)));
+        assertEquals(List.of("Pepperoni"), names(index.suggestToppings("pep", 0)));
+        assertEquals(List.of(), index.suggestToppings("", 10));
+        assertEquals(List.of(), index.suggestToppings("olive", 10));
+    }
+
+    @Test
+    void suggestToppings_NameWithTheWordTwiceIsListedOnce() {
+        index.onMenuChange(MenuChangeEvent.toppingCreated(topping(5L, "Hot Pepper Pepper Flakes")));
+
+        // Word matches are ordered by the name from the matching word on
+        assertEquals(List.of("Pepperoni", "Peppers", "Hot Pepper Pepper Flakes", "Green Peppers"),
+                names(index.suggestToppings("pepper", 10)));
+    }
+
+    @Test
+    void onMenuChange_RenamesAndDeletesAreFollowed() {
+        index.onMenuChange(MenuChangeEvent.toppingUpdated(topping(2L, "Jalapenos")));
+        index.onMenuChange(MenuChangeEvent.toppingDeleted(1L));
+
+        assertEquals(List.of("Green Peppers"), names(index.suggestToppings("pep", 10)));
+        assertEquals(List.of("Jalapenos"), names(index.suggestToppings("jal", 10)));
+        assertEquals(List.of(), index.suggestPizzas("pep", 10));
+    }
+
+    @Test
+    void onMenuChange_ChangesOfATransactionAreAppliedTogetherOnceItCompletes() {
+        TransactionSynchronizationManager.initSynchronization();
+        List<TransactionSynchronization> synchronizations;
+        try {
+            index.onMenuChange(MenuChangeEvent.toppingCreated(topping(5L, "Pesto")));
+            index.onMenuChange(MenuChangeEvent.toppingUpdated(topping(5L, "Red Pesto")));
+            index.onMenuChange(MenuChangeEvent.toppingDeleted(1L));
+            index.onMenuChange(MenuChangeEvent.pizzaCreated(pizza(10L, "Pesto Genovese")));
+
+            assertEquals(List.of("Pepperoni", "Peppers"), names(index.suggestToppings("pe", 2)));
+            synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        assertEquals(1, synchronizations.size());
+        synchronizations.forEach(synchronization ->
+                synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+
+        assertEquals(List.of("Peppers", "Green Peppers", "Red Pesto"), names(index.suggestToppings("pe", 10)));
+        assertEquals(List.of("Pesto Genovese"), names(index.suggestPizzas("pesto", 10)));
+        assertNull(TransactionSynchronizationManager.getResource(index));
+    }
+
+    @Test
+    void rebuild_ReplacesNamesAndKeepsChangesCommittedMeanwhile() {
+        when(pizzaRepository.findAllNames()).thenAnswer(invocation -> {
+            // Committed while the rebuild was reading, after the query had passed this pizza
+            index.onMenuChange(MenuChangeEvent.pizzaCreated(pizza(11L, "Margherita Bianca")));
+            return List.of(new NameSuggestion(10L, "Margherita"), new NameSuggestion(11L, "Marinara"));
+        });
+        when(toppingRepository.findAllNames()).thenReturn(List.of(new NameSuggestion(1L, "Mozzarella")));
+
+        index.rebuild();
+
+        assertEquals(List.of("Margherita", "Margherita Bianca"), names(index.suggestPizzas("mar", 10)));
+        assertEquals(List.of("Margherita Bianca"), names(index.suggestPizzas("bia", 10)));
+        assertEquals(List.of("Mozzarella"), names(index.suggestToppings("m", 10)));
+        assertEquals(List.of(), index.suggestToppings("pep", 10));
+    }
+
+    private static List<String> names(List<NameSuggestion> suggestions) {
+        return suggestions.stream().map(NameSuggestion::getName).toList();
+    }
+
+    private static Topping topping(long id, String name) {
+        Topping topping = new Topping(name);
+        topping.setId(id);
+        return topping;
+    }
+
+    private static Pizza pizza(long id, String name) {
+        Pizza pizza = new Pizza(name);
+        pizza.setId(id);
+        return pizza;
+    }
+}
@@ -1,20 +1,36 @@
 package com.springboot.pizzamanager.service;
 
+import com.springboot.pizzamanager.dto.BatchImportResponse;
+import com.springboot.pizzamanager.dto.BatchItemResult;
+import com.springboot.pizzamanager.dto.PizzaRequest;
+import com.springboot.pizzamanager.dto.PizzaResponse;
+import com.springboot.pizzamanager.dto.PizzaToppingRow;
+import com.springboot.pizzamanager.dto.ToppingDTO;
 import com.springboot.pizzamanager.dto.PizzaUpdateRequest;
 import com.springboot.pizzamanager.model.Pizza;
 import com.springboot.pizzamanager.model.Topping;
 import com.springboot.pizzamanager.repository.PizzaRepository;
 import com.springboot.pizzamanager.repository.ToppingRepository;
+import com.springboot.pizzamanager.repository.ToppingUsageRepository;
+import jakarta.validation.Validation;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-
+import org.roaringbitmap.longlong.Roaring64Bitmap;
+import org.springframework.context.ApplicationEventPublisher;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 
@@ -31,7 +47,21 @@ public class PizzaServiceTest {
     @Mock
     private ToppingRepository toppingRepository;
 
-    @InjectMocks
+    @Mock
+    private ToppingUsageRepository toppingUsageRepository;
+
+    @Mock
+    private PizzaToppingIndex pizzaToppingIndex;
+
+    @Mock
+    private NameSuggestIndex nameSuggestIndex;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
     private PizzaService pizzaService;
 
     private Pizza pizza;
@@ -41,6 +71,10 @@ public class PizzaServiceTest {
 
     @BeforeEach
     void setUp() {
+        // Topping ids are resolved through a real catalog backed by the mocked repository
+        pizzaService = new PizzaService(pizzaRepository, toppingUsageRepository, new ToppingCatalog(toppingRepository), pizzaToppingIndex, nameSuggestIndex, eventPublisher,
+                Validation.buildDefaultValidatorFactory().getValidator(), false, transactionManager, 3, 0);
+
         // Initialize test data
         topping1 = new Topping("Mushrooms");
         topping1.setId(1L);
@@ -58,16 +92,15 @@ public class PizzaServiceTest {
 
     @Test
     void createPizzaWithToppings_Success() {
-        when(toppingRepository.findById(1L)).thenReturn(Optional.of(topping1));
-        when(toppingRepository.findById(2L)).thenReturn(Optional.of(topping2));
-        when(pizzaRepository.save(any(Pizza.class))).thenReturn(pizza);
+        when(toppingRepository.findAllById(toppingIds)).thenReturn(List.of(topping1, topping2));
+        when(pizzaRepository.saveAndFlush(any(Pizza.class))).thenReturn(pizza);
 
         Pizza result = pizzaService.createPizzaWithToppings(new Pizza("Margherita"), toppingIds);
 
         assertNotNull(result);
         assertEquals("Margherita", result.getName());
         assertTrue(result.getToppings().containsAll(Set.of(topping1, topping2)));
-        verify(pizzaRepository).save(any(Pizza.class));
+        verify(pizzaRepository).saveAndFlush(any(Pizza.class));
     }
 
     @Test
@@ -76,32 +109,62 @@ public class PizzaServiceTest {
         PizzaUpdateRequest request = new PizzaUpdateRequest("Margherita Updated", new ArrayList<>(List.of(1L, 2L)));
 
         when(pizzaRepository.findById(1L)).thenReturn(Optional.of(pizza));
-        when(toppingRepository.findById(1L)).thenReturn(Optional.of(topping1));
-        when(toppingRepository.findById(2L)).thenReturn(Optional.of(topping2));
-        when(pizzaRepository.save(any(Pizza.class))).thenReturn(pizza);
+        when(toppingRepository.findAllById(Set.of(1L, 2L))).thenReturn(List.of(topping1, topping2));
 
-        Pizza updatedPizza = pizzaService.updatePizza(1L, request);
+        Pizza updatedPizza = pizzaService.updatePizza(1L, request, null);
 
         assertNotNull(updatedPizza);
         assertEquals("Margherita Updated", updatedPizza.getName());
         assertTrue(updatedPizza.getToppings().containsAll(Set.of(topping1, topping2)));
+        // The loaded pizza is flushed, not merged
+        verify(pizzaRepository).flush();
+        verify(pizzaRepository, never()).saveAndFlush(any(Pizza.class));
+        verify(eventPublisher).publishEvent(any(MenuChangeEvent.class));
     }
 
+    @Test
+    void updatePizza_MovesUsageCountersOfChangedToppingsOnly() {
+        Topping topping3 = new Topping("Olives");
+        topping3.setId(3L);
+        PizzaUpdateRequest request = new PizzaUpdateRequest("Margherita", List.of(2L, 3L));
+
+        when(pizzaRepository.findById(1L)).thenReturn(Optional.of(pizza));
+        when(toppingRepository.findAllById(Set.of(2L, 3L))).thenReturn(List.of(topping2, topping3));
+
+        pizzaService.updatePizza(1L, request, null);
+
+        verify(toppingUsageRepository).adjustUsageCounts(Map.of(3L, 1L, 1L, -1L));
+    }
+
+
+    @Test
+    void findPizzaById_ListsToppingsInIdOrder() {
+        pizza.setVersion(3L);
+        pizza.setToppings(new HashSet<>(Set.of(topping2, topping1)));
+        when(pizzaRepository.findById(1L)).thenReturn(Optional.of(pizza));
+
+        PizzaResponse response = pizzaService.findPizzaById(1L).orElseThrow();
+
+        assertEquals("Margherita", response.getName());
+        assertEquals(3L, response.getVersion());
+        assertEquals(List.of(1L, 2L), response.getToppings().stream().map(ToppingDTO::getId).toList());
+    }
 
     @Test
     void deletePizza_Success() {
-        when(pizzaRepository.existsById(1L)).thenReturn(true);
-        doNothing().when(pizzaRepository).deleteById(1L);
+        pizza.setVersion(0L);
+        when(pizzaRepository.findById(1L)).thenReturn(Optional.of(pizza));
 
-        pizzaService.deletePizza(1L);
+        pizzaService.deletePizza(1L, 0L);
 
-        verify(pizzaRepository).deleteById(1L);
+        verify(pizzaRepository).delete(pizza);
+        verify(toppingUsageRepository).adjustUsageCounts(Map.of(1L, -1L, 2L, -1L));
     }
 
     @Test
     void createPizzaWithNonExistentTopping_ThrowsException() {
         Set<Long> invalidToppingIds = new HashSet<>(Set.of(99L));
-        when(toppingRepository.findById(99L)).thenReturn(Optional.empty());
+        when(toppingRepository.findAllById(invalidToppingIds)).thenReturn(List.of());
 
         Exception exception = assertThrows(IllegalStateException.class, () -> 
             pizzaService.createPizzaWithToppings(new Pizza("Margherita"), invalidToppingIds));
@@ -116,27 +179,30 @@ public class PizzaServiceTest {
         when(pizzaRepository.findById(anyLong())).thenReturn(Optional.empty());
 
         Exception exception = assertThrows(IllegalStateException.class, () -> 
-            pizzaService.updatePizza(99L, updateRequest));
+            pizzaService.updatePizza(99L, updateRequest, null));
 
         assertTrue(exception.getMessage().contains("does not exist"));
     }
 
  @Test
  void createPizza_FailsWhenNameExists() {
-     when(pizzaRepository.existsByName("Margherita")).thenReturn(true);
+     when(toppingRepository.findAllById(toppingIds)).thenReturn(List.of(topping1, topping2));
+     when(pizzaRepository.saveAndFlush(any(Pizza.class))).thenThrow(new DataIntegrityViolationException("could not execute statement",
+             new ConstraintViolationException("Unique index or primary key violation", new SQLException(), "UK_PIZZA_NAME_INDEX_4")));
 
-     Exception exception = assertThrows(IllegalStateException.class, () -> 
+     Exception exception = assertThrows(DuplicateNameException.class, () -> 
          pizzaService.createPizzaWithToppings(new Pizza("Margherita"), toppingIds));
 
-     assertTrue(exception.getMessage().contains("already exists"));
+     assertEquals("Pizza with name Margherita already exists.", exception.getMessage());
+     verify(eventPublisher, never()).publishEvent(any());
  }
 
  @Test
  void deletePizza_FailsWhenIdDoesNotExist() {
-     when(pizzaRepository.existsById(anyLong())).thenReturn(false);
+     when(pizzaRepository.findById(anyLong())).thenReturn(Optional.empty());
 
      Exception exception = assertThrows(IllegalStateException.class, () -> 
-         pizzaService.deletePizza(99L));
+         pizzaService.deletePizza(99L, null));
 
      assertTrue(exception.getMessage().contains("does not exist"));
  }
@@ -145,12 +211,210 @@ public class PizzaServiceTest {
  void updatePizza_FailsWhenNewToppingDoesNotExist() {
      PizzaUpdateRequest request = new PizzaUpdateRequest("Margherita Updated", List.of(99L));
      when(pizzaRepository.findById(1L)).thenReturn(Optional.of(pizza));
-     when(toppingRepository.findById(99L)).thenReturn(Optional.empty());
+     when(toppingRepository.findAllById(Set.of(99L))).thenReturn(List.of());
 
      Exception exception = assertThrows(IllegalStateException.class, () -> 
-         pizzaService.updatePizza(1L, request));
+         pizzaService.updatePizza(1L, request, null));
 
      assertTrue(exception.getMessage().contains("does not exist"));
  }
 
+ @Test
+ void createPizza_ReportsEveryMissingToppingAtOnce() {
+     Set<Long> requestedIds = new HashSet<>(Set.of(1L, 98L, 99L));
+     when(toppingRepository.findAllById(requestedIds)).thenReturn(List.of(topping1));
+
+     Exception exception = assertThrows(IllegalStateException.class, () ->
+         pizzaService.createPizzaWithToppings(new Pizza("Margherita"), requestedIds));
+
+     assertEquals("Toppings with ids 98, 99 do not exist.", exception.getMessage());
+     verify(toppingRepository, never()).findById(anyLong());
+     verify(pizzaRepository, never()).save(any(Pizza.class));
+ }
+
+ @Test
+ void findPizzaPage_ReturnsCursorWhenMoreRowsExist() {
+     when(pizzaRepository.findPageOrderById(Limit.of(2))).thenReturn(List.of(
+             new PizzaResponse(1L, "Margherita", 0L), new PizzaResponse(2L, "Pepperoni", 0L)));
+     when(pizzaRepository.findRowsByIdIn(Set.of(1L))).thenReturn(List.of(
+             new PizzaToppingRow(1L, "Margherita", 0L, 1L, "Cheese"),
+             new PizzaToppingRow(1L, "Margherita", 0L, 2L, "Tomato Sauce")));
+
+     KeysetPage<PizzaResponse> page = pizzaService.findPizzaPage(PageCursor.Sort.ID, null, 1);
+
+     assertEquals(1, page.getItems().size());
+     assertEquals(2, page.getItems().get(0).getToppings().size());
+     assertTrue(page.hasNext());
+     assertEquals(1L, PageCursor.decode(page.getNextCursor()).getLastId());
+ }
+
+ @Test
+ void findPizzaPage_SeeksPastCursor() {
+     String cursor = PageCursor.after(PageCursor.Sort.NAME, 1L, "Margherita").encode();
+     when(pizzaRepository.findPageAfterName("Margherita", Limit.of(3))).thenReturn(List.of());
+
+     KeysetPage<PizzaResponse> page = pizzaService.findPizzaPage(PageCursor.Sort.NAME, cursor, 2);
+
+     assertTrue(page.getItems().isEmpty());
+     assertFalse(page.hasNext());
+ }
+
+ @Test
+ void findPizzaPage_RejectsCursorForOtherSort() {
+     String cursor = PageCursor.after(PageCursor.Sort.ID, 1L, "Margherita").encode();
+
+     assertThrows(IllegalArgumentException.class, () ->
+         pizzaService.findPizzaPage(PageCursor.Sort.NAME, cursor, 2));
+ }
+
+ @Test
+ void importPizzas_RejectsInvalidItemsAndSavesTheRest() {
+     when(pizzaRepository.findExistingNames(Set.of("Margherita", "Hawaiian", "Veggie", "")))
+             .thenReturn(Set.of("Margherita"));
+     when(toppingRepository.findAllById(Set.of(1L, 2L, 99L))).thenReturn(List.of(topping1, topping2));
+
+     BatchImportResponse response = pizzaService.importPizzas(List.of(
+             new PizzaRequest("Hawaiian", Set.of(1L, 2L)),
+             new PizzaRequest("Margherita", Set.of(1L)),
+             new PizzaRequest("Hawaiian", Set.of()),
+             new PizzaRequest("Veggie", Set.of(2L, 99L)),
+             new PizzaRequest("", null)));
+
+     assertEquals(1, response.getCreated());
+     assertEquals(4, response.getRejected());
+     List<BatchItemResult> items = response.getItems();
+     assertEquals(BatchItemResult.CREATED, items.get(0).getStatus());
+     assertTrue(items.get(1).getError().contains("already exists"));
+     assertTrue(items.get(2).getError().contains("more than once"));
+     assertEquals("Topping with id 99 does not exist.", items.get(3).getError());
+     assertTrue(items.get(4).getError().startsWith("Pizza name"));
+     verify(toppingRepository, times(1)).findAllById(any());
+     verify(pizzaRepository).saveAll(argThat(pizzas -> pizzas.iterator().next().getToppings().size() == 2));
+     verify(eventPublisher, times(1)).publishEvent(any(MenuChangeEvent.class));
+ }
+
+ @Test
+ void searchPizzasByToppings_LoadsOnlyThePageOfMatches() {
+     when(pizzaToppingIndex.match(Set.of(1L), Set.of(), Set.of(2L))).thenReturn(Roaring64Bitmap.bitmapOf(1L, 7L, 9L));
+     when(pizzaRepository.findRowsByIdIn(List.of(7L)))
+             .thenReturn(List.of(new PizzaToppingRow(7L, "Veggie", 0L, 1L, "Cheese")));
+     String cursor = PageCursor.after(PageCursor.Sort.ID, 1L, null).encode();
+
+     KeysetPage<PizzaResponse> page = pizzaService.searchPizzasByToppings(Set.of(1L), Set.of(), Set.of(2L), cursor, 1);
+
+     assertEquals(1, page.getItems().size());
+     assertEquals("Veggie", page.getItems().get(0).getName());
+     assertEquals(7L, PageCursor.decode(page.getNextCursor()).getLastId());
+ }
+
+ @Test
+ void createPizza_FailsWhenAnotherPizzaHasTheSameToppings() {
+     Pizza funghi = new Pizza("Funghi");
+     when(toppingRepository.findAllById(toppingIds)).thenReturn(List.of(topping1, topping2));
+     when(pizzaRepository.findFirstByToppingSignature(Pizza.signatureOf(List.of(2L, 1L)))).thenReturn(Optional.of(pizza));
+
+     Exception exception = assertThrows(IllegalStateException.class, () ->
+         pizzaService.createPizzaWithToppings(funghi, toppingIds));
+
+     assertEquals("Pizza Margherita already has the same toppings.", exception.getMessage());
+     verify(pizzaRepository, never()).save(any(Pizza.class));
+ }
+
+ @Test
+ void importPizzas_RejectsRepeatedRecipeWithinBatch() {
+     when(toppingRepository.findAllById(Set.of(1L, 2L))).thenReturn(List.of(topping1, topping2));
+
+     BatchImportResponse response = pizzaService.importPizzas(List.of(
+             new PizzaRequest("Funghi", Set.of(1L, 2L)),
+             new PizzaRequest("Funghi Again", Set.of(2L, 1L))));
+
+     assertEquals(1, response.getCreated());
+     assertTrue(response.getItems().get(1).getError().contains("same toppings"));
+     verify(pizzaRepository).findExistingSignatures(Set.of(Pizza.signatureOf(Set.of(1L, 2L))));
+ }
+
+ @Test
+ void changePizzaToppings_WritesOnlyTheEffectiveDelta() {
+     when(pizzaRepository.findVersionById(1L)).thenReturn(Optional.of(4L));
+     when(toppingRepository.findAllById(Set.of(1L, 2L))).thenReturn(List.of(topping1, topping2));
+     when(pizzaRepository.findToppingIds(1L)).thenReturn(Set.of(1L, 3L));
+     when(toppingUsageRepository.changeToppings(1L, 4L, Pizza.signatureOf(Set.of(1L, 2L)), Set.of(2L), Set.of(3L)))
+             .thenReturn(true);
+
+     assertEquals(5L, pizzaService.changePizzaToppings(1L, Set.of(1L, 2L), Set.of(3L, 4L), null));
+
+     verify(toppingUsageRepository).changeToppings(1L, 4L, Pizza.signatureOf(Set.of(1L, 2L)), Set.of(2L), Set.of(3L));
+     verify(toppingUsageRepository).adjustUsageCounts(Map.of(2L, 1L, 3L, -1L));
+     verify(pizzaRepository, never()).findById(anyLong());
+     verify(eventPublisher).publishEvent(argThat((MenuChangeEvent event) ->
+             event.getType() == MenuChangeEvent.Type.PIZZA_TOPPINGS_CHANGED
+                     && event.getAddedToppings().equals(Set.of(topping2))
+                     && event.getRemovedToppingIds().equals(Set.of(3L))
+                     && event.getVersion().equals(5L)));
+ }
+
+ @Test
+ void changePizzaToppings_RepeatedDeltaWritesNothing() {
+     when(pizzaRepository.findVersionById(1L)).thenReturn(Optional.of(0L));
+     when(toppingRepository.findAllById(Set.of(1L))).thenReturn(List.of(topping1));
+     when(pizzaRepository.findToppingIds(1L)).thenReturn(Set.of(1L));
+
+     assertEquals(0L, pizzaService.changePizzaToppings(1L, Set.of(1L), Set.of(2L), null));
+
+     verify(toppingUsageRepository, never()).changeToppings(anyLong(), anyLong(), any(), any(), any());
+     verify(eventPublisher, never()).publishEvent(any(MenuChangeEvent.class));
+ }
+
+ @Test
+ void changePizzaToppings_RetriesWhenAConcurrentWriteWins() {
+     when(pizzaRepository.findVersionById(1L)).thenReturn(Optional.of(0L)).thenReturn(Optional.of(1L));
+     when(toppingRepository.findAllById(Set.of(2L))).thenReturn(List.of(topping2));
+     when(pizzaRepository.findToppingIds(1L)).thenReturn(Set.of(1L));
+     String signature = Pizza.signatureOf(Set.of(1L, 2L));
+     when(toppingUsageRepository.changeToppings(1L, 0L, signature, Set.of(2L), Set.of())).thenReturn(false);
+     when(toppingUsageRepository.changeToppings(1L, 1L, signature, Set.of(2L), Set.of())).thenReturn(true);
+
+     pizzaService.changePizzaToppings(1L, Set.of(2L), Set.of(), null);
+
+     verify(transactionManager).rollback(any());
+     verify(toppingUsageRepository, times(1)).changeToppings(1L, 1L, signature, Set.of(2L), Set.of());
+     verify(eventPublisher, times(1)).publishEvent(any(MenuChangeEvent.class));
+ }
+
+ @Test
+ void changePizzaToppings_GivesUpAfterMaxAttempts() {
+     when(pizzaRepository.findVersionById(1L)).thenReturn(Optional.of(0L));
+     when(toppingRepository.findAllById(Set.of(2L))).thenReturn(List.of(topping2));
+     when(pizzaRepository.findToppingIds(1L)).thenReturn(Set.of(1L));
+     when(toppingUsageRepository.changeToppings(eq(1L), eq(0L), anyString(), any(), any())).thenReturn(false);
+
+     assertThrows(VersionConflictException.class, () ->
+             pizzaService.changePizzaToppings(1L, Set.of(2L), Set.of(), null));
+
+     verify(toppingUsageRepository, times(3)).changeToppings(eq(1L), eq(0L), anyString(), any(), any());
+ }
+
+ @Test
+ void changePizzaToppings_StaleIfMatchIsNotRetried() {
+     when(pizzaRepository.findVersionById(1L)).thenReturn(Optional.of(2L));
+
+     assertThrows(OptimisticLockingFailureException.class, () ->
+             pizzaService.changePizzaToppings(1L, Set.of(2L), Set.of(), 1L));
+
+     verify(pizzaRepository, times(1)).findVersionById(1L);
+     verify(toppingUsageRepository, never()).changeToppings(anyLong(), anyLong(), any(), any(), any());
+ }
+
+ @Test
+ void updatePizza_FailsWhenVersionIsStale() {
+     pizza.setVersion(3L);
+     when(pizzaRepository.findById(1L)).thenReturn(Optional.of(pizza));
+
+     Exception exception = assertThrows(VersionConflictException.class, () ->
+             pizzaService.updatePizza(1L, new PizzaUpdateRequest("Renamed", List.of()), 2L));
+
+     assertTrue(exception.getMessage().contains("version 3"));
+     assertEquals("Margherita", pizza.getName());
+     verify(pizzaRepository, never()).save(any(Pizza.class));
+ }
 }
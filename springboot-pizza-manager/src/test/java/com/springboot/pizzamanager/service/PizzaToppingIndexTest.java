@@ -0,0 +1,106 @@
+package com.springboot.pizzamanager.service;
+
+import com.springboot.pizzamanager.dto.PizzaResponse;
+import com.springboot.pizzamanager.dto.ToppingDTO;
+import com.springboot.pizzamanager.model.Pizza;
+import com.springboot.pizzamanager.model.Topping;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.roaringbitmap.longlong.Roaring64Bitmap;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class PizzaToppingIndexTest {
+
+    private static final long CHEESE = 1L;
+    private static final long MUSHROOMS = 2L;
+    private static final long ONIONS = 3L;
+
+    @Mock
+    private MenuExportService menuExportService;
+
+    private PizzaToppingIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new PizzaToppingIndex(menuExportService);
+        index.onMenuChange(MenuChangeEvent.pizzaCreated(pizza(10L, CHEESE)));
+        index.onMenuChange(MenuChangeEvent.pizzaCreated(pizza(11L, CHEESE, MUSHROOMS)));
+        index.onMenuChange(MenuChangeEvent.pizzaCreated(pizza(12L, CHEESE, MUSHROOMS, ONIONS)));
+        index.onMenuChange(MenuChangeEvent.pizzaCreated(pizza(13L, ONIONS)));
+    }
+
+    @Test
+    void match_EvaluatesAndOrNot() {
+        assertEquals(List.of(11L, 12L), ids(index.match(Set.of(CHEESE, MUSHROOMS), Set.of(), Set.of())));
+        assertEquals(List.of(11L), ids(index.match(Set.of(MUSHROOMS), Set.of(), Set.of(ONIONS))));
+        assertEquals(List.of(11L, 12L, 13L), ids(index.match(Set.of(), Set.of(MUSHROOMS, ONIONS), Set.of())));
+        assertEquals(List.of(10L), ids(index.match(Set.of(), Set.of(), Set.of(MUSHROOMS, ONIONS))));
+        assertTrue(index.match(Set.of(CHEESE, 99L), Set.of(), Set.of()).isEmpty());
+    }
+
+    @Test
+    void onMenuChange_MovesUpdatedAndDropsDeletedPizzas() {
+        index.onMenuChange(MenuChangeEvent.pizzaUpdated(pizza(10L, ONIONS)));
+        index.onMenuChange(MenuChangeEvent.pizzaDeleted(13L));
+        index.onMenuChange(MenuChangeEvent.toppingDeleted(MUSHROOMS));
+
+        assertEquals(List.of(10L, 12L), ids(index.match(Set.of(ONIONS), Set.of(), Set.of())));
+        assertEquals(List.of(11L, 12L), ids(index.match(Set.of(CHEESE), Set.of(), Set.of())));
+        assertTrue(index.match(Set.of(MUSHROOMS), Set.of(), Set.of()).isEmpty());
+        assertEquals(3, index.size());
+    }
+
+    @Test
+    void onMenuChange_AppliesToppingDelta() {
+        Topping onions = new Topping("Onions");
+        onions.setId(ONIONS);
+        index.onMenuChange(MenuChangeEvent.pizzaToppingsChanged(11L, 2L, Set.of(onions), Set.of(MUSHROOMS)));
+
+        assertEquals(List.of(11L, 12L, 13L), ids(index.match(Set.of(ONIONS), Set.of(), Set.of())));
+        assertEquals(List.of(12L), ids(index.match(Set.of(MUSHROOMS), Set.of(), Set.of())));
+    }
+
+    @Test
+    void rebuild_ReplacesIndexAndKeepsChangesCommittedMeanwhile() {
+        when(menuExportService.exportPizzas(any())).thenAnswer(invocation -> {
+            Consumer<PizzaResponse> sink = invocation.getArgument(0);
+            sink.accept(new PizzaResponse(20L, "Funghi", Set.of(new ToppingDTO(MUSHROOMS, "Mushrooms"))));
+            // Committed while the rebuild was reading, after the cursor had passed this pizza
+            index.onMenuChange(MenuChangeEvent.pizzaCreated(pizza(21L, MUSHROOMS)));
+            return 1L;
+        });
+
+        index.rebuild();
+
+        assertEquals(List.of(20L, 21L), ids(index.match(Set.of(MUSHROOMS), Set.of(), Set.of())));
+        assertEquals(2, index.size());
+    }
+
+    private static Pizza pizza(long id, long... toppingIds) {
+        Pizza pizza = new Pizza("Pizza " + id);
+        pizza.setId(id);
+        pizza.setToppings(Arrays.stream(toppingIds).mapToObj(toppingId -> {
+            Topping topping = new Topping("Topping " + toppingId);
+            topping.setId(toppingId);
+            return topping;
+        }).collect(Collectors.toSet()));
+        return pizza;
+    }
+
+    private static List<Long> ids(Roaring64Bitmap bitmap) {
+        return Arrays.stream(bitmap.toArray()).boxed().toList();
+    }
+}
@@ -0,0 +1,116 @@
+package com.springboot.pizzamanager.service;
+
+import com.springboot.pizzamanager.dto.PizzaResponse;
+import com.springboot.pizzamanager.dto.ToppingDTO;
+import com.springboot.pizzamanager.model.Pizza;
+import com.springboot.pizzamanager.model.Topping;
+import com.springboot.pizzamanager.repository.ToppingRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Runs against the real database and cache: pizzas and toppings read by id come from the second-level
+// cache, and writes that bypass the entities still leave no stale copy behind
+@SpringBootTest
+public class SecondLevelCacheTest {
+
+    @Autowired
+    private PizzaService pizzaService;
+
+    @Autowired
+    private ToppingService toppingService;
+
+    @Autowired
+    private ToppingRepository toppingRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    void findPizzaById_ReadsACachedPizzaWithoutStatements() {
+        Long cheese = toppingService.addTopping(new Topping("Cache Cheese")).getId();
+        Long basil = toppingService.addTopping(new Topping("Cache Basil")).getId();
+        Long pizzaId = pizzaService.createPizzaWithToppings(new Pizza("Cache Pizza"), Set.of(basil, cheese)).getId();
+        pizzaService.findPizzaById(pizzaId);
+        statistics.clear();
+
+        PizzaResponse pizza = pizzaService.findPizzaById(pizzaId).orElseThrow();
+
+        assertEquals(List.of(cheese, basil), toppingIds(pizza));
+        assertEquals(0, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getSecondLevelCacheMissCount());
+    }
+
+    @Test
+    void detachedTopping_IsGoneFromTheCachedPizza() {
+        Long cheese = toppingService.addTopping(new Topping("Detach Cheese")).getId();
+        Long ham = toppingService.addTopping(new Topping("Detach Ham")).getId();
+        Long pizzaId = pizzaService.createPizzaWithToppings(new Pizza("Detach Pizza"), Set.of(cheese, ham)).getId();
+        PizzaResponse before = pizzaService.findPizzaById(pizzaId).orElseThrow();
+
+        toppingService.deleteTopping(cheese, null, true);
+
+        PizzaResponse after = pizzaService.findPizzaById(pizzaId).orElseThrow();
+        assertEquals(List.of(ham), toppingIds(after));
+        assertEquals(before.getVersion() + 1, after.getVersion());
+    }
+
+    @Test
+    void usageCounter_IsNotReadFromAStaleCachedTopping() {
+        Long olives = toppingService.addTopping(new Topping("Usage Olives")).getId();
+        // Caches the topping while no pizza uses it yet
+        transactionTemplate.executeWithoutResult(status -> toppingRepository.findById(olives).orElseThrow());
+        pizzaService.createPizzaWithToppings(new Pizza("Usage Pizza"), Set.of(olives));
+
+        ToppingInUseException e = assertThrows(ToppingInUseException.class,
+                () -> toppingService.deleteTopping(olives, null, false));
+
+        assertEquals("Topping Usage Olives is used by a pizza, delete it with detach=true to remove it from them.",
+                e.getMessage());
+    }
+
+    @Test
+    void toppingDelta_UpdatesTheCachedPizzaAndKeepsEverythingElseCached() {
+        Long cheese = toppingService.addTopping(new Topping("Delta Cheese")).getId();
+        Long onions = toppingService.addTopping(new Topping("Delta Onions")).getId();
+        Long pizzaId = pizzaService.createPizzaWithToppings(new Pizza("Delta Pizza"), Set.of(cheese)).getId();
+        Long otherId = pizzaService.createPizzaWithToppings(new Pizza("Delta Other"), Set.of(onions)).getId();
+        pizzaService.findPizzaById(pizzaId);
+        pizzaService.findPizzaById(otherId);
+
+        pizzaService.changePizzaToppings(pizzaId, Set.of(onions), Set.of(), null);
+
+        PizzaResponse changed = pizzaService.findPizzaById(pizzaId).orElseThrow();
+        assertEquals(List.of(cheese, onions), toppingIds(changed));
+        assertEquals(1L, changed.getVersion());
+        // Only the changed pizza was evicted, other pizzas and the toppings are still read from the cache
+        statistics.clear();
+        pizzaService.findPizzaById(otherId);
+        transactionTemplate.executeWithoutResult(status -> toppingRepository.findById(onions).orElseThrow());
+        assertEquals(0, statistics.getPrepareStatementCount());
+    }
+
+    private static List<Long> toppingIds(PizzaResponse pizza) {
+        return pizza.getToppings().stream().map(ToppingDTO::getId).toList();
+    }
+}
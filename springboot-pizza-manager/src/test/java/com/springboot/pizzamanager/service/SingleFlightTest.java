@@ -0,0 +1,157 @@
+package com.springboot.pizzamanager.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SingleFlightTest {
+
+    private static final int CALLERS = 8;
+
+    private SingleFlight<Long, List<String>> flight;
+    private ExecutorService executor;
+
+    private final AtomicInteger loads = new AtomicInteger();
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @BeforeEach
+    void setUp() {
+        flight = new SingleFlight<>("menu.pizzas");
+        executor = Executors.newFixedThreadPool(CALLERS);
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    void concurrentCallers_ShareOneExecution() throws Exception {
+        List<Future<List<String>>> results = startCallers(1L, () -> {
+            loads.incrementAndGet();
+            await(release);
+            return new ArrayList<>(List.of("Margherita"));
+        });
+
+        release.countDown();
+
+        List<String> first = results.get(0).get(5, TimeUnit.SECONDS);
+        for (Future<List<String>> result : results) {
+            assertSame(first, result.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, loads.get());
+        assertEquals(1, flight.getExecuted());
+        assertEquals(CALLERS - 1, flight.getCoalesced());
+    }
+
+    @Test
+    void failedLoad_IsThrownToEveryWaiter() throws Exception {
+        List<Future<List<String>>> results = startCallers(1L, () -> {
+            loads.incrementAndGet();
+            await(release);
+            throw new IllegalStateException("Database unavailable.");
+        });
+
+        release.countDown();
+
+        for (Future<List<String>> result : results) {
+            ExecutionException e = assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(IllegalStateException.class, e.getCause());
+            assertEquals("Database unavailable.", e.getCause().getMessage());
+        }
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void completedLoad_IsNotReused() {
+        flight.load(1L, () -> List.of("Margherita"));
+        List<String> second = flight.load(1L, () -> List.of("Hawaiian"));
+
+        assertEquals(List.of("Hawaiian"), second);
+        assertEquals(2, flight.getExecuted());
+        assertEquals(0, flight.getCoalesced());
+    }
+
+    @Test
+    void otherKey_DoesNotJoinTheRunningLoad() throws Exception {
+        Future<List<String>> stale = executor.submit(() -> flight.load(1L, () -> {
+            await(release);
+            return List.of("Margherita");
+        }));
+        waitFor(flight::getExecuted, 1);
+
+        // A caller that has seen an invalidation asks for the next generation
+        assertEquals(List.of("Pepperoni"), flight.load(2L, () -> List.of("Pepperoni")));
+
+        release.countDown();
+        assertEquals(List.of("Margherita"), stale.get(5, TimeUnit.SECONDS));
+        assertEquals(2, flight.getExecuted());
+        assertEquals(0, flight.getCoalesced());
+    }
+
+    @Test
+    void bindTo_CountsExecutedAndCoalescedCalls() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        flight.bindTo(registry);
+
+        List<Future<List<String>>> results = startCallers(1L, () -> {
+            await(release);
+            return List.of("Margherita");
+        });
+        release.countDown();
+        for (Future<List<String>> result : results) {
+            result.get(5, TimeUnit.SECONDS);
+        }
+
+        assertEquals(1, registry.get("pizzamanager.single.flight.calls")
+                .tags("flight", "menu.pizzas", "result", "executed").functionCounter().count());
+        assertEquals(CALLERS - 1, registry.get("pizzamanager.single.flight.calls")
+                .tags("flight", "menu.pizzas", "result", "coalesced").functionCounter().count());
+    }
+
+    // Starts one caller that runs the blocked loader, then the others once it is running, and returns
+    // when all of them have joined it
+    private List<Future<List<String>>> startCallers(Long key, Supplier<List<String>> loader) {
+        List<Future<List<String>>> results = new ArrayList<>();
+        results.add(executor.submit(() -> flight.load(key, loader)));
+        waitFor(flight::getExecuted, 1);
+        for (int i = 1; i < CALLERS; i++) {
+            results.add(executor.submit(() -> flight.load(key, loader)));
+        }
+        waitFor(flight::getCoalesced, CALLERS - 1);
+        return results;
+    }
+
+    private static void waitFor(LongSupplier counter, long expected) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (counter.getAsLong() < expected) {
+            assertTrue(System.nanoTime() < deadline, "Callers did not reach the flight in time");
+            Thread.onSpinWait();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package com.springboot.pizzamanager.service;
+
+import com.springboot.pizzamanager.model.Topping;
+import com.springboot.pizzamanager.repository.ToppingRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ToppingCatalogTest {
+
+    @Mock
+    private ToppingRepository toppingRepository;
+
+    private ToppingCatalog toppingCatalog;
+
+    private Topping cheese;
+    private Topping basil;
+
+    @BeforeEach
+    void setUp() {
+        toppingCatalog = new ToppingCatalog(toppingRepository);
+
+        cheese = new Topping("Cheese");
+        cheese.setId(1L);
+        basil = new Topping("Basil");
+        basil.setId(2L);
+    }
+
+    @Test
+    void findAllById_OnlyQueriesIdsMissingFromSnapshot() {
+        Topping onions = new Topping("Onions");
+        onions.setId(3L);
+        when(toppingRepository.findAll()).thenReturn(List.of(cheese, basil));
+        when(toppingRepository.findAllById(Set.of(3L, 99L))).thenReturn(List.of(onions));
+
+        Set<Topping> found = toppingCatalog.findAllById(List.of(1L, 2L, 3L, 99L));
+
+        assertEquals(3, found.size());
+        assertEquals(1, toppingCatalog.getStats().getMisses());
+        // The topping loaded on the miss is part of the snapshot from now on
+        assertTrue(toppingCatalog.findById(3L).isPresent());
+        assertEquals(1, toppingCatalog.getStats().getHits());
+    }
+
+    @Test
+    void findById_ReadRacingWithARenameDoesNotOverwriteIt() {
+        Topping onions = new Topping("Onions");
+        onions.setId(3L);
+        Topping renamed = new Topping("Red Onions");
+        renamed.setId(3L);
+        renamed.setVersion(1L);
+        when(toppingRepository.findAll()).thenReturn(List.of(cheese));
+        toppingCatalog.findAll();
+        // The rename commits while the miss is still reading the old row
+        when(toppingRepository.findById(3L)).thenAnswer(invocation -> {
+            toppingCatalog.onMenuChange(MenuChangeEvent.toppingUpdated(renamed));
+            return Optional.of(onions);
+        });
+
+        toppingCatalog.findById(3L);
+
+        assertEquals("Red Onions", toppingCatalog.findById(3L).orElseThrow().getName());
+        verify(toppingRepository, times(1)).findById(3L);
+    }
+
+    @Test
+    void findAllById_ReadRacingWithADeleteDoesNotBringTheToppingBack() {
+        when(toppingRepository.findAll()).thenReturn(List.of(cheese));
+        toppingCatalog.findAll();
+        when(toppingRepository.findAllById(Set.of(2L))).thenAnswer(invocation -> {
+            toppingCatalog.onMenuChange(MenuChangeEvent.toppingDeleted(2L));
+            return List.of(basil);
+        });
+
+        toppingCatalog.findAllById(List.of(1L, 2L));
+
+        assertFalse(toppingCatalog.findByName("Basil").isPresent());
+        assertEquals(List.of("Cheese"), toppingCatalog.findAll().stream().map(Topping::getName).toList());
+    }
+
+    @Test
+    void bindTo_RegistersHitsMissesAndRebuilds() {
+        when(toppingRepository.findAll()).thenReturn(List.of(cheese));
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        toppingCatalog.bindTo(registry);
+
+        toppingCatalog.findAll();
+        toppingCatalog.findAll();
+        toppingCatalog.findById(1L);
+
+        assertEquals(2, registry.get("pizzamanager.topping.catalog.lookups")
+                .tag("result", "hit").functionCounter().count());
+        assertEquals(1, registry.get("pizzamanager.topping.catalog.lookups")
+                .tag("result", "miss").functionCounter().count());
+        assertEquals(1, registry.get("pizzamanager.topping.catalog.rebuilds").functionCounter().count());
+    }
+
+    @Test
+    void onMenuChange_UpdatesSnapshotCopyOnWrite() {
+        when(toppingRepository.findAll()).thenReturn(List.of(cheese, basil));
+        List<Topping> before = toppingCatalog.findAll();
+
+        Topping renamed = new Topping("Mozzarella");
+        renamed.setId(1L);
+        toppingCatalog.onMenuChange(MenuChangeEvent.toppingUpdated(renamed));
+        toppingCatalog.onMenuChange(MenuChangeEvent.toppingDeleted(2L));
+
+        List<Topping> after = toppingCatalog.findAll();
+        assertEquals(List.of("Cheese", "Basil"), before.stream().map(Topping::getName).toList());
+        assertEquals(List.of("Mozzarella"), after.stream().map(Topping::getName).toList());
+        assertTrue(toppingCatalog.findByName("Mozzarella").isPresent());
+        assertFalse(toppingCatalog.findByName("Cheese").isPresent());
+        verify(toppingRepository, times(1)).findAll();
+    }
+
+    @Test
+    void snapshotHoldsCopiesOfEntities() {
+        when(toppingRepository.findAll()).thenReturn(List.of(cheese));
+        toppingCatalog.findAll();
+
+        cheese.setName("Changed outside");
+
+        assertEquals("Cheese", toppingCatalog.findById(1L).orElseThrow().getName());
+    }
+
+    @Test
+    void invalidate_ForcesRebuildOnNextRead() {
+        when(toppingRepository.findAll()).thenReturn(List.of(cheese));
+        toppingCatalog.findAll();
+
+        toppingCatalog.invalidate();
+        toppingCatalog.findAll();
+
+        verify(toppingRepository, times(2)).findAll();
+        assertEquals(2, toppingCatalog.getStats().getRebuilds());
+    }
+
+    @Test
+    void findAll_ConcurrentReadersShareOneRebuild() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(toppingRepository.findAll()).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return List.of(cheese, basil);
+        });
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        toppingCatalog.bindTo(registry);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<List<Topping>>> readers = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                readers.add(executor.submit(() -> toppingCatalog.findAll()));
+            }
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (coalesced(registry) < 3 && System.nanoTime() < deadline) {
+                Thread.onSpinWait();
+            }
+            release.countDown();
+
+            for (Future<List<Topping>> reader : readers) {
+                assertEquals(2, reader.get(5, TimeUnit.SECONDS).size());
+            }
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+        assertEquals(3, coalesced(registry));
+        verify(toppingRepository, times(1)).findAll();
+        assertEquals(1, toppingCatalog.getStats().getRebuilds());
+    }
+
+    private static double coalesced(SimpleMeterRegistry registry) {
+        return registry.get("pizzamanager.single.flight.calls")
+                .tags("flight", "topping.catalog", "result", "coalesced").functionCounter().count();
+    }
+}
@@ -0,0 +1,157 @@
+package com.springboot.pizzamanager.service;
+
+import com.springboot.pizzamanager.dto.ToppingDeltaRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ToppingDeltaBatcherTest {
+
+    @Mock
+    private PizzaService pizzaService;
+
+    private ToppingDeltaBatcher batcher;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (batcher != null) {
+            batcher.shutdown();
+        }
+    }
+
+    @Test
+    void burst_IsMergedPerPizzaIntoOneCommit() throws Exception {
+        batcher = new ToppingDeltaBatcher(pizzaService, 4, Duration.ofSeconds(5), 100, Duration.ofSeconds(5));
+        when(pizzaService.changeToppingsOfPizzas(anyMap())).thenReturn(Map.of(1L, 8L, 2L, 3L));
+
+        List<CompletableFuture<Long>> done = List.of(
+                batcher.submit(1L, Set.of(1L), Set.of()),
+                batcher.submit(1L, Set.of(2L), Set.of()),
+                batcher.submit(2L, Set.of(), Set.of(3L)),
+                batcher.submit(1L, Set.of(), Set.of(4L)));
+        List<Long> versions = new ArrayList<>();
+        for (CompletableFuture<Long> future : done) {
+            versions.add(future.get(5, TimeUnit.SECONDS));
+        }
+        // Every caller learns the version its pizza has after the shared commit
+        assertEquals(List.of(8L, 8L, 3L, 8L), versions);
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Map<Long, ToppingDeltaRequest>> batch = ArgumentCaptor.forClass(Map.class);
+        verify(pizzaService).changeToppingsOfPizzas(batch.capture());
+        assertEquals(Set.of(1L, 2L), batch.getValue().keySet());
+        assertEquals(Set.of(1L, 2L), batch.getValue().get(1L).getAdd());
+        assertEquals(Set.of(4L), batch.getValue().get(1L).getRemove());
+        assertEquals(Set.of(3L), batch.getValue().get(2L).getRemove());
+        verify(pizzaService, never()).changePizzaToppings(any(), any(), any(), any());
+    }
+
+    @Test
+    void deltaUndoingAnEarlierOne_WaitsForTheNextCommit() throws Exception {
+        batcher = new ToppingDeltaBatcher(pizzaService, 3, Duration.ofMillis(50), 100, Duration.ofSeconds(5));
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Map<Long, ToppingDeltaRequest>> batches = ArgumentCaptor.forClass(Map.class);
+
+        CompletableFuture<Long> add = batcher.submit(1L, Set.of(5L), Set.of());
+        CompletableFuture<Long> undo = batcher.submit(1L, Set.of(), Set.of(5L));
+        CompletableFuture<Long> later = batcher.submit(1L, Set.of(6L), Set.of());
+        CompletableFuture.allOf(add, undo, later).get(5, TimeUnit.SECONDS);
+
+        InOrder inOrder = inOrder(pizzaService);
+        inOrder.verify(pizzaService, times(2)).changeToppingsOfPizzas(batches.capture());
+        ToppingDeltaRequest first = batches.getAllValues().get(0).get(1L);
+        ToppingDeltaRequest second = batches.getAllValues().get(1).get(1L);
+        assertEquals(Set.of(5L), first.getAdd());
+        assertEquals(Set.of(), first.getRemove());
+        assertEquals(Set.of(6L), second.getAdd());
+        assertEquals(Set.of(5L), second.getRemove());
+    }
+
+    @Test
+    void failedBatch_GivesEveryCallerTheOutcomeOfItsOwnDelta() throws Exception {
+        batcher = new ToppingDeltaBatcher(pizzaService, 2, Duration.ofSeconds(5), 100, Duration.ofSeconds(5));
+        doThrow(new IllegalStateException("Topping with id 9 does not exist."))
+                .when(pizzaService).changeToppingsOfPizzas(anyMap());
+        doThrow(new IllegalStateException("Topping with id 9 does not exist."))
+                .when(pizzaService).changePizzaToppings(1L, Set.of(9L), Set.of(), null);
+
+        CompletableFuture<Long> unknown = batcher.submit(1L, Set.of(9L), Set.of());
+        CompletableFuture<Long> valid = batcher.submit(2L, Set.of(1L), Set.of());
+
+        valid.get(5, TimeUnit.SECONDS);
+        ExecutionException e = assertThrows(ExecutionException.class, () -> unknown.get(5, TimeUnit.SECONDS));
+        assertEquals("Topping with id 9 does not exist.", e.getCause().getMessage());
+        verify(pizzaService).changePizzaToppings(2L, Set.of(1L), Set.of(), null);
+    }
+
+    @Test
+    void changePizzaToppings_ThrowsTheCommitFailureToTheCaller() {
+        batcher = new ToppingDeltaBatcher(pizzaService, 1, Duration.ZERO, 100, Duration.ofSeconds(5));
+        doThrow(new DataIntegrityViolationException("Duplicate recipe."))
+                .when(pizzaService).changeToppingsOfPizzas(anyMap());
+        doThrow(new DataIntegrityViolationException("Duplicate recipe."))
+                .when(pizzaService).changePizzaToppings(1L, Set.of(2L), Set.of(), null);
+
+        assertThrows(DataIntegrityViolationException.class, () -> batcher.changePizzaToppings(1L, Set.of(2L), null));
+    }
+
+    @Test
+    void addAndRemoveOfTheSameTopping_IsRejectedBeforeQueueing() {
+        batcher = new ToppingDeltaBatcher(pizzaService, 1, Duration.ZERO, 100, Duration.ofSeconds(5));
+
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> batcher.changePizzaToppings(1L, Set.of(2L), Set.of(2L)));
+
+        assertEquals("Topping with id 2 cannot be added and removed at the same time.", e.getMessage());
+        verifyNoInteractions(pizzaService);
+    }
+
+    @Test
+    void changePizzaToppings_GivesUpOnACommitThatTakesLongerThanMaxWait() throws Exception {
+        batcher = new ToppingDeltaBatcher(pizzaService, 1, Duration.ZERO, 100, Duration.ofMillis(50));
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return Map.of();
+        }).when(pizzaService).changeToppingsOfPizzas(anyMap());
+
+        try {
+            GroupCommitTimeoutException e = assertThrows(GroupCommitTimeoutException.class,
+                    () -> batcher.changePizzaToppings(1L, Set.of(2L), null));
+            assertEquals("The topping change was not committed within 50 ms.", e.getMessage());
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    void submit_AfterShutdownAppliesTheDeltaOnTheCallersThread() throws Exception {
+        batcher = new ToppingDeltaBatcher(pizzaService, 1, Duration.ZERO, 100, Duration.ofSeconds(5));
+        batcher.shutdown();
+
+        batcher.submit(1L, Set.of(2L), Set.of()).get(0, TimeUnit.SECONDS);
+
+        verify(pizzaService).changePizzaToppings(1L, Set.of(2L), Set.of(), null);
+        verify(pizzaService, never()).changeToppingsOfPizzas(anyMap());
+    }
+}
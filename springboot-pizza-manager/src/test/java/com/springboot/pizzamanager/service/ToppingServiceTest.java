@@ -1,16 +1,28 @@
 package com.springboot.pizzamanager.service;
 
+import com.springboot.pizzamanager.dto.BatchImportResponse;
+import com.springboot.pizzamanager.dto.ToppingDTO;
 import com.springboot.pizzamanager.model.Topping;
 import com.springboot.pizzamanager.repository.ToppingRepository;
+import com.springboot.pizzamanager.repository.ToppingUsageRepository;
+import jakarta.validation.Validation;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
+import org.hibernate.exception.ConstraintViolationException;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -22,13 +34,25 @@ public class ToppingServiceTest {
     @Mock
     private ToppingRepository toppingRepository;
 
-    @InjectMocks
+    @Mock
+    private ToppingUsageRepository toppingUsageRepository;
+
+    @Mock
+    private NameSuggestIndex nameSuggestIndex;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
     private ToppingService toppingService;
 
     private Topping topping;
 
     @BeforeEach
     void setUp() {
+        // The catalog is real, so reads exercise it on top of the mocked repository
+        toppingService = new ToppingService(toppingRepository, toppingUsageRepository, new ToppingCatalog(toppingRepository), nameSuggestIndex, eventPublisher,
+                Validation.buildDefaultValidatorFactory().getValidator());
+
         topping = new Topping("Cheese");
         topping.setId(1L);
     }
@@ -51,8 +75,7 @@ public class ToppingServiceTest {
 
     @Test
     void addTopping_Success() {
-        when(toppingRepository.existsByName(anyString())).thenReturn(false);
-        when(toppingRepository.save(any(Topping.class))).thenReturn(topping);
+        when(toppingRepository.saveAndFlush(any(Topping.class))).thenReturn(topping);
         Topping savedTopping = toppingService.addTopping(new Topping("Cheese"));
         assertNotNull(savedTopping);
         assertEquals("Cheese", savedTopping.getName());
@@ -60,36 +83,36 @@ public class ToppingServiceTest {
 
     @Test
     void deleteTopping_Success() {
-        when(toppingRepository.existsById(1L)).thenReturn(true);
-        doNothing().when(toppingRepository).deleteById(1L);
-        toppingService.deleteTopping(1L);
-        verify(toppingRepository, times(1)).deleteById(1L);
+        when(toppingRepository.findById(1L)).thenReturn(Optional.of(topping));
+        toppingService.deleteTopping(1L, null, false);
+        verify(toppingRepository, times(1)).delete(topping);
     }
 
     @Test
     void updateTopping_Success() {
         when(toppingRepository.findById(1L)).thenReturn(Optional.of(topping));
-        when(toppingRepository.save(any(Topping.class))).thenReturn(topping);
+        when(toppingRepository.saveAndFlush(any(Topping.class))).thenReturn(topping);
         Topping updatedTopping = new Topping("Updated Cheese");
         updatedTopping.setId(1L);
-        Topping result = toppingService.updateTopping(1L, updatedTopping);
+        Topping result = toppingService.updateTopping(1L, updatedTopping, null);
         assertNotNull(result);
         assertEquals("Updated Cheese", result.getName());
     }
 
     @Test
     void addTopping_ThrowsExceptionWhenToppingExists() {
-        when(toppingRepository.existsByName(anyString())).thenReturn(true);
-        assertThrows(IllegalStateException.class, () -> toppingService.addTopping(new Topping("Cheese")),
-            "Topping already exists.");
+        when(toppingRepository.saveAndFlush(any(Topping.class))).thenThrow(new DataIntegrityViolationException("could not execute statement",
+            new ConstraintViolationException("Unique index or primary key violation", new SQLException(), "UK_TOPPING_NAME_INDEX_C")));
+        assertThrows(DuplicateNameException.class, () -> toppingService.addTopping(new Topping("Cheese")),
+            "Topping Cheese already exists.");
     }
     
     @Test
     void deleteTopping_FailsWhenIdDoesNotExist() {
-        when(toppingRepository.existsById(anyLong())).thenReturn(false);
+        when(toppingRepository.findById(anyLong())).thenReturn(Optional.empty());
 
         Exception exception = assertThrows(IllegalStateException.class, () ->
-            toppingService.deleteTopping(99L));
+            toppingService.deleteTopping(99L, null, false));
 
         assertTrue(exception.getMessage().contains("does not exist"));
     }
@@ -101,10 +124,169 @@ public class ToppingServiceTest {
         when(toppingRepository.findById(anyLong())).thenReturn(Optional.empty());
 
         Exception exception = assertThrows(IllegalStateException.class, () ->
-            toppingService.updateTopping(99L, updatedTopping));
+            toppingService.updateTopping(99L, updatedTopping, null));
 
         assertTrue(exception.getMessage().contains("does not exist"));
     }
 
-    
+    @Test
+    void deleteTopping_FailsWhenVersionIsStale() {
+        topping.setVersion(2L);
+        when(toppingRepository.findById(1L)).thenReturn(Optional.of(topping));
+
+        assertThrows(VersionConflictException.class, () -> toppingService.deleteTopping(1L, 1L, false));
+
+        verify(toppingRepository, never()).delete(any(Topping.class));
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    @Test
+    void deleteTopping_InUseRequiresDetach() {
+        when(toppingRepository.findById(1L)).thenReturn(Optional.of(topping));
+        when(toppingUsageRepository.findUsageCount(1L)).thenReturn(2L);
+
+        Exception exception = assertThrows(ToppingInUseException.class, () -> toppingService.deleteTopping(1L, null, false));
+
+        assertEquals("Topping Cheese is used by 2 pizzas, delete it with detach=true to remove it from them.",
+            exception.getMessage());
+        verify(toppingUsageRepository, never()).detachFromAllPizzas(anyLong());
+        verify(toppingRepository, never()).delete(any(Topping.class));
+    }
+
+    @Test
+    void deleteTopping_DecidesOnTheUsageCountInTheTableNotTheCachedOne() {
+        // Cached before a pizza started to use it
+        topping.setUsageCount(0);
+        when(toppingRepository.findById(1L)).thenReturn(Optional.of(topping));
+        when(toppingUsageRepository.findUsageCount(1L)).thenReturn(1L);
+
+        Exception exception = assertThrows(ToppingInUseException.class, () -> toppingService.deleteTopping(1L, null, false));
+
+        assertEquals("Topping Cheese is used by a pizza, delete it with detach=true to remove it from them.",
+            exception.getMessage());
+        verify(toppingRepository, never()).delete(any(Topping.class));
+    }
+
+    @Test
+    void deleteTopping_ForeignKeyViolationReportsTheFreshUsageCount() {
+        when(toppingRepository.findById(1L)).thenReturn(Optional.of(topping));
+        // Unused when checked, used by three pizzas by the time the delete is flushed
+        when(toppingUsageRepository.findUsageCount(1L)).thenReturn(0L, 3L);
+        doThrow(new DataIntegrityViolationException("Referential integrity constraint violation"))
+            .when(toppingRepository).flush();
+
+        Exception exception = assertThrows(ToppingInUseException.class, () -> toppingService.deleteTopping(1L, null, false));
+
+        assertEquals("Topping Cheese is used by 3 pizzas, delete it with detach=true to remove it from them.",
+            exception.getMessage());
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    @Test
+    void deleteTopping_DetachesFromPizzasBeforeDeleting() {
+        topping.setUsageCount(2);
+        when(toppingRepository.findById(1L)).thenReturn(Optional.of(topping));
+
+        toppingService.deleteTopping(1L, null, true);
+
+        var order = inOrder(toppingUsageRepository, toppingRepository);
+        order.verify(toppingUsageRepository).detachFromAllPizzas(1L);
+        order.verify(toppingRepository).delete(topping);
+        verify(eventPublisher).publishEvent(any(MenuChangeEvent.class));
+    }
+
+    @Test
+    void deleteTopping_AnnouncesTheNewVersionOfEveryDetachedPizza() {
+        topping.setUsageCount(2);
+        when(toppingRepository.findById(1L)).thenReturn(Optional.of(topping));
+        Map<Long, Long> detached = new LinkedHashMap<>();
+        detached.put(10L, 4L);
+        detached.put(11L, 1L);
+        when(toppingUsageRepository.detachFromAllPizzas(1L)).thenReturn(detached);
+
+        toppingService.deleteTopping(1L, null, true);
+
+        ArgumentCaptor<MenuChangeEvent> events = ArgumentCaptor.forClass(MenuChangeEvent.class);
+        verify(eventPublisher, times(3)).publishEvent(events.capture());
+        List<MenuChangeEvent> published = events.getAllValues();
+        for (int i = 0; i < 2; i++) {
+            MenuChangeEvent changed = published.get(i);
+            assertEquals(MenuChangeEvent.Type.PIZZA_TOPPINGS_CHANGED, changed.getType());
+            assertEquals(Set.of(1L), changed.getRemovedToppingIds());
+            assertTrue(changed.getAddedToppings().isEmpty());
+        }
+        assertEquals(10L, published.get(0).getId());
+        assertEquals(4L, published.get(0).getVersion());
+        assertEquals(11L, published.get(1).getId());
+        assertEquals(1L, published.get(1).getVersion());
+        assertEquals(MenuChangeEvent.Type.TOPPING_DELETED, published.get(2).getType());
+    }
+
+    @Test
+    void findAllToppings_ServedFromCatalogAfterFirstLoad() {
+        when(toppingRepository.findAll()).thenReturn(List.of(topping));
+
+        toppingService.findAllToppings();
+        List<Topping> toppings = toppingService.findAllToppings();
+
+        assertEquals(1, toppings.size());
+        verify(toppingRepository, times(1)).findAll();
+        assertEquals(1, toppingService.getCatalogStats().getHits());
+        assertEquals(1, toppingService.getCatalogStats().getRebuilds());
+    }
+
+    @Test
+    void addTopping_OtherIntegrityViolationsAreNotReportedAsDuplicates() {
+        when(toppingRepository.saveAndFlush(any(Topping.class))).thenThrow(new DataIntegrityViolationException("could not execute statement",
+            new ConstraintViolationException("NULL not allowed", new SQLException(), "CONSTRAINT_9")));
+        assertThrows(DataIntegrityViolationException.class, () -> toppingService.addTopping(new Topping("Cheese")));
+    }
+
+    @Test
+    void addTopping_PublishesChangeEvent() {
+        when(toppingRepository.saveAndFlush(any(Topping.class))).thenReturn(topping);
+
+        toppingService.addTopping(new Topping("Cheese"));
+
+        verify(eventPublisher).publishEvent(argThat((Object event) ->
+            event instanceof MenuChangeEvent change
+                && change.getType() == MenuChangeEvent.Type.TOPPING_CREATED
+                && change.getId().equals(1L)));
+    }
+
+    @Test
+    void findToppingPage_ReturnsLastPageWithoutCursor() {
+        String cursor = PageCursor.after(PageCursor.Sort.ID, 1L, "Cheese").encode();
+        when(toppingRepository.findPageAfterId(1L, Limit.of(11)))
+                .thenReturn(List.of(new ToppingDTO(2L, "Onions", 0L, 0L)));
+
+        KeysetPage<ToppingDTO> page = toppingService.findToppingPage(PageCursor.Sort.ID, cursor, 10);
+
+        assertEquals(1, page.getItems().size());
+        assertFalse(page.hasNext());
+    }
+
+    @Test
+    void findToppingPage_RejectsTamperedCursor() {
+        assertThrows(IllegalArgumentException.class, () ->
+            toppingService.findToppingPage(PageCursor.Sort.ID, "not-a-cursor", 10));
+    }
+
+    @Test
+    void importToppings_ChecksNamesOnceAndSkipsDuplicates() {
+        when(toppingRepository.findExistingNames(Set.of("Cheese", "Basil", "A name that is far too long")))
+                .thenReturn(Set.of("Cheese"));
+
+        BatchImportResponse response = toppingService.importToppings(List.of(
+                new ToppingDTO(null, "Basil"),
+                new ToppingDTO(null, "Cheese"),
+                new ToppingDTO(null, "Basil"),
+                new ToppingDTO(null, "A name that is far too long")));
+
+        assertEquals(1, response.getCreated());
+        assertEquals(3, response.getRejected());
+        assertEquals("Topping Cheese already exists.", response.getItems().get(1).getError());
+        assertTrue(response.getItems().get(3).getError().startsWith("Topping name"));
+        verify(toppingRepository).saveAll(argThat(toppings -> toppings.iterator().next().getName().equals("Basil")));
+    }
 }